@@ -0,0 +1,214 @@
+package com.regnosys.rosetta.common.hashing;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.regnosys.rosetta.common.hashing.NonNullHashCollector.Result;
+import com.regnosys.rosetta.common.util.SimpleProcessor;
+import com.rosetta.model.lib.RosettaModelObject;
+import com.rosetta.model.lib.RosettaModelObjectBuilder;
+import com.rosetta.model.lib.path.RosettaPath;
+import com.rosetta.model.lib.process.AttributeMeta;
+import com.rosetta.model.lib.process.Processor;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * GlobalKeyProcessStep that hashes each object once, bottom-up, instead of walking every keyed object's subtree again.
+ *
+ * The keys are identical to those of {@code new GlobalKeyProcessStep(NonNullHashCollector::new)}. The hash collected by
+ * {@link NonNullHashCollector} is a fold of the values of an object's attributes, in walk order, where each value
+ * multiplies the hash so far by 31 and adds its own hash. Such a fold can be split: if a run of values folds to
+ * {@code h} and contains {@code n} values, appending it to a hash {@code x} gives {@code x * 31^n + h}. So the hash of
+ * an object is built from the (hash, 31^n) pairs of its children, and the pair of every object is calculated only once
+ * per run and reused for all of its ancestors' keys.
+ *
+ * The pairs are kept for the whole run. That is safe because the only thing the step changes is the global key, which
+ * is never part of a hash.
+ *
+ * The collision check, when enabled, is the 128-bit hash of {@link WideHashCollector}, which is a fold of the same
+ * values and so is built from the children's hashes in the same pass.
+ */
+public class BottomUpGlobalKeyProcessStep extends GlobalKeyProcessStep {
+
+	private final boolean checkCollisions;
+
+	public BottomUpGlobalKeyProcessStep() {
+		this(false);
+	}
+
+	/**
+	 * @param checkCollisions whether to detect key collisions with the hash of {@code WideHashCollector::new}, see
+	 * {@link GlobalKeyProcessStep#GlobalKeyProcessStep(Supplier, Supplier)}
+	 */
+	public BottomUpGlobalKeyProcessStep(boolean checkCollisions) {
+		super(NonNullHashCollector::new, checkCollisions ? WideHashCollector::new : null);
+		this.checkCollisions = checkCollisions;
+	}
+
+	@Override
+	public String getName() {
+		return "Bottom-up GlobalKey postProcessor";
+	}
+
+	@Override
+	protected GlobalKeyCalculator createKeyCalculator() {
+		return new BottomUpKeyCalculator(checkCollisions);
+	}
+
+	static class BottomUpKeyCalculator implements GlobalKeyCalculator {
+		// any path will do, only the name of the attribute being processed is ever looked at
+		private static final RosettaPath PATH = RosettaPath.valueOf("hash");
+
+		private final IntegerHashGenerator hashcodeGenerator = new IntegerHashGenerator();
+		private final LongHashGenerator checkGenerator = new LongHashGenerator();
+		private final Map<RosettaModelObject, Hash> hashes = new IdentityHashMap<>();
+		private final HasDataCache hasDataCache = new HasDataCache();
+		private final boolean checkCollisions;
+
+		BottomUpKeyCalculator(boolean checkCollisions) {
+			this.checkCollisions = checkCollisions;
+		}
+
+		@Override
+		public String calculateKey(RosettaPath path, RosettaModelObjectBuilder builder) {
+			return Integer.toHexString(hash(builder).value);
+		}
+
+		@Override
+		public String calculateCollisionCheck(RosettaPath path, RosettaModelObjectBuilder builder) {
+			return checkCollisions ? hash(builder).check.toString() : null;
+		}
+
+		Hash hash(RosettaModelObject instance) {
+			Hash hash = hashes.get(instance);
+			if (hash == null) {
+				HashFolder folder = new HashFolder(new Hash(checkCollisions));
+				instance.process(PATH, folder);
+				hash = folder.hash;
+				hashes.put(instance, hash);
+			}
+			return hash;
+		}
+
+		/**
+		 * Folds the attributes of one object, taking the hashes of child objects from the calculator rather than
+		 * letting the walk descend into them. The order and inclusion rules are those of NonNullHashCollector.
+		 */
+		private class HashFolder extends SimpleProcessor {
+			private final Hash hash;
+
+			HashFolder(Hash hash) {
+				this.hash = hash;
+			}
+
+			@Override
+			public <R extends RosettaModelObject> boolean processRosetta(RosettaPath path, Class<? extends R> rosettaType, R instance,
+					RosettaModelObject parent, AttributeMeta... metas) {
+				Result result = NonNullHashCollector.shouldIncludeInHash(instance, parent, metas, hasDataCache);
+				if (result.includeInHash) {
+					hash.accumulate();
+				}
+				if (result.continueProcessing && instance != null) {
+					hash.append(hash(instance));
+				}
+				return false;
+			}
+
+			@Override
+			public <R extends RosettaModelObject> boolean processRosetta(RosettaPath path, Class<? extends R> rosettaType,
+					List<? extends R> instances, RosettaModelObject parent, AttributeMeta... metas) {
+				if (instances == null)
+					return false;
+				// as with SimpleProcessor, the elements are only descended into if all of them should be
+				boolean continueProcessing = true;
+				for (R instance : instances) {
+					Result result = NonNullHashCollector.shouldIncludeInHash(instance, parent, metas, hasDataCache);
+					if (result.includeInHash) {
+						hash.accumulate();
+					}
+					continueProcessing &= result.continueProcessing;
+				}
+				if (continueProcessing) {
+					for (R instance : instances) {
+						if (instance != null) {
+							hash.append(hash(instance));
+						}
+					}
+				}
+				return false;
+			}
+
+			@Override
+			public <T> void processBasic(RosettaPath path, Class<? extends T> rosettaType, T instance, RosettaModelObject parent,
+					AttributeMeta... metas) {
+				if (NonNullHashCollector.shouldIncludeInHash(path, instance, parent, metas)) {
+					hash.accumulate(hashcodeGenerator.generateInt(instance));
+					if (hash.check != null) {
+						hash.check.accumulate(checkGenerator.generateLong(instance));
+					}
+				}
+			}
+
+			@Override
+			public Report report() {
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * The hash of a run of values together with 31 to the power of the number of values in it, and the collision check
+	 * hash of the same run, if any.
+	 */
+	static class Hash {
+		int value;
+		int power = 1;
+		final WideHashReport check;
+
+		Hash(boolean checkCollisions) {
+			this.check = checkCollisions ? new WideHashReport(128) : null;
+		}
+
+		void accumulate() {
+			value *= 31;
+			power *= 31;
+			if (check != null) {
+				check.accumulate();
+			}
+		}
+
+		void accumulate(int newValue) {
+			value = value * 31 + newValue;
+			power *= 31;
+		}
+
+		void append(Hash other) {
+			value = value * other.power + other.value;
+			power *= other.power;
+			if (check != null) {
+				check.append(other.check);
+			}
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package com.regnosys.rosetta.common.hashing;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.regnosys.rosetta.common.util.SimpleProcessor;
+import com.rosetta.model.lib.RosettaModelObject;
+import com.rosetta.model.lib.path.RosettaPath;
+import com.rosetta.model.lib.process.AttributeMeta;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A Processor that collects a 128-bit hash of everything that makes two model objects equal: the path, type and value
+ * of every attribute, including metadata, and the position of every list element. Unlike the global key hashes,
+ * objects with the same fingerprint can stand in for each other, e.g. in cache keys.
+ */
+public class FingerprintCollector extends SimpleProcessor {
+
+	private static final long NULL_ELEMENT = 0x61C8864680B583EBL;
+	private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+	private final LongHashGenerator hashGenerator = new LongHashGenerator();
+	private final WideHashReport report = new WideHashReport(128);
+
+	/**
+	 * Adds the type of the object the processor is about to walk, which is not itself passed to the processor.
+	 */
+	public FingerprintCollector withRoot(RosettaModelObject root) {
+		report.accumulate(hashGenerator.generateLong(root.getType().getName()));
+		return this;
+	}
+
+	/**
+	 * Adds a value that is not an attribute of a model object, such as a function argument: a model object, a basic
+	 * value, null or a list of these.
+	 *
+	 * @return false if the value, or an element of it, has no hash that is the same in every JVM, in which case the
+	 * fingerprint should not be used
+	 */
+	public boolean accumulateValue(Object value) {
+		if (value == null) {
+			report.accumulate(NULL_ELEMENT);
+			return true;
+		}
+		if (value instanceof RosettaModelObject) {
+			RosettaModelObject object = (RosettaModelObject) value;
+			RosettaPath path = RosettaPath.valueOf(object.getType().getSimpleName());
+			report.accumulate();
+			report.accumulate(hashGenerator.generateLong(object.getType().getName()));
+			object.process(path, this);
+			return true;
+		}
+		if (value instanceof List) {
+			List<?> list = (List<?>) value;
+			report.accumulate(list.size());
+			for (Object element : list) {
+				if (!accumulateValue(element)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		if (RosettaBasicTypesHashGenerator.basicType(value) == RosettaBasicTypesHashGenerator.BasicType.UNSUPPORTED) {
+			return false;
+		}
+		report.accumulate(hashValue(value));
+		return true;
+	}
+
+	@Override
+	public <R extends RosettaModelObject> boolean processRosetta(RosettaPath path, Class<? extends R> rosettaType, R instance,
+			RosettaModelObject parent, AttributeMeta... metas) {
+		if (instance == null) {
+			return false;
+		}
+		report.accumulate();
+		report.accumulate(hashGenerator.generateLong(path.toString()));
+		report.accumulate(hashGenerator.generateLong(instance.getType().getName()));
+		return true;
+	}
+
+	/**
+	 * The elements of the list are walked with paths numbering the non-null elements only, so the null elements are
+	 * recorded here.
+	 */
+	@Override
+	public <R extends RosettaModelObject> boolean processRosetta(RosettaPath path, Class<? extends R> rosettaType,
+			List<? extends R> instances, RosettaModelObject parent, AttributeMeta... metas) {
+		if (instances == null) {
+			return false;
+		}
+		report.accumulate();
+		report.accumulate(hashGenerator.generateLong(path.toString()));
+		report.accumulate(instances.size());
+		for (R instance : instances) {
+			report.accumulate(instance == null ? NULL_ELEMENT : hashGenerator.generateLong(instance.getType().getName()));
+		}
+		return true;
+	}
+
+	@Override
+	public <T> void processBasic(RosettaPath path, Class<? extends T> rosettaType, T instance, RosettaModelObject parent,
+			AttributeMeta... metas) {
+		if (instance != null) {
+			report.accumulate(hashGenerator.generateLong(path.toString()));
+			report.accumulate(hashValue(instance));
+		}
+	}
+
+	@Override
+	public <T> void processBasic(RosettaPath path, Class<? extends T> rosettaType, Collection<? extends T> instances,
+			RosettaModelObject parent, AttributeMeta... metas) {
+		if (instances != null) {
+			report.accumulate(hashGenerator.generateLong(path.toString()));
+			report.accumulate(instances.size());
+			for (T instance : instances) {
+				report.accumulate(instance == null ? NULL_ELEMENT : hashValue(instance));
+			}
+		}
+	}
+
+	private long hashValue(Object value) {
+		switch (RosettaBasicTypesHashGenerator.basicType(value)) {
+			case BIG_DECIMAL:
+				// the generator ignores trailing zeros, which equals does not
+				return LongHashGenerator.mix(hashGenerator.generateLong(value) * MULTIPLIER + ((BigDecimal) value).scale());
+			case UNSUPPORTED:
+				return LongHashGenerator.mix(hashGenerator.generateLong(value.getClass().getName()) * MULTIPLIER + value.hashCode());
+			default:
+				return hashGenerator.generateLong(value);
+		}
+	}
+
+	@Override
+	public WideHashReport report() {
+		return report;
+	}
+}
@@ -0,0 +1,40 @@
+package com.regnosys.rosetta.common.hashing;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.rosetta.model.lib.RosettaModelObjectBuilder;
+import com.rosetta.model.lib.path.RosettaPath;
+
+/**
+ * Calculates the global key of each object keyed during one run of a {@link GlobalKeyProcessStep}.
+ */
+public interface GlobalKeyCalculator {
+
+	String calculateKey(RosettaPath path, RosettaModelObjectBuilder builder);
+
+	/**
+	 * @return the hash used to detect collisions of the object's global key, or null to hash the object with the
+	 * collision check the step was created with
+	 */
+	default String calculateCollisionCheck(RosettaPath path, RosettaModelObjectBuilder builder) {
+		return null;
+	}
+}
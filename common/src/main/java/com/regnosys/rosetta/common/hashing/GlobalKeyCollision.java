@@ -0,0 +1,60 @@
+package com.regnosys.rosetta.common.hashing;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.rosetta.model.lib.path.RosettaPath;
+
+/**
+ * Two objects with different content that were given the same global key.
+ */
+public class GlobalKeyCollision {
+
+	private final String globalKey;
+	private final RosettaPath firstPath;
+	private final RosettaPath secondPath;
+
+	public GlobalKeyCollision(String globalKey, RosettaPath firstPath, RosettaPath secondPath) {
+		this.globalKey = globalKey;
+		this.firstPath = firstPath;
+		this.secondPath = secondPath;
+	}
+
+	public String getGlobalKey() {
+		return globalKey;
+	}
+
+	public RosettaPath getFirstPath() {
+		return firstPath;
+	}
+
+	public RosettaPath getSecondPath() {
+		return secondPath;
+	}
+
+	@Override
+	public String toString() {
+		return "GlobalKeyCollision{" +
+				"globalKey='" + globalKey + '\'' +
+				", firstPath=" + firstPath +
+				", secondPath=" + secondPath +
+				'}';
+	}
+}
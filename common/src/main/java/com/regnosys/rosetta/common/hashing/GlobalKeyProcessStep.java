@@ -20,6 +20,8 @@ package com.regnosys.rosetta.common.hashing;
  * ==============
  */
 
+import com.regnosys.rosetta.common.postprocess.FusedPostProcessStep;
+import com.regnosys.rosetta.common.postprocess.PostProcessPass;
 import com.regnosys.rosetta.common.util.SimpleBuilderProcessor;
 import com.rosetta.lib.postprocess.PostProcessorReport;
 import com.rosetta.model.lib.GlobalKey;
@@ -30,24 +32,43 @@ import com.rosetta.model.lib.path.RosettaPath;
 import com.rosetta.model.lib.process.AttributeMeta;
 import com.rosetta.model.lib.process.BuilderProcessor;
 import com.rosetta.model.lib.process.Processor;
-import com.rosetta.model.lib.process.PostProcessStep;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Supplier;
 
 /**
  * @author TomForwood
  * Calculates all the global key values for an object and it's children and returns them as a map from key->RosettaModelObject
  * It uses a Processor supplied in the constructor to do the actual calculation of hashes for applicable objects.
+ *
+ * Optionally a second, independent, hash can be supplied to detect global key collisions. Every keyed object is then
+ * also hashed with it and objects that share a global key but not the second hash are reported in
+ * {@link KeyPostProcessReport#getCollisions()}.
  */
-public class GlobalKeyProcessStep implements PostProcessStep {
+public class GlobalKeyProcessStep implements FusedPostProcessStep {
 
 	private final Supplier<? extends Processor> hashCalculator;
+	private final Supplier<? extends Processor> collisionCheck;
 
 	public GlobalKeyProcessStep(Supplier<? extends Processor> s) {
+		this(s, null);
+	}
+
+	/**
+	 * @param s calculates the global keys
+	 * @param collisionCheck calculates the hash used to detect key collisions, e.g. {@code WideHashCollector::new}, or
+	 *                       null to not check for collisions
+	 */
+	public GlobalKeyProcessStep(Supplier<? extends Processor> s, Supplier<? extends Processor> collisionCheck) {
 		this.hashCalculator = s;
+		this.collisionCheck = collisionCheck;
 	}
 
 	@Override
@@ -64,18 +85,52 @@ public class GlobalKeyProcessStep implements PostProcessStep {
 	public <T extends RosettaModelObject> KeyPostProcessReport runProcessStep(Class<? extends T> topClass, T instance) {
 		RosettaModelObjectBuilder builder = instance.toBuilder();
 		KeyPostProcessReport thisReport = new KeyPostProcessReport(builder, new HashMap<>());
-		ReKeyProcessor reKeyProcessor = new ReKeyProcessor(thisReport);
+		ReKeyProcessor reKeyProcessor = new ReKeyProcessor(thisReport, createKeyCalculator());
 		RosettaPath path = RosettaPath.valueOf(instance.getType().getSimpleName());
 		reKeyProcessor.processRosetta(path, topClass, builder, null);
 		builder.process(path, reKeyProcessor);
 		return thisReport;
 	}
 
+	@Override
+	public <T extends RosettaModelObject> List<PostProcessPass> createPasses(Class<? extends T> topClass, RosettaModelObjectBuilder builder) {
+		return Collections.singletonList(createPass(createReport(builder)));
+	}
+
+	KeyPostProcessReport createReport(RosettaModelObjectBuilder builder) {
+		return new KeyPostProcessReport(builder, new HashMap<>());
+	}
+
+	/**
+	 * The key map of the report is only complete once the phase running the returned pass has finished.
+	 */
+	PostProcessPass createPass(KeyPostProcessReport report) {
+		return new PostProcessPass(() -> new ReKeyProcessor(report, createKeyCalculator()), true);
+	}
+
+	/**
+	 * Creates the calculator used for one run of this step. By default every key is calculated by walking the keyed
+	 * object with a new Processor from the supplier given in the constructor, and so is every collision check.
+	 */
+	protected GlobalKeyCalculator createKeyCalculator() {
+		return (path, builder) -> {
+			Processor hasher = hashCalculator.get();
+			builder.process(path, hasher);
+			return hasher.report().toString();
+		};
+	}
+
 	class ReKeyProcessor extends SimpleBuilderProcessor {
 		KeyPostProcessReport report;
+		GlobalKeyCalculator keyCalculator;
+		// only populated when checking for collisions: global key -> first object given that key, and every distinct
+		// global key and check hash pair seen
+		Map<String, KeyedObject> keyedObjects = new HashMap<>();
+		Set<String> checkedKeys = new HashSet<>();
 
-		ReKeyProcessor(KeyPostProcessReport report) {
+		ReKeyProcessor(KeyPostProcessReport report, GlobalKeyCalculator keyCalculator) {
 			this.report = report;
+			this.keyCalculator = keyCalculator;
 		}
 
 		@Override
@@ -88,15 +143,29 @@ public class GlobalKeyProcessStep implements PostProcessStep {
 				return false;
 			if (isGlobalKey(builder, metas)) {
 				GlobalKey.GlobalKeyBuilder keyBuilder = (GlobalKey.GlobalKeyBuilder) builder;
-				Processor hasher = hashCalculator.get();
-				builder.process(path, hasher);
-				Processor.Report rep = hasher.report();
-				keyBuilder.getOrCreateMeta().setGlobalKey(rep.toString());
+				String globalKey = keyCalculator.calculateKey(path, builder);
+				keyBuilder.getOrCreateMeta().setGlobalKey(globalKey);
 				report.keyMap.put(path, keyBuilder);
+				if (collisionCheck != null) {
+					checkCollision(globalKey, path, builder);
+				}
 			}
 			return true;
 		}
 
+		private void checkCollision(String globalKey, RosettaPath path, RosettaModelObjectBuilder builder) {
+			String check = keyCalculator.calculateCollisionCheck(path, builder);
+			if (check == null) {
+				Processor hasher = collisionCheck.get();
+				builder.process(path, hasher);
+				check = hasher.report().toString();
+			}
+			KeyedObject first = keyedObjects.putIfAbsent(globalKey, new KeyedObject(path, check));
+			if (first != null && !first.check.equals(check) && checkedKeys.add(globalKey + ":" + check)) {
+				report.collisions.add(new GlobalKeyCollision(globalKey, first.path, path));
+			}
+		}
+
 		@Override
 		public Report report() {
 			return report;
@@ -109,10 +178,21 @@ public class GlobalKeyProcessStep implements PostProcessStep {
 		}
 	}
 
+	private static class KeyedObject {
+		final RosettaPath path;
+		final String check;
+
+		KeyedObject(RosettaPath path, String check) {
+			this.path = path;
+			this.check = check;
+		}
+	}
+
 	public class KeyPostProcessReport implements PostProcessorReport, BuilderProcessor.Report {
 
 		private final RosettaModelObjectBuilder result;
 		private final Map<RosettaPath, GlobalKey> keyMap;
+		private final List<GlobalKeyCollision> collisions = new ArrayList<>();
 
 		public KeyPostProcessReport(RosettaModelObjectBuilder result, Map<RosettaPath, GlobalKey> keyMap) {
 			this.result = result;
@@ -127,5 +207,13 @@ public class GlobalKeyProcessStep implements PostProcessStep {
 		public Map<RosettaPath, GlobalKey> getKeyMap() {
 			return keyMap;
 		}
+
+		/**
+		 * @return the objects given the same global key despite having different content, always empty unless the step
+		 * was created with a collision check
+		 */
+		public List<GlobalKeyCollision> getCollisions() {
+			return collisions;
+		}
 	}
 }
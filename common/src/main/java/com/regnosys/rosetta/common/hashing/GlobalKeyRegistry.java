@@ -0,0 +1,302 @@
+package com.regnosys.rosetta.common.hashing;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.regnosys.rosetta.common.model.ObjectSizeEstimator;
+import com.regnosys.rosetta.common.serialisation.RosettaObjectMapper;
+import com.regnosys.rosetta.common.util.SimpleProcessor;
+import com.rosetta.model.lib.GlobalKey;
+import com.rosetta.model.lib.RosettaModelObject;
+import com.rosetta.model.lib.RosettaModelObjectBuilder;
+import com.rosetta.model.lib.meta.FieldWithMeta;
+import com.rosetta.model.lib.meta.GlobalKeyFields;
+import com.rosetta.model.lib.path.RosettaPath;
+import com.rosetta.model.lib.process.AttributeMeta;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Global keys and the objects they identify across all the documents of a batch, so that a reference in one document
+ * can be resolved to an object defined in another.
+ *
+ * {@link ReKeyProcessStep} registers the external keys of each document it processes and {@link ReferenceResolverProcessStep}
+ * the globally keyed objects, each then falling back to the registry for the keys not found in the document itself. A
+ * document is only visible to documents processed after it, so documents referred to by earlier ones in the batch should
+ * be added up front with {@link #register(RosettaModelObject)}.
+ *
+ * External keys are only unique within a document, so an external key registered by two documents for different
+ * objects is ambiguous and no longer resolved through the registry.
+ *
+ * The registry is safe to share between threads. To bound its memory, once the objects held are estimated by
+ * {@link ObjectSizeEstimator} to exceed a byte budget the oldest are serialised to a memory mapped spill file and
+ * deserialised again when looked up.
+ */
+public class GlobalKeyRegistry implements Closeable {
+
+	private static final int SEGMENT_SIZE = 16 * 1024 * 1024;
+
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+	private final Map<String, String> externalKeys = new ConcurrentHashMap<>();
+	private final Set<String> ambiguousExternalKeys = ConcurrentHashMap.newKeySet();
+	private final long maxBytesInMemory;
+	private final Queue<String> inMemoryKeys = new ConcurrentLinkedQueue<>();
+	private final AtomicLong inMemoryBytes = new AtomicLong();
+	private final Path spillFile;
+	private final ObjectMapper mapper;
+	private final List<MappedByteBuffer> segments = new ArrayList<>();
+	private FileChannel channel;
+	private long fileSize;
+	private int spilledCount;
+
+	/**
+	 * Creates a registry that holds every object in memory.
+	 */
+	public GlobalKeyRegistry() {
+		this(Long.MAX_VALUE, null, null);
+	}
+
+	/**
+	 * @param maxBytesInMemory the estimated bytes of objects to hold in memory before spilling the oldest
+	 * @param spillFile the file to spill to, created or truncated when first needed
+	 */
+	public GlobalKeyRegistry(long maxBytesInMemory, Path spillFile) {
+		this(maxBytesInMemory, spillFile, RosettaObjectMapper.getNewRosettaObjectMapper());
+	}
+
+	public GlobalKeyRegistry(long maxBytesInMemory, Path spillFile, ObjectMapper mapper) {
+		if (maxBytesInMemory < Long.MAX_VALUE && spillFile == null) {
+			throw new IllegalArgumentException("A spill file is required to bound the memory held by the objects");
+		}
+		this.maxBytesInMemory = maxBytesInMemory;
+		this.spillFile = spillFile;
+		this.mapper = mapper;
+	}
+
+	/**
+	 * Registers every globally keyed object of a document, and its external key, as already set by
+	 * {@link ReKeyProcessStep}.
+	 */
+	public void register(RosettaModelObject document) {
+		document.process(RosettaPath.valueOf(document.getType().getSimpleName()), new RegisteringProcessor());
+	}
+
+	/**
+	 * Registers an object under its global key. The first object registered under a key is kept. Builders are
+	 * registered as an immutable copy, as they are shared by every document resolving a reference to them.
+	 */
+	public void put(String globalKey, Class<?> valueClass, Object value) {
+		// checked first so that an object already registered, e.g. by an earlier document, is not copied again
+		if (entries.containsKey(globalKey)) {
+			return;
+		}
+		Object snapshot = value instanceof RosettaModelObjectBuilder ? ((RosettaModelObjectBuilder) value).build() : value;
+		long bytes = maxBytesInMemory < Long.MAX_VALUE ? ObjectSizeEstimator.estimate(snapshot) : 0;
+		if (entries.putIfAbsent(globalKey, new Entry(valueClass, snapshot, bytes)) == null) {
+			inMemoryKeys.add(globalKey);
+			if (inMemoryBytes.addAndGet(bytes) > maxBytesInMemory) {
+				spillOldest();
+			}
+		}
+	}
+
+	/**
+	 * @return the object registered under the global key if its class is assignable to the value type, otherwise null
+	 */
+	public Object get(String globalKey, Class<?> valueType) {
+		Entry entry = entries.get(globalKey);
+		if (entry == null || !valueType.isAssignableFrom(entry.valueClass)) {
+			return null;
+		}
+		Object value = entry.value;
+		return value != null ? value : read(entry);
+	}
+
+	/**
+	 * Registers the global key of the object with an external key. If another global key is already registered under
+	 * the external key, the external key is recorded as ambiguous.
+	 */
+	public void putExternalKey(String externalKey, String globalKey) {
+		String registered = externalKeys.putIfAbsent(externalKey, globalKey);
+		if (registered != null && !registered.equals(globalKey)) {
+			ambiguousExternalKeys.add(externalKey);
+		}
+	}
+
+	/**
+	 * @return the global key of the object with the external key, or null if there is none or the external key is
+	 * ambiguous
+	 */
+	public String getGlobalKey(String externalKey) {
+		return ambiguousExternalKeys.contains(externalKey) ? null : externalKeys.get(externalKey);
+	}
+
+	/**
+	 * @return the external keys registered for more than one object, which are not resolved
+	 */
+	public Set<String> getAmbiguousExternalKeys() {
+		return Collections.unmodifiableSet(ambiguousExternalKeys);
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public synchronized int getSpilledCount() {
+		return spilledCount;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		entries.clear();
+		externalKeys.clear();
+		ambiguousExternalKeys.clear();
+		inMemoryKeys.clear();
+		segments.clear();
+		if (channel != null) {
+			channel.close();
+			channel = null;
+		}
+	}
+
+	private synchronized void spillOldest() {
+		while (inMemoryBytes.get() > maxBytesInMemory) {
+			String globalKey = inMemoryKeys.poll();
+			if (globalKey == null) {
+				return;
+			}
+			Entry entry = entries.get(globalKey);
+			try {
+				byte[] bytes = mapper.writeValueAsBytes(entry.value);
+				Entry spilled = write(entry.valueClass, bytes);
+				entries.put(globalKey, spilled);
+			} catch (IOException e) {
+				throw new UncheckedIOException("Unable to spill global key " + globalKey + " to " + spillFile, e);
+			}
+			inMemoryBytes.addAndGet(-entry.bytes);
+			spilledCount++;
+		}
+	}
+
+	private Entry write(Class<?> valueClass, byte[] bytes) throws IOException {
+		if (channel == null) {
+			channel = FileChannel.open(spillFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+					StandardOpenOption.READ, StandardOpenOption.WRITE);
+		}
+		MappedByteBuffer segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+		if (segment == null || segment.remaining() < bytes.length) {
+			int size = Math.max(SEGMENT_SIZE, bytes.length);
+			segment = channel.map(FileChannel.MapMode.READ_WRITE, fileSize, size);
+			fileSize += size;
+			segments.add(segment);
+		}
+		int offset = segment.position();
+		segment.put(bytes);
+		return new Entry(valueClass, segments.size() - 1, offset, bytes.length);
+	}
+
+	private Object read(Entry entry) {
+		ByteBuffer buffer;
+		synchronized (this) {
+			buffer = segments.get(entry.segment).duplicate();
+		}
+		byte[] bytes = new byte[entry.length];
+		buffer.position(entry.offset);
+		buffer.get(bytes);
+		try {
+			return mapper.readValue(bytes, entry.valueClass);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to read spilled " + entry.valueClass.getName() + " from " + spillFile, e);
+		}
+	}
+
+	private static class Entry {
+		private final Class<?> valueClass;
+		// null once spilled
+		private final Object value;
+		// the estimated bytes of the value held in memory
+		private final long bytes;
+		private final int segment;
+		private final int offset;
+		private final int length;
+
+		Entry(Class<?> valueClass, Object value, long bytes) {
+			this(valueClass, value, bytes, -1, 0, 0);
+		}
+
+		Entry(Class<?> valueClass, int segment, int offset, int length) {
+			this(valueClass, null, 0, segment, offset, length);
+		}
+
+		private Entry(Class<?> valueClass, Object value, long bytes, int segment, int offset, int length) {
+			this.valueClass = valueClass;
+			this.value = value;
+			this.bytes = bytes;
+			this.segment = segment;
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+
+	private class RegisteringProcessor extends SimpleProcessor {
+
+		@Override
+		public <R extends RosettaModelObject> boolean processRosetta(RosettaPath path,
+				Class<? extends R> rosettaType,
+				R instance,
+				RosettaModelObject parent,
+				AttributeMeta... metas) {
+			if (instance instanceof GlobalKey) {
+				GlobalKeyFields meta = ((GlobalKey) instance).getMeta();
+				Object value = instance instanceof FieldWithMeta ? ((FieldWithMeta<?>) instance).getValue() : instance;
+				Class<?> valueClass = instance instanceof FieldWithMeta ? ((FieldWithMeta<?>) instance).getValueType() : instance.getType();
+				if (meta != null && meta.getGlobalKey() != null && value != null && valueClass != null) {
+					put(meta.getGlobalKey(), valueClass, value);
+					if (meta.getExternalKey() != null) {
+						putExternalKey(meta.getExternalKey(), meta.getGlobalKey());
+					}
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public Report report() {
+			return null;
+		}
+	}
+}
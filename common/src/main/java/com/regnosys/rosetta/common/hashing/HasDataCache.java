@@ -0,0 +1,120 @@
+package com.regnosys.rosetta.common.hashing;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.regnosys.rosetta.common.util.SimpleProcessor;
+import com.rosetta.model.lib.RosettaModelObject;
+import com.rosetta.model.lib.RosettaModelObjectBuilder;
+import com.rosetta.model.lib.path.RosettaPath;
+import com.rosetta.model.lib.process.AttributeMeta;
+
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Answers {@code instance.toBuilder().hasData()} without copying immutable objects into builders.
+ *
+ * Builders are asked directly. For immutable objects the check of the generated hasData methods is made on the
+ * attributes reported by the object's process method: every attribute but meta is checked, a basic attribute having
+ * data if it is set, a list of basic values if it is not empty and an object, or any element of a list of objects, if
+ * it has data itself. The result for each object is kept, so a walk of a whole tree checks every object at most once.
+ * Objects must not be modified, other than their meta, while the cache is in use.
+ */
+class HasDataCache {
+
+	private static final RosettaPath PATH = RosettaPath.valueOf("hasData");
+	private static final String META = "meta";
+
+	private final Map<RosettaModelObject, Boolean> results = new IdentityHashMap<>();
+
+	boolean hasData(RosettaModelObject instance) {
+		Boolean result = results.get(instance);
+		if (result == null) {
+			if (instance instanceof RosettaModelObjectBuilder) {
+				result = ((RosettaModelObjectBuilder) instance).hasData();
+			} else {
+				AttributeChecker checker = new AttributeChecker();
+				instance.process(PATH, checker);
+				result = checker.hasData;
+			}
+			results.put(instance, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Checks the attributes of one object, taking the result for child objects from the cache rather than letting the
+	 * walk descend into them.
+	 */
+	private class AttributeChecker extends SimpleProcessor {
+		private boolean hasData;
+
+		@Override
+		public <R extends RosettaModelObject> boolean processRosetta(RosettaPath path, Class<? extends R> rosettaType, R instance,
+				RosettaModelObject parent, AttributeMeta... metas) {
+			if (!hasData && instance != null && !isMeta(path)) {
+				hasData = hasData(instance);
+			}
+			return false;
+		}
+
+		@Override
+		public <R extends RosettaModelObject> boolean processRosetta(RosettaPath path, Class<? extends R> rosettaType,
+				List<? extends R> instances, RosettaModelObject parent, AttributeMeta... metas) {
+			if (!hasData && instances != null && !isMeta(path)) {
+				for (R instance : instances) {
+					if (instance != null && hasData(instance)) {
+						hasData = true;
+						break;
+					}
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public <T> void processBasic(RosettaPath path, Class<? extends T> rosettaType, T instance, RosettaModelObject parent,
+				AttributeMeta... metas) {
+			if (!hasData && instance != null && !isMeta(path)) {
+				hasData = true;
+			}
+		}
+
+		@Override
+		public <T> void processBasic(RosettaPath path, Class<? extends T> rosettaType, Collection<? extends T> instances,
+				RosettaModelObject parent, AttributeMeta... metas) {
+			if (!hasData && instances != null && !instances.isEmpty() && !isMeta(path)) {
+				hasData = true;
+			}
+		}
+
+		private boolean isMeta(RosettaPath path) {
+			return META.equals(path.getElement().getPath());
+		}
+
+		@Override
+		public Report report() {
+			return null;
+		}
+	}
+}
@@ -26,26 +26,66 @@ import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.ZonedDateTime;
 
+import com.rosetta.model.lib.records.Date;
+
 /**
  *   Implements integer hashcode generation for each Rosetta basic type
+ *
+ *   {@link #generateInt(Object)} gives the same values as {@link #generate(Object)} without boxing the result or
+ *   allocating any intermediate strings.
  */
 public class IntegerHashGenerator extends RosettaBasicTypesHashGenerator<Integer> {
 
+    private static final int[] POWERS_OF_31 = new int[19];
+    static {
+        POWERS_OF_31[0] = 1;
+        for (int i = 1; i < POWERS_OF_31.length; i++) {
+            POWERS_OF_31[i] = POWERS_OF_31[i - 1] * 31;
+        }
+    }
+
+    private static final long[] POWERS_OF_10 = new long[19];
+    static {
+        POWERS_OF_10[0] = 1;
+        for (int i = 1; i < POWERS_OF_10.length; i++) {
+            POWERS_OF_10[i] = POWERS_OF_10[i - 1] * 10;
+        }
+    }
+
+    public int generateInt(Object object) {
+        switch (basicType(object)) {
+            case STRING:
+                return hash((String) object);
+            case INTEGER:
+                return (Integer) object;
+            case LOCAL_DATE:
+                return hash((LocalDate) object);
+            case DATE:
+                return hash(((Date) object).toLocalDate());
+            case LOCAL_TIME:
+                return hash((LocalTime) object);
+            case LOCAL_DATE_TIME:
+                return hash((LocalDateTime) object);
+            case ZONED_DATE_TIME:
+                return hash((ZonedDateTime) object);
+            case BIG_DECIMAL:
+                return hash((BigDecimal) object);
+            case BOOLEAN:
+                return hash((Boolean) object);
+            case ENUM:
+                return hash(((Enum<?>) object).name());
+            default:
+                throw new IllegalArgumentException("Unsupported type: " + object.getClass());
+        }
+    }
+
     /**
      * If hashcode is being used as a proxy to equality, then it is up to the user to ensure consistent character 
      * encoding.
      */
     @Override
     Integer handle(String string) {
-        char[] value = string.toCharArray();
-
-        int h = 0;
-        int length = value.length;
-        for (int i = 0; i < length; i++) {
-            h = 31 * h + value[i];
-        }
-
-        return h;
+        return hash(string);
     }
 
     @Override
@@ -55,26 +95,22 @@ public class IntegerHashGenerator extends RosettaBasicTypesHashGenerator<Integer
 
     @Override
     Integer handle(LocalDate localDate) {
-        int yearValue = localDate.getYear();
-        int monthValue = localDate.getMonthValue();
-        int dayValue = localDate.getDayOfMonth();
-        return (yearValue & 0xFFFFF800) ^ ((yearValue << 11) + (monthValue << 6) + (dayValue));
+        return hash(localDate);
     }
 
     @Override
     Integer handle(LocalTime localTime) {
-        long nod = localTime.toNanoOfDay();
-        return (int) (nod ^ (nod >>> 32));
+        return hash(localTime);
     }
 
     @Override
     Integer handle(LocalDateTime localDateTime) {
-        return handle(localDateTime.toLocalDate()) ^ handle(localDateTime.toLocalTime());
+        return hash(localDateTime);
     }
 
     @Override
     Integer handle(ZonedDateTime zonedDateTime) {
-        return handle(zonedDateTime.toLocalDateTime()) ^ zonedDateTime.getOffset().getTotalSeconds() ^ handle(zonedDateTime.getZone().getId());
+        return hash(zonedDateTime);
     }
 
     /**
@@ -83,17 +119,111 @@ public class IntegerHashGenerator extends RosettaBasicTypesHashGenerator<Integer
      */
     @Override
     Integer handle(BigDecimal bigDecimal) {
-        return handle(bigDecimal.stripTrailingZeros().toPlainString());
+        return hash(bigDecimal);
     }
     
     @Override
     Integer handle(Boolean bool) {
-        return bool ? 1231 : 1237;
+        return hash(bool);
     }
     
     @Override
     Integer handle(Enum<?> e) {
-        return handle(e.name());
+        return hash(e.name());
+    }
+
+    /**
+     * String.hashCode is defined as the polynomial hash of the characters, and is cached by the string.
+     */
+    private static int hash(String string) {
+        return string.hashCode();
+    }
+
+    private static int hash(LocalDate localDate) {
+        int yearValue = localDate.getYear();
+        int monthValue = localDate.getMonthValue();
+        int dayValue = localDate.getDayOfMonth();
+        return (yearValue & 0xFFFFF800) ^ ((yearValue << 11) + (monthValue << 6) + (dayValue));
     }
 
+    private static int hash(LocalTime localTime) {
+        long nod = localTime.toNanoOfDay();
+        return (int) (nod ^ (nod >>> 32));
+    }
+
+    private static int hash(LocalDateTime localDateTime) {
+        return hash(localDateTime.toLocalDate()) ^ hash(localDateTime.toLocalTime());
+    }
+
+    private static int hash(ZonedDateTime zonedDateTime) {
+        return hash(zonedDateTime.toLocalDateTime()) ^ zonedDateTime.getOffset().getTotalSeconds() ^ hash(zonedDateTime.getZone().getId());
+    }
+
+    private static int hash(Boolean bool) {
+        return bool ? 1231 : 1237;
+    }
+
+    /**
+     * The hash of {@code bigDecimal.stripTrailingZeros().toPlainString()}, calculated from the unscaled value and
+     * scale. Values with more than 18 digits fall back to hashing the string.
+     */
+    private static int hash(BigDecimal bigDecimal) {
+        if (bigDecimal.signum() == 0) {
+            return '0';
+        }
+        if (bigDecimal.precision() > 18) {
+            return hash(bigDecimal.stripTrailingZeros().toPlainString());
+        }
+        int scale = bigDecimal.scale();
+        long unscaled = scale == 0 ? bigDecimal.longValue() : bigDecimal.unscaledValue().longValue();
+        while (unscaled % 10 == 0) {
+            unscaled /= 10;
+            scale--;
+        }
+
+        int h = 0;
+        if (unscaled < 0) {
+            h = '-';
+            unscaled = -unscaled;
+        }
+        int digits = digits(unscaled);
+        if (scale <= 0) {
+            h = appendDigits(h, unscaled, digits);
+            for (int i = scale; i < 0; i++) {
+                h = 31 * h + '0';
+            }
+        } else if (scale < digits) {
+            long divisor = POWERS_OF_10[scale];
+            h = appendDigits(h, unscaled / divisor, digits - scale);
+            h = 31 * h + '.';
+            h = appendDigits(h, unscaled % divisor, scale);
+        } else {
+            h = 31 * (31 * h + '0') + '.';
+            for (int i = digits; i < scale; i++) {
+                h = 31 * h + '0';
+            }
+            h = appendDigits(h, unscaled, digits);
+        }
+        return h;
+    }
+
+    /**
+     * Appends the given number of decimal digits of a non-negative value, padded with leading zeros, to a hash.
+     */
+    private static int appendDigits(int h, long value, int digits) {
+        h *= POWERS_OF_31[digits];
+        for (int i = digits - 1; i >= 0; i--) {
+            h += (int) ('0' + value % 10) * POWERS_OF_31[digits - 1 - i];
+            value /= 10;
+        }
+        return h;
+    }
+
+    private static int digits(long value) {
+        int digits = 1;
+        while (digits < POWERS_OF_10.length && value >= POWERS_OF_10[digits]) {
+            digits++;
+        }
+        return digits;
+    }
 }
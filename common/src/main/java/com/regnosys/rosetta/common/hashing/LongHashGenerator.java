@@ -0,0 +1,175 @@
+package com.regnosys.rosetta.common.hashing;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+
+import com.rosetta.model.lib.records.Date;
+
+/**
+ *   Implements 64-bit hashcode generation for each Rosetta basic type, for use in wide global keys.
+ *
+ *   Every value is passed through a 64-bit finalisation mix so that small differences in input, such as consecutive
+ *   integers, affect all bits of the result.
+ */
+public class LongHashGenerator extends RosettaBasicTypesHashGenerator<Long> {
+
+    private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+    private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    public long generateLong(Object object) {
+        switch (basicType(object)) {
+            case STRING:
+                return hash((String) object);
+            case INTEGER:
+                return mix((Integer) object);
+            case LOCAL_DATE:
+                return hash((LocalDate) object);
+            case DATE:
+                return hash(((Date) object).toLocalDate());
+            case LOCAL_TIME:
+                return hash((LocalTime) object);
+            case LOCAL_DATE_TIME:
+                return hash((LocalDateTime) object);
+            case ZONED_DATE_TIME:
+                return hash((ZonedDateTime) object);
+            case BIG_DECIMAL:
+                return hash((BigDecimal) object);
+            case BOOLEAN:
+                return mix((Boolean) object ? 1231 : 1237);
+            case ENUM:
+                return hash(((Enum<?>) object).name());
+            default:
+                throw new IllegalArgumentException("Unsupported type: " + object.getClass());
+        }
+    }
+
+    @Override
+    Long handle(String string) {
+        return hash(string);
+    }
+
+    @Override
+    Long handle(Integer integer) {
+        return mix(integer);
+    }
+
+    @Override
+    Long handle(LocalDate localDate) {
+        return hash(localDate);
+    }
+
+    @Override
+    Long handle(LocalTime localTime) {
+        return hash(localTime);
+    }
+
+    @Override
+    Long handle(LocalDateTime localDateTime) {
+        return hash(localDateTime);
+    }
+
+    @Override
+    Long handle(ZonedDateTime zonedDateTime) {
+        return hash(zonedDateTime);
+    }
+
+    /**
+     * As with {@link IntegerHashGenerator}, trailing zeros are ignored so that 2.0 and 2.00 produce the same hashcode.
+     */
+    @Override
+    Long handle(BigDecimal bigDecimal) {
+        return hash(bigDecimal);
+    }
+
+    @Override
+    Long handle(Boolean bool) {
+        return mix(bool ? 1231 : 1237);
+    }
+
+    @Override
+    Long handle(Enum<?> e) {
+        return hash(e.name());
+    }
+
+    /**
+     * The MurmurHash3 64-bit finaliser.
+     */
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static long hash(String string) {
+        long h = FNV_OFFSET;
+        for (int i = 0; i < string.length(); i++) {
+            h = (h ^ string.charAt(i)) * FNV_PRIME;
+        }
+        return mix(h);
+    }
+
+    private static long hash(LocalDate localDate) {
+        return mix(localDate.toEpochDay());
+    }
+
+    private static long hash(LocalTime localTime) {
+        return mix(localTime.toNanoOfDay());
+    }
+
+    private static long hash(LocalDateTime localDateTime) {
+        return mix(hash(localDateTime.toLocalDate()) * MULTIPLIER + hash(localDateTime.toLocalTime()));
+    }
+
+    private static long hash(ZonedDateTime zonedDateTime) {
+        long h = hash(zonedDateTime.toLocalDateTime());
+        h = h * MULTIPLIER + zonedDateTime.getOffset().getTotalSeconds();
+        h = h * MULTIPLIER + hash(zonedDateTime.getZone().getId());
+        return mix(h);
+    }
+
+    private static long hash(BigDecimal bigDecimal) {
+        if (bigDecimal.signum() == 0) {
+            return mix(0);
+        }
+        BigDecimal stripped = bigDecimal.stripTrailingZeros();
+        BigInteger unscaled = stripped.unscaledValue();
+        long h;
+        if (unscaled.bitLength() < 64) {
+            h = unscaled.longValue();
+        } else {
+            h = FNV_OFFSET;
+            for (byte b : unscaled.toByteArray()) {
+                h = (h ^ b) * FNV_PRIME;
+            }
+        }
+        return mix(mix(h) * MULTIPLIER + stripped.scale());
+    }
+}
@@ -40,6 +40,7 @@ import java.util.Optional;
 public class NonNullHashCollector extends SimpleProcessor {
 
 	private final IntegerHashGenerator hashcodeGenerator;
+	private final HasDataCache hasDataCache = new HasDataCache();
 	protected final IntegerReport report;
 	private static final RosettaPath EXTERNAL_REFERENCE_PATH_ELEMENT = RosettaPath.valueOf("externalReference");
 
@@ -51,7 +52,7 @@ public class NonNullHashCollector extends SimpleProcessor {
 	@Override
 	public <R extends RosettaModelObject> boolean processRosetta(RosettaPath path, Class<? extends R> rosettaType, R instance,
 			RosettaModelObject parent, AttributeMeta... metas) {
-		Result result = shouldIncludeInHash(instance, parent, metas);
+		Result result = shouldIncludeInHash(instance, parent, metas, hasDataCache);
 		if (result.includeInHash) {
 			report.accumulate();
 		}
@@ -61,9 +62,8 @@ public class NonNullHashCollector extends SimpleProcessor {
 	@Override
 	public <T> void processBasic(RosettaPath path, Class<? extends T> rosettaType, T instance, RosettaModelObject parent,
 			AttributeMeta... metas) {
-		if (instance != null
-				&& (!metaContains(metas, AttributeMeta.META) || isExternalKeyOrReference(path, parent, metas))) {
-			int hash = hashcodeGenerator.generate(instance);
+		if (shouldIncludeInHash(path, instance, parent, metas)) {
+			int hash = hashcodeGenerator.generateInt(instance);
 			report.accumulate(hash);
 		}
 
@@ -74,7 +74,13 @@ public class NonNullHashCollector extends SimpleProcessor {
 		return report;
 	}
 
-	private boolean isExternalKeyOrReference(RosettaPath path, RosettaModelObject parent,
+	static boolean shouldIncludeInHash(RosettaPath path, Object instance, RosettaModelObject parent,
+			AttributeMeta[] metas) {
+		return instance != null
+				&& (!metaContains(metas, AttributeMeta.META) || isExternalKeyOrReference(path, parent, metas));
+	}
+
+	private static boolean isExternalKeyOrReference(RosettaPath path, RosettaModelObject parent,
 			AttributeMeta[] metas) {
 		return metaContains(metas, AttributeMeta.EXTERNAL_KEY) || (ReferenceWithMeta.class.isInstance(parent)
 				&& path.endsWith(EXTERNAL_REFERENCE_PATH_ELEMENT));
@@ -86,9 +92,9 @@ public class NonNullHashCollector extends SimpleProcessor {
 	 * MetaFieldsBuilder and an IS_META meta attribute - This is meta attribute we
 	 * want to hash like scheme
 	 */
-	private Result shouldIncludeInHash(RosettaModelObject instance, RosettaModelObject parent,
-			AttributeMeta[] metas) {
-		if (instance == null || !instance.toBuilder().hasData()) {
+	static Result shouldIncludeInHash(RosettaModelObject instance, RosettaModelObject parent,
+			AttributeMeta[] metas, HasDataCache hasDataCache) {
+		if (instance == null || !hasDataCache.hasData(instance)) {
 			return new Result(false, false);
 		}
 		if (isGlobalKeyFields(instance)) {
@@ -115,7 +121,7 @@ public class NonNullHashCollector extends SimpleProcessor {
 		return new Result(true, true);
 	}
 
-	private boolean isReferenceWithMetaContainingReference(RosettaModelObject instance) {
+	private static boolean isReferenceWithMetaContainingReference(RosettaModelObject instance) {
 		if (isReferenceWithMeta(instance)) {
 			ReferenceWithMeta<?> refBuilder = (ReferenceWithMeta<?>) instance;
 			return Optional.ofNullable(refBuilder.getReference()).isPresent();
@@ -123,26 +129,26 @@ public class NonNullHashCollector extends SimpleProcessor {
 		return false;
 	}
 
-	private boolean isReferenceWithMeta(RosettaModelObject instance) {
+	private static boolean isReferenceWithMeta(RosettaModelObject instance) {
 		return instance instanceof ReferenceWithMeta
 				&& ((ReferenceWithMeta<?>) instance).getReference() != null;
 	}
 
-	private boolean isGlobalKeyFields(RosettaModelObject instance) {
+	private static boolean isGlobalKeyFields(RosettaModelObject instance) {
 		return instance instanceof GlobalKeyFields;
 	}
 
-	private boolean isTemplateFields(RosettaModelObject instance) {
+	private static boolean isTemplateFields(RosettaModelObject instance) {
 		return instance instanceof TemplateFields;
 	}
 
-	private boolean metaContains(AttributeMeta[] metas, AttributeMeta attributeMeta) {
+	private static boolean metaContains(AttributeMeta[] metas, AttributeMeta attributeMeta) {
 		return Arrays.stream(metas).anyMatch(m -> m == attributeMeta);
 	}
 
-	private static class Result {
-		private final boolean includeInHash;
-		private final boolean continueProcessing;
+	static class Result {
+		final boolean includeInHash;
+		final boolean continueProcessing;
 
 		public Result(boolean includeInHash, boolean continueProcessing) {
 			this.includeInHash = includeInHash;
@@ -21,6 +21,8 @@ package com.regnosys.rosetta.common.hashing;
  */
 
 import com.regnosys.rosetta.common.hashing.GlobalKeyProcessStep.KeyPostProcessReport;
+import com.regnosys.rosetta.common.postprocess.FusedPostProcessStep;
+import com.regnosys.rosetta.common.postprocess.PostProcessPass;
 import com.regnosys.rosetta.common.util.SimpleBuilderProcessor;
 import com.rosetta.lib.postprocess.PostProcessorReport;
 import com.rosetta.model.lib.GlobalKey;
@@ -31,19 +33,30 @@ import com.rosetta.model.lib.meta.ReferenceWithMeta;
 import com.rosetta.model.lib.path.RosettaPath;
 import com.rosetta.model.lib.process.AttributeMeta;
 import com.rosetta.model.lib.process.BuilderProcessor.Report;
-import com.rosetta.model.lib.process.PostProcessStep;
 import com.rosetta.model.lib.process.ProcessingException;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
-public class ReKeyProcessStep implements PostProcessStep {
+public class ReKeyProcessStep implements FusedPostProcessStep {
 
 	private final GlobalKeyProcessStep keyProcessor;
+	private final GlobalKeyRegistry registry;
 
 	public ReKeyProcessStep(GlobalKeyProcessStep keyProcessor) {
+		this(keyProcessor, null);
+	}
+
+	/**
+	 * @param registry the batch registry to add each document's external keys to, and to look up the external
+	 *                 references not found in the document itself, or null to only re-key within the document
+	 */
+	public ReKeyProcessStep(GlobalKeyProcessStep keyProcessor, GlobalKeyRegistry registry) {
 		this.keyProcessor = keyProcessor;
+		this.registry = registry;
 	}
 
 	@Override
@@ -57,6 +70,18 @@ public class ReKeyProcessStep implements PostProcessStep {
 		return report;
 	}
 
+	/**
+	 * Hashes the keys on the first pass and re-keys the references on the second, once all global keys are known.
+	 */
+	@Override
+	public <T extends RosettaModelObject> List<PostProcessPass> createPasses(Class<? extends T> topClass, RosettaModelObjectBuilder builder) {
+		KeyPostProcessReport keyReport = keyProcessor.createReport(builder);
+		ReKeyPostProcessReport report = new ReKeyPostProcessReport(builder);
+		return Arrays.asList(
+				keyProcessor.createPass(keyReport),
+				new PostProcessPass(() -> new ReKeyProcessor(report, keyReport), true));
+	}
+
 	@Override
 	public Integer getPriority() {
 		return 2;
@@ -87,6 +112,9 @@ public class ReKeyProcessStep implements PostProcessStep {
 								globalKey.getValue().toString(), "ReKeyPostProcessor", globalKey.getKey());
 					}
 					externalGlobalMap.put(external, global);
+					if (registry != null) {
+						registry.putExternalKey(external, global);
+					}
 				}
 			}
 		}
@@ -98,6 +126,9 @@ public class ReKeyProcessStep implements PostProcessStep {
 				ReferenceWithMeta.ReferenceWithMetaBuilder<?> reference = (ReferenceWithMeta.ReferenceWithMetaBuilder<?>) builder;
 				String externalReference = reference.getExternalReference();
 				String globalRef = externalGlobalMap.get(externalReference);
+				if (globalRef == null && registry != null && externalReference != null) {
+					globalRef = registry.getGlobalKey(externalReference);
+				}
 				if (globalRef != null) {
 					reference.setGlobalReference(globalRef);
 				}
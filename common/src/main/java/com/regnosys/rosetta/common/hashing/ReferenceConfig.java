@@ -23,7 +23,9 @@ package com.regnosys.rosetta.common.hashing;
 import com.rosetta.model.lib.path.RosettaPath;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Configurable options for ReferenceResolverProcessStep, and post-ingestion key/reference processing.
@@ -42,10 +44,12 @@ public class ReferenceConfig {
 
     private final Class<?> scopeType;
     private final List<RosettaPath> excludedPaths;
+    private final SuffixNode excludedPathSuffixes;
 
     public ReferenceConfig(Class<?> scopeType, List<RosettaPath> excludedPaths) {
         this.scopeType = scopeType;
         this.excludedPaths = excludedPaths;
+        this.excludedPathSuffixes = SuffixNode.compile(excludedPaths);
     }
 
     public Class<?> getScopeType() {
@@ -55,4 +59,62 @@ public class ReferenceConfig {
     public List<RosettaPath> getExcludedPaths() {
         return excludedPaths;
     }
+
+    /**
+     * Equivalent to {@code getExcludedPaths().stream().anyMatch(path::endsWith)}, but matched against a trie of the
+     * reversed excluded paths built once when this config is created, so the cost is bounded by the depth of the path.
+     */
+    public boolean isExcluded(RosettaPath path) {
+        return excludedPathSuffixes.matches(path);
+    }
+
+    /**
+     * Trie of excluded path element names, leaf first. As with {@link RosettaPath#endsWith(RosettaPath)} indices are
+     * ignored and an excluded path element named {@code *} matches any name.
+     */
+    private static class SuffixNode {
+        private static final String WILDCARD = "*";
+
+        private final Map<String, SuffixNode> children = new HashMap<>();
+        private SuffixNode wildcard;
+        private boolean terminal;
+
+        static SuffixNode compile(List<RosettaPath> paths) {
+            SuffixNode root = new SuffixNode();
+            if (paths != null) {
+                for (RosettaPath path : paths) {
+                    SuffixNode node = root;
+                    for (RosettaPath p = path; p != null; p = p.getParent()) {
+                        node = node.child(p.getElement().getPath());
+                    }
+                    node.terminal = true;
+                }
+            }
+            return root;
+        }
+
+        private SuffixNode child(String name) {
+            if (WILDCARD.equals(name)) {
+                if (wildcard == null) {
+                    wildcard = new SuffixNode();
+                }
+                return wildcard;
+            }
+            return children.computeIfAbsent(name, n -> new SuffixNode());
+        }
+
+        boolean matches(RosettaPath path) {
+            if (terminal) {
+                return true;
+            }
+            if (path == null) {
+                return false;
+            }
+            SuffixNode child = children.get(path.getElement().getPath());
+            if (child != null && child.matches(path.getParent())) {
+                return true;
+            }
+            return wildcard != null && wildcard.matches(path.getParent());
+        }
+    }
 }
@@ -0,0 +1,109 @@
+package com.regnosys.rosetta.common.hashing;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Referenced objects by key value and type, as collected by {@link ReferenceResolverProcessStep}.
+ *
+ * A lookup returns the object stored under the key whose class is assignable to the requested type. If several are,
+ * the class first stored latest wins, which is the last of the matches in the order a Guava HashBasedTable column
+ * would have iterated them. Each stored class is registered under all of its supertypes
+ * when it is added, so a lookup is a hash probe on the key and one on the type.
+ */
+class ReferenceIndex {
+
+    private static final ClassValue<Class<?>[]> SUPERTYPES = new ClassValue<Class<?>[]>() {
+        @Override
+        protected Class<?>[] computeValue(Class<?> type) {
+            Set<Class<?>> supertypes = new LinkedHashSet<>();
+            Deque<Class<?>> toVisit = new ArrayDeque<>();
+            toVisit.add(type);
+            while (!toVisit.isEmpty()) {
+                Class<?> next = toVisit.poll();
+                if (supertypes.add(next)) {
+                    if (next.getSuperclass() != null) {
+                        toVisit.add(next.getSuperclass());
+                    }
+                    for (Class<?> i : next.getInterfaces()) {
+                        toVisit.add(i);
+                    }
+                }
+            }
+            if (type.isInterface()) {
+                supertypes.add(Object.class);
+            }
+            return supertypes.toArray(new Class<?>[0]);
+        }
+    };
+
+    // order in which each class was first stored, under any key
+    private final Map<Class<?>, Integer> classOrder = new HashMap<>();
+    private final Map<String, KeyEntry> entries = new HashMap<>();
+
+    void put(Class<?> valueClass, String keyValue, Object value) {
+        int order = classOrder.computeIfAbsent(valueClass, c -> classOrder.size());
+        KeyEntry entry = entries.computeIfAbsent(keyValue, k -> new KeyEntry());
+        Slot slot = entry.byClass.get(valueClass);
+        if (slot != null) {
+            slot.value = value;
+            return;
+        }
+        slot = new Slot(order, value);
+        entry.byClass.put(valueClass, slot);
+        for (Class<?> supertype : SUPERTYPES.get(valueClass)) {
+            entry.byAssignableType.merge(supertype, slot, (a, b) -> a.order > b.order ? a : b);
+        }
+    }
+
+    /**
+     * @return the object stored under the key with a class assignable to the value type, or null if there is none
+     */
+    Object get(String keyValue, Class<?> valueType) {
+        KeyEntry entry = entries.get(keyValue);
+        if (entry == null) {
+            return null;
+        }
+        Slot slot = entry.byAssignableType.get(valueType);
+        return slot == null ? null : slot.value;
+    }
+
+    private static class KeyEntry {
+        private final Map<Class<?>, Slot> byClass = new HashMap<>(4);
+        private final Map<Class<?>, Slot> byAssignableType = new HashMap<>();
+    }
+
+    private static class Slot {
+        private final int order;
+        private Object value;
+
+        Slot(int order, Object value) {
+            this.order = order;
+            this.value = value;
+        }
+    }
+}
@@ -20,10 +20,11 @@ package com.regnosys.rosetta.common.hashing;
  * ==============
  */
 
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Table;
+import com.regnosys.rosetta.common.postprocess.FusedPostProcessStep;
+import com.regnosys.rosetta.common.postprocess.PostProcessPass;
 import com.regnosys.rosetta.common.translation.Path;
 import com.regnosys.rosetta.common.util.PathUtils;
+import com.regnosys.rosetta.common.util.ProcessorBuilderAdapter;
 import com.regnosys.rosetta.common.util.SimpleBuilderProcessor;
 import com.regnosys.rosetta.common.util.SimpleProcessor;
 import com.rosetta.lib.postprocess.PostProcessorReport;
@@ -35,25 +36,66 @@ import com.rosetta.model.lib.meta.GlobalKeyFields;
 import com.rosetta.model.lib.meta.ReferenceWithMeta.ReferenceWithMetaBuilder;
 import com.rosetta.model.lib.path.RosettaPath;
 import com.rosetta.model.lib.process.AttributeMeta;
-import com.rosetta.model.lib.process.PostProcessStep;
+import com.rosetta.model.lib.process.BuilderProcessor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
 
 import static java.util.Optional.of;
 import static java.util.Optional.ofNullable;
 
-public class ReferenceResolverProcessStep implements PostProcessStep {
+public class ReferenceResolverProcessStep implements FusedPostProcessStep {
 
     private final ReferenceConfig referenceConfig;
+    private final ForkJoinPool pool;
+    private final GlobalKeyRegistry registry;
 
     public ReferenceResolverProcessStep(ReferenceConfig referenceConfig) {
+        this(referenceConfig, null, null);
+    }
+
+    /**
+     * @param registry the batch registry to add each document's globally keyed objects to, and to look up the global
+     *                 references not found in the document itself
+     */
+    public ReferenceResolverProcessStep(ReferenceConfig referenceConfig, GlobalKeyRegistry registry) {
+        this(referenceConfig, null, registry);
+    }
+
+    /**
+     * Creates a step that collects and resolves the references of an object in parallel on the given pool, for large
+     * documents such as batches of independent trades. The object is split at its list attributes and at the objects of
+     * the scope type of the config, each list element and scope object being collected and resolved as a separate task.
+     * The tasks only record what they collect and the values to set on the references they resolve, which are then
+     * replayed in the order a sequential walk would have reached them, so the result is the same as with a sequential
+     * step, including for builders whose referenced objects are shared by the references to them.
+     *
+     * When fused with other steps through a {@link com.regnosys.rosetta.common.postprocess.FusedPostProcessor} the objects
+     * are collected sequentially, in the shared first walk, and the references resolved in parallel once the shared
+     * second walk is over.
+     *
+     * @param pool the pool to run on, or null to process sequentially
+     */
+    public ReferenceResolverProcessStep(ReferenceConfig referenceConfig, ForkJoinPool pool) {
+        this(referenceConfig, pool, null);
+    }
+
+    public ReferenceResolverProcessStep(ReferenceConfig referenceConfig, ForkJoinPool pool, GlobalKeyRegistry registry) {
         this.referenceConfig = referenceConfig;
+        this.pool = pool;
+        this.registry = registry;
     }
 
     @Override
@@ -71,28 +113,78 @@ public class ReferenceResolverProcessStep implements PostProcessStep {
             Class<? extends T> topClass,
             T instance) {
         RosettaPath path = RosettaPath.valueOf(instance.getType().getSimpleName());
-        ReferenceCollector collector = new ReferenceCollector(referenceConfig);
-        instance.process(path, collector);
+        ReferenceCollector collector = new ReferenceCollector(referenceConfig, registry);
+        if (pool != null) {
+            pool.invoke(new CollectTask(instance, path, referenceConfig.getScopeType())).forEach(event -> event.accept(collector));
+        } else {
+            instance.process(path, collector);
+        }
         ReferenceResolver resolver =
-                new ReferenceResolver(referenceConfig, collector.globalReferences, collector.helper);
+                new ReferenceResolver(referenceConfig, collector.globalReferences, collector.helper, registry);
         RosettaModelObjectBuilder builder = instance.toBuilder();
-        builder.process(path, resolver);
+        if (pool != null) {
+            resolveInParallel(builder, path, resolver);
+        } else {
+            builder.process(path, resolver);
+        }
+        collector.registerCollected();
         return new ReferenceResolverPostProcessorReport<T>((T) builder.build());
     }
 
+    /**
+     * Collects the referenced objects on the first pass and resolves the references on the second, once every object
+     * has been collected. The collected objects are added to the registry, if any, once the second walk is over.
+     */
+    @Override
+    public <T extends RosettaModelObject> List<PostProcessPass> createPasses(Class<? extends T> topClass, RosettaModelObjectBuilder builder) {
+        ReferenceCollector collector = new ReferenceCollector(referenceConfig, registry);
+        PostProcessPass collect = new PostProcessPass(() -> new ProcessorBuilderAdapter(collector), false);
+        if (pool == null) {
+            return Arrays.asList(collect,
+                    new PostProcessPass(() -> new ReferenceResolver(referenceConfig, collector.globalReferences, collector.helper, registry), false,
+                            collector::registerCollected));
+        }
+        // the references are only resolved once the steps sharing the second walk, such as re-keying, are over
+        return Arrays.asList(collect,
+                new PostProcessPass(IdleProcessor::new, false, () -> {
+                    RosettaPath path = RosettaPath.valueOf(builder.getType().getSimpleName());
+                    resolveInParallel(builder, path,
+                            new ReferenceResolver(referenceConfig, collector.globalReferences, collector.helper, registry));
+                    collector.registerCollected();
+                }));
+    }
+
+    /**
+     * Records the values to set on the references in forked tasks, which only read the builder, then sets them in the
+     * order of a sequential walk.
+     */
+    private void resolveInParallel(RosettaModelObjectBuilder builder, RosettaPath path, ReferenceResolver resolver) {
+        pool.invoke(new ResolveTask(builder, path, resolver, referenceConfig.getScopeType())).forEach(Runnable::run);
+    }
+
     private static class ReferenceCollector extends SimpleProcessor {
 
         private static final Logger LOGGER = LoggerFactory.getLogger(ReferenceCollector.class);
 
-        // Table:
+        // ReferenceIndex:
         // - Class<?>: referenced Class<?> (e.g. Quantity or QuantityBuilder)
         // - String: reference key value (e.g. "quantity-1")
         // - Object: referenced object (e.g. populated Quantity object to be set on ReferenceWithMetaQuantity.value)
-        private final Table<Class<?>, String, Object> globalReferences = HashBasedTable.create();
-        private final ScopeReferenceHelper<Table<Class<?>, String, Object>> helper;
+        private final ReferenceIndex globalReferences;
+        private final ScopeReferenceHelper<ReferenceIndex> helper;
+        private final GlobalKeyRegistry registry;
+        // registered once the references are resolved, as the steps fused with the collection and resolution walks only
+        // finish keying an object's children, and re-keying its references, after the object itself is reached
+        private final List<Runnable> registrations = new ArrayList<>();
+
+        public ReferenceCollector(ReferenceConfig referenceConfig, GlobalKeyRegistry registry) {
+            this(new ReferenceIndex(), new ScopeReferenceHelper<>(referenceConfig, ReferenceIndex::new), registry);
+        }
 
-        public ReferenceCollector(ReferenceConfig referenceConfig) {
-            this.helper = new ScopeReferenceHelper<>(referenceConfig, () -> HashBasedTable.create());
+        private ReferenceCollector(ReferenceIndex globalReferences, ScopeReferenceHelper<ReferenceIndex> helper, GlobalKeyRegistry registry) {
+            this.globalReferences = globalReferences;
+            this.helper = helper;
+            this.registry = registry;
         }
 
         @Override
@@ -101,7 +193,7 @@ public class ReferenceResolverProcessStep implements PostProcessStep {
                                                                      R instance,
                                                                      RosettaModelObject parent,
                                                                      AttributeMeta... metas) {
-            helper.collectScopePath(path, rosettaType);
+            collectScopePath(path, rosettaType);
 
             if (instance instanceof GlobalKey && instance != null) {
                 GlobalKey globalKey = (GlobalKey) instance;
@@ -110,7 +202,7 @@ public class ReferenceResolverProcessStep implements PostProcessStep {
                 if (value != null && valueClass != null) {
                     ofNullable(globalKey.getMeta())
                             .map(GlobalKeyFields::getGlobalKey)
-                            .ifPresent(gk -> globalReferences.put(valueClass, gk, value));
+                            .ifPresent(gk -> collectGlobalReference(valueClass, gk, value));
                     of(globalKey)
                             .map(GlobalKey::getMeta)
                             .map(GlobalKeyFields::getKey)
@@ -121,14 +213,33 @@ public class ReferenceResolverProcessStep implements PostProcessStep {
                                         Path keyPath = PathUtils.toPath(path);
                                         LOGGER.debug("Collecting object [key={}, type={}, path={}]",
                                                 keyValue, valueClass.getName(), path);
-                                        helper.getDataForModelPath(keyPath)
-                                                .put(valueClass, keyValue, value);
+                                        collectScopedReference(keyPath, valueClass, keyValue, value);
                                     }));
                 }
             }
             return true;
         }
 
+        void collectScopePath(RosettaPath path, Class<?> rosettaType) {
+            helper.collectScopePath(path, rosettaType);
+        }
+
+        void collectGlobalReference(Class<?> valueClass, String globalKey, Object value) {
+            globalReferences.put(valueClass, globalKey, value);
+            if (registry != null) {
+                registrations.add(() -> registry.put(globalKey, valueClass, value));
+            }
+        }
+
+        void registerCollected() {
+            registrations.forEach(Runnable::run);
+            registrations.clear();
+        }
+
+        void collectScopedReference(Path keyPath, Class<?> valueClass, String keyValue, Object value) {
+            helper.getDataForModelPath(keyPath).put(valueClass, keyValue, value);
+        }
+
         private Object getValue(RosettaModelObject instance) {
             if (instance instanceof FieldWithMeta) {
                 return ((FieldWithMeta<?>) instance).getValue();
@@ -153,17 +264,20 @@ public class ReferenceResolverProcessStep implements PostProcessStep {
 
         private static final Logger LOGGER = LoggerFactory.getLogger(ReferenceResolver.class);
 
-        private final Table<Class<?>, String, Object> globalReferences;
-        private final ScopeReferenceHelper<Table<Class<?>, String, Object>> helper;
+        private final ReferenceIndex globalReferences;
+        private final ScopeReferenceHelper<ReferenceIndex> helper;
         private final ReferenceConfig config;
+        private final GlobalKeyRegistry registry;
 
         private ReferenceResolver(
                 ReferenceConfig config,
-                Table<Class<?>, String, Object> globalReferences,
-                ScopeReferenceHelper<Table<Class<?>, String, Object>> helper) {
+                ReferenceIndex globalReferences,
+                ScopeReferenceHelper<ReferenceIndex> helper,
+                GlobalKeyRegistry registry) {
             this.config = config;
             this.globalReferences = globalReferences;
             this.helper = helper;
+            this.registry = registry;
         }
 
         @SuppressWarnings({"unchecked", "rawtypes"})
@@ -173,51 +287,327 @@ public class ReferenceResolverProcessStep implements PostProcessStep {
                                                                      RosettaModelObjectBuilder builder,
                                                                      RosettaModelObjectBuilder parent,
                                                                      AttributeMeta... metas) {
-            if (config.getExcludedPaths().stream().anyMatch(endsWithPathElement -> path.endsWith(endsWithPathElement))) {
+            if (config.isExcluded(path)) {
                 return false;
             }
             if (builder instanceof ReferenceWithMetaBuilder) {
                 ReferenceWithMetaBuilder referenceWithMetaBuilder = (ReferenceWithMetaBuilder) builder;
-                if (referenceWithMetaBuilder.getGlobalReference() != null) {
-                    setReferenceValue(referenceWithMetaBuilder.getGlobalReference(),
-                            globalReferences,
+                Object referencedObject = findReferencedObject(referenceWithMetaBuilder, path);
+                if (referencedObject != null) {
+                    referenceWithMetaBuilder.setValue(referencedObject);
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return the object the reference refers to, or null if it is not found
+         */
+        Object findReferencedObject(ReferenceWithMetaBuilder<?> referenceWithMetaBuilder, RosettaPath path) {
+            if (referenceWithMetaBuilder.getGlobalReference() != null) {
+                Object referencedObject = findReferencedObject(referenceWithMetaBuilder.getGlobalReference(),
+                        globalReferences,
+                        referenceWithMetaBuilder,
+                        path);
+                if (referencedObject == null && registry != null) {
+                    referencedObject = findRegisteredObject(referenceWithMetaBuilder, path);
+                }
+                return referencedObject;
+            } else if (referenceWithMetaBuilder.getReference() != null) {
+                Path currentModelPath = PathUtils.toPath(path);
+                ReferenceIndex currentScopeReferences = helper.getDataForModelPath(currentModelPath);
+                if (currentScopeReferences != null) {
+                    return findReferencedObject(referenceWithMetaBuilder.getReference().getReference(),
+                            currentScopeReferences,
                             referenceWithMetaBuilder,
                             path);
-                } else if (referenceWithMetaBuilder.getReference() != null) {
-                    Path currentModelPath = PathUtils.toPath(path);
-                    Table<Class<?>, String, Object> currentScopeReferences = helper.getDataForModelPath(currentModelPath);
-                    if (currentScopeReferences != null) {
-                        setReferenceValue(referenceWithMetaBuilder.getReference().getReference(),
-                                currentScopeReferences,
-                                referenceWithMetaBuilder,
-                                path);
+                }
+            }
+            return null;
+        }
+
+        private Object findReferencedObject(String keyValue, ReferenceIndex references, ReferenceWithMetaBuilder<?> referenceWithMeta, RosettaPath path) {
+            if (keyValue != null) {
+                Object referencedObject = references.get(keyValue, referenceWithMeta.getValueType());
+                if (referencedObject != null) {
+                    LOGGER.debug("Setting resolved object [key={}, type={}, path={}, scope={}]",
+                            keyValue, referenceWithMeta.getValueType().getName(), path,
+                            Optional.ofNullable(config).map(ReferenceConfig::getScopeType).orElse(null));
+                    return referencedObject;
+                }
+            }
+            return null;
+        }
+
+        private Object findRegisteredObject(ReferenceWithMetaBuilder<?> referenceWithMeta, RosettaPath path) {
+            String globalReference = referenceWithMeta.getGlobalReference();
+            Object referencedObject = registry.get(globalReference, referenceWithMeta.getValueType());
+            if (referencedObject != null) {
+                LOGGER.debug("Setting object resolved from batch registry [key={}, type={}, path={}]",
+                        globalReference, referenceWithMeta.getValueType().getName(), path);
+            }
+            return referencedObject;
+        }
+
+        @Override
+        public Report report() {
+            return null;
+        }
+    }
+
+    /**
+     * Collects the objects under a list element or scope object, recording what is collected rather than storing it.
+     * Each element of a nested list, and each nested scope object, is collected by a forked task, the results of which
+     * are replayed in place of its subtree.
+     */
+    private static class CollectTask extends RecursiveTask<List<Consumer<ReferenceCollector>>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final RosettaModelObject instance;
+        private final RosettaPath path;
+        private final Class<?> scopeType;
+
+        private CollectTask(RosettaModelObject instance, RosettaPath path, Class<?> scopeType) {
+            this.instance = instance;
+            this.path = path;
+            this.scopeType = scopeType;
+        }
+
+        @Override
+        protected List<Consumer<ReferenceCollector>> compute() {
+            RecordingCollector recorder = new RecordingCollector(scopeType);
+            instance.process(path, recorder);
+            return recorder.events;
+        }
+    }
+
+    private static class RecordingCollector extends ReferenceCollector {
+
+        private final Class<?> scopeType;
+        private final List<Consumer<ReferenceCollector>> events = new ArrayList<>();
+
+        private RecordingCollector(Class<?> scopeType) {
+            super(null, null, null);
+            this.scopeType = scopeType;
+        }
+
+        @Override
+        public <R extends RosettaModelObject> boolean processRosetta(RosettaPath path,
+                                                                     Class<? extends R> rosettaType,
+                                                                     R instance,
+                                                                     RosettaModelObject parent,
+                                                                     AttributeMeta... metas) {
+            boolean descend = super.processRosetta(path, rosettaType, instance, parent, metas);
+            if (descend && instance != null && isScope(scopeType, rosettaType)) {
+                fork(instance, path);
+                return false;
+            }
+            return descend;
+        }
+
+        @Override
+        public <R extends RosettaModelObject> boolean processRosetta(RosettaPath path,
+                                                                     Class<? extends R> rosettaType,
+                                                                     List<? extends R> instances,
+                                                                     RosettaModelObject parent,
+                                                                     AttributeMeta... metas) {
+            if (super.processRosetta(path, rosettaType, instances, parent, metas)) {
+                // same indices as the model's own descent, which skips null elements
+                int index = 0;
+                for (R instance : instances) {
+                    if (instance != null) {
+                        fork(instance, path.withIndex(index++));
                     }
                 }
             }
+            return false;
+        }
+
+        private void fork(RosettaModelObject instance, RosettaPath path) {
+            CollectTask task = new CollectTask(instance, path, scopeType);
+            task.fork();
+            events.add(target -> task.join().forEach(event -> event.accept(target)));
+        }
+
+        @Override
+        void collectScopePath(RosettaPath path, Class<?> rosettaType) {
+            events.add(target -> target.collectScopePath(path, rosettaType));
+        }
+
+        @Override
+        void collectGlobalReference(Class<?> valueClass, String globalKey, Object value) {
+            events.add(target -> target.collectGlobalReference(valueClass, globalKey, value));
+        }
+
+        @Override
+        void collectScopedReference(Path keyPath, Class<?> valueClass, String keyValue, Object value) {
+            events.add(target -> target.collectScopedReference(keyPath, valueClass, keyValue, value));
+        }
+    }
+
+    private static boolean isScope(Class<?> scopeType, Class<?> rosettaType) {
+        return scopeType != null && scopeType.isAssignableFrom(rosettaType);
+    }
+
+    /**
+     * Finds the values of the references under a list element or scope object, forking a task for each element of a
+     * nested list and each nested scope object. The builder is only read, as referenced builders are shared by every
+     * reference to them, and the values are returned as actions setting them, in the order of a sequential walk.
+     */
+    private static class ResolveTask extends RecursiveTask<List<Runnable>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final RosettaModelObjectBuilder builder;
+        private final RosettaPath path;
+        private final ReferenceResolver resolver;
+        private final Class<?> scopeType;
+
+        private ResolveTask(RosettaModelObjectBuilder builder, RosettaPath path, ReferenceResolver resolver, Class<?> scopeType) {
+            this.builder = builder;
+            this.path = path;
+            this.resolver = resolver;
+            this.scopeType = scopeType;
+        }
+
+        @Override
+        protected List<Runnable> compute() {
+            RecordingResolver recorder = new RecordingResolver(resolver, scopeType);
+            builder.process(path, recorder);
+            // nothing may be set until every task has finished reading
+            for (ResolveTask task : recorder.forked) {
+                task.join();
+            }
+            return recorder.events;
+        }
+    }
+
+    /**
+     * A builder walk always descends into list elements, so the elements handed to forked tasks are remembered and any
+     * callback made from within them is swallowed, as in {@link ProcessorBuilderAdapter}.
+     */
+    private static class RecordingResolver implements BuilderProcessor {
+
+        private final ReferenceResolver resolver;
+        private final Class<?> scopeType;
+        private final List<Runnable> events = new ArrayList<>();
+        private final List<ResolveTask> forked = new ArrayList<>();
+        private final Set<RosettaModelObjectBuilder> skipped = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        private RecordingResolver(ReferenceResolver resolver, Class<?> scopeType) {
+            this.resolver = resolver;
+            this.scopeType = scopeType;
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        @Override
+        public <R extends RosettaModelObject> boolean processRosetta(RosettaPath path,
+                                                                     Class<R> rosettaType,
+                                                                     RosettaModelObjectBuilder builder,
+                                                                     RosettaModelObjectBuilder parent,
+                                                                     AttributeMeta... metas) {
+            if (skipped.contains(parent) || resolver.config.isExcluded(path)) {
+                return false;
+            }
+            if (recordValue(path, builder)) {
+                // the sequential walk goes on into the value once it is set
+                events.add(() -> builder.process(path, resolver));
+                return false;
+            }
+            if (builder != null && isScope(scopeType, rosettaType)) {
+                fork(builder, path);
+                return false;
+            }
             return true;
         }
 
-        private void setReferenceValue(String keyValue, Table<Class<?>, String, Object> references, ReferenceWithMetaBuilder referenceWithMeta, RosettaPath path) {
-            if (keyValue != null) {
-                Map<Class<?>, Object> clazzToReferencedObjectMap = references.column(keyValue);
-                if (clazzToReferencedObjectMap != null) {
-                    List<Entry<Class<?>, Object>> clazzToReferencedObjectEntries = clazzToReferencedObjectMap.entrySet().stream()
-                            .filter(e -> doTest(referenceWithMeta.getValueType(), e.getKey()))
-                            .collect(Collectors.toList());
-                    clazzToReferencedObjectEntries.stream()
-                            .map(Entry::getValue)
-                            .forEach(referencedObject -> {
-                                LOGGER.debug("Setting resolved object [key={}, type={}, path={}, scope={}]",
-                                        keyValue, referenceWithMeta.getValueType().getName(), path,
-                                        Optional.ofNullable(config).map(ReferenceConfig::getScopeType).orElse(null));
-                                referenceWithMeta.setValue(referencedObject);
-                            });
+        @Override
+        public <R extends RosettaModelObject> boolean processRosetta(RosettaPath path,
+                                                                     Class<R> rosettaType,
+                                                                     List<? extends RosettaModelObjectBuilder> builders,
+                                                                     RosettaModelObjectBuilder parent,
+                                                                     AttributeMeta... metas) {
+            if (builders == null) {
+                return false;
+            }
+            if (skipped.contains(parent)) {
+                builders.stream().filter(Objects::nonNull).forEach(skipped::add);
+                return false;
+            }
+            // as in the sequential walk, the values of every element are set before the walk descends into each element,
+            // whatever the resolver returned for it, with the indices of the walk, which skips null elements
+            List<Boolean> resolved = new ArrayList<>(builders.size());
+            for (int i = 0; i < builders.size(); i++) {
+                RosettaPath elementPath = path.withIndex(i);
+                resolved.add(!resolver.config.isExcluded(elementPath) && recordValue(elementPath, builders.get(i)));
+            }
+            int index = 0;
+            for (int i = 0; i < builders.size(); i++) {
+                RosettaModelObjectBuilder builder = builders.get(i);
+                if (builder != null) {
+                    skipped.add(builder);
+                    RosettaPath elementPath = path.withIndex(index++);
+                    if (resolved.get(i)) {
+                        events.add(() -> builder.process(elementPath, resolver));
+                    } else {
+                        fork(builder, elementPath);
+                    }
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return whether the builder is a reference whose value is found, recording the action setting it
+         */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private boolean recordValue(RosettaPath path, RosettaModelObjectBuilder builder) {
+            if (builder instanceof ReferenceWithMetaBuilder) {
+                ReferenceWithMetaBuilder reference = (ReferenceWithMetaBuilder) builder;
+                Object referencedObject = resolver.findReferencedObject(reference, path);
+                if (referencedObject != null) {
+                    events.add(() -> reference.setValue(referencedObject));
+                    return true;
                 }
             }
+            return false;
         }
 
-        private boolean doTest(Class<?> valueType, Class<?> clazz) {
-            return valueType.isAssignableFrom(clazz);
+        private void fork(RosettaModelObjectBuilder builder, RosettaPath path) {
+            ResolveTask task = new ResolveTask(builder, path, resolver, scopeType);
+            task.fork();
+            forked.add(task);
+            events.add(() -> task.join().forEach(Runnable::run));
+        }
+
+        @Override
+        public <T> void processBasic(RosettaPath path, Class<T> rosettaType, T instance, RosettaModelObjectBuilder parent, AttributeMeta... metas) {
+            // references are never basic types
+        }
+
+        @Override
+        public <T> void processBasic(RosettaPath path, Class<T> rosettaType, Collection<? extends T> instances, RosettaModelObjectBuilder parent, AttributeMeta... metas) {
+        }
+
+        @Override
+        public Report report() {
+            return null;
+        }
+    }
+
+    /**
+     * Takes part in a shared walk without doing anything, for a step that does its work once the walk is over.
+     */
+    private static class IdleProcessor extends SimpleBuilderProcessor {
+
+        @Override
+        public <R extends RosettaModelObject> boolean processRosetta(RosettaPath path,
+                                                                     Class<R> rosettaType,
+                                                                     RosettaModelObjectBuilder builder,
+                                                                     RosettaModelObjectBuilder parent,
+                                                                     AttributeMeta... metas) {
+            return false;
         }
 
         @Override
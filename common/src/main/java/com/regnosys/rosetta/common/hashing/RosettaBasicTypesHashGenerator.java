@@ -34,39 +34,71 @@ import com.rosetta.model.lib.records.Date;
  */
 public abstract class RosettaBasicTypesHashGenerator<T> {
 
-    public <U> T generate(U object) {
-        if (object instanceof String) {
-            return handle((String) object);
-        }
-        else if (object instanceof Integer) {
-            return handle((Integer) object);
-        }
-        else if (object instanceof LocalDate) {
-            return handle((LocalDate) object);
-        }
-        else if (object instanceof Date) {
-        	return handle(((Date) object).toLocalDate());
-        }
-        else if (object instanceof LocalTime) {
-            return handle((LocalTime) object);
-        }
-        else if (object instanceof LocalDateTime) {
-            return handle((LocalDateTime) object);
-        }
-        else if (object instanceof ZonedDateTime) {
-            return handle((ZonedDateTime) object);
-        }
-        else if (object instanceof BigDecimal) {
-            return handle((BigDecimal) object);
-        }
-        else if (object instanceof Boolean) {
-            return handle((Boolean) object);
+    /**
+     * The basic types in the order they are matched against, so that a class implementing several of them is always
+     * handled the same way.
+     */
+    enum BasicType {
+        STRING(String.class),
+        INTEGER(Integer.class),
+        LOCAL_DATE(LocalDate.class),
+        DATE(Date.class),
+        LOCAL_TIME(LocalTime.class),
+        LOCAL_DATE_TIME(LocalDateTime.class),
+        ZONED_DATE_TIME(ZonedDateTime.class),
+        BIG_DECIMAL(BigDecimal.class),
+        BOOLEAN(Boolean.class),
+        ENUM(Enum.class),
+        UNSUPPORTED(null);
+
+        private final Class<?> type;
+
+        BasicType(Class<?> type) {
+            this.type = type;
         }
-        else if (object instanceof Enum) {
-            return handle((Enum<?>) object);
+    }
+
+    private static final ClassValue<BasicType> BASIC_TYPES = new ClassValue<BasicType>() {
+        @Override
+        protected BasicType computeValue(Class<?> type) {
+            for (BasicType basicType : BasicType.values()) {
+                if (basicType.type != null && basicType.type.isAssignableFrom(type)) {
+                    return basicType;
+                }
+            }
+            return BasicType.UNSUPPORTED;
         }
+    };
 
-        throw new IllegalArgumentException("Unsupported type: " + object.getClass());
+    static BasicType basicType(Object object) {
+        return BASIC_TYPES.get(object.getClass());
+    }
+
+    public <U> T generate(U object) {
+        switch (basicType(object)) {
+            case STRING:
+                return handle((String) object);
+            case INTEGER:
+                return handle((Integer) object);
+            case LOCAL_DATE:
+                return handle((LocalDate) object);
+            case DATE:
+                return handle(((Date) object).toLocalDate());
+            case LOCAL_TIME:
+                return handle((LocalTime) object);
+            case LOCAL_DATE_TIME:
+                return handle((LocalDateTime) object);
+            case ZONED_DATE_TIME:
+                return handle((ZonedDateTime) object);
+            case BIG_DECIMAL:
+                return handle((BigDecimal) object);
+            case BOOLEAN:
+                return handle((Boolean) object);
+            case ENUM:
+                return handle((Enum<?>) object);
+            default:
+                throw new IllegalArgumentException("Unsupported type: " + object.getClass());
+        }
     }
 
     abstract T handle(String string);
@@ -34,6 +34,8 @@ public class ScopeReferenceHelper<T> {
 
     private final ReferenceConfig referenceConfig;
     private final Map<Path, T> scopeToDataMap = new ConcurrentHashMap<>();
+    // index of the keys of scopeToDataMap, by path element name and index
+    private final ScopeNode scopeIndex = new ScopeNode();
     private final Supplier<T> newDataStructureSupplier;
 
     public ScopeReferenceHelper(ReferenceConfig referenceConfig, Supplier<T> newDataStructureSupplier) {
@@ -43,23 +45,66 @@ public class ScopeReferenceHelper<T> {
 
     public void collectScopePath(RosettaPath path, Class<?> rosettaType) {
         if (this.referenceConfig.getScopeType() != null && this.referenceConfig.getScopeType().isAssignableFrom(rosettaType)) {
-            scopeToDataMap.putIfAbsent(PathUtils.toPath(path), newDataStructureSupplier.get());
+            Path scopePath = PathUtils.toPath(path);
+            if (scopeToDataMap.putIfAbsent(scopePath, newDataStructureSupplier.get()) == null) {
+                scopeIndex.add(scopePath);
+            }
         }
     }
 
     public T getDataForModelPath(Path modelPath) {
         Path scopePath = getScopePath(modelPath);
-        return scopeToDataMap.computeIfAbsent(scopePath, x -> newDataStructureSupplier.get());
+        return scopeToDataMap.computeIfAbsent(scopePath, x -> {
+            scopeIndex.add(x);
+            return newDataStructureSupplier.get();
+        });
     }
 
+    /**
+     * @return the longest scope path that the model path starts with, matching on name and index, or EMPTY_SCOPE
+     */
     private Path getScopePath(Path modelPath) {
-        return scopeToDataMap.keySet().stream()
-                .filter(p -> p.fullStartMatches(modelPath))
-                .findFirst()
-                .orElse(EMPTY_SCOPE);
+        Path scopePath = scopeIndex.findLongestMatch(modelPath);
+        return scopePath != null ? scopePath : EMPTY_SCOPE;
     }
 
     public Map<Path, T> getScopeToDataMap() {
         return scopeToDataMap;
     }
+
+    /**
+     * Trie over path elements, where an absent index is treated as index 0 as in {@link Path#fullStartMatches(Path)}.
+     */
+    private static class ScopeNode {
+        private final Map<String, Map<Integer, ScopeNode>> children = new ConcurrentHashMap<>();
+        private volatile Path scopePath;
+
+        void add(Path path) {
+            ScopeNode node = this;
+            for (Path.PathElement element : path.getElements()) {
+                node = node.children
+                        .computeIfAbsent(element.getPathName(), name -> new ConcurrentHashMap<>())
+                        .computeIfAbsent(element.getIndexOrZero(), index -> new ScopeNode());
+            }
+            if (node != this) {
+                node.scopePath = path;
+            }
+        }
+
+        Path findLongestMatch(Path path) {
+            Path match = null;
+            ScopeNode node = this;
+            for (Path.PathElement element : path.getElements()) {
+                Map<Integer, ScopeNode> byIndex = node.children.get(element.getPathName());
+                node = byIndex == null ? null : byIndex.get(element.getIndexOrZero());
+                if (node == null) {
+                    break;
+                }
+                if (node.scopePath != null) {
+                    match = node.scopePath;
+                }
+            }
+            return match;
+        }
+    }
 }
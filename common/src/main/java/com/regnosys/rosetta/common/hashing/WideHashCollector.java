@@ -0,0 +1,77 @@
+package com.regnosys.rosetta.common.hashing;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.regnosys.rosetta.common.hashing.NonNullHashCollector.Result;
+import com.regnosys.rosetta.common.util.SimpleProcessor;
+import com.rosetta.model.lib.RosettaModelObject;
+import com.rosetta.model.lib.path.RosettaPath;
+import com.rosetta.model.lib.process.AttributeMeta;
+
+/**
+ * A Processor that collects a 64 or 128-bit hash of the same values that {@link NonNullHashCollector} collects, for
+ * use as a wider global key:
+ *
+ * <pre>
+ *     new GlobalKeyProcessStep(() -> new WideHashCollector(128))
+ * </pre>
+ */
+public class WideHashCollector extends SimpleProcessor {
+
+	private final LongHashGenerator hashcodeGenerator;
+	protected final WideHashReport report;
+	private final HasDataCache hasDataCache = new HasDataCache();
+
+	public WideHashCollector() {
+		this(128);
+	}
+
+	/**
+	 * @param bits 64 or 128
+	 */
+	public WideHashCollector(int bits) {
+		this.hashcodeGenerator = new LongHashGenerator();
+		this.report = new WideHashReport(bits);
+	}
+
+	@Override
+	public <R extends RosettaModelObject> boolean processRosetta(RosettaPath path, Class<? extends R> rosettaType, R instance,
+			RosettaModelObject parent, AttributeMeta... metas) {
+		Result result = NonNullHashCollector.shouldIncludeInHash(instance, parent, metas, hasDataCache);
+		if (result.includeInHash) {
+			report.accumulate();
+		}
+		return result.continueProcessing;
+	}
+
+	@Override
+	public <T> void processBasic(RosettaPath path, Class<? extends T> rosettaType, T instance, RosettaModelObject parent,
+			AttributeMeta... metas) {
+		if (NonNullHashCollector.shouldIncludeInHash(path, instance, parent, metas)) {
+			report.accumulate(hashcodeGenerator.generateLong(instance));
+		}
+	}
+
+	@Override
+	public WideHashReport report() {
+		return report;
+	}
+}
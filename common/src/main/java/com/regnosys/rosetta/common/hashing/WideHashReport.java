@@ -0,0 +1,110 @@
+package com.regnosys.rosetta.common.hashing;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.rosetta.model.lib.process.BuilderProcessor;
+import com.rosetta.model.lib.process.Processor;
+
+/**
+ * A Processor or BuilderProcessor report that accumulates a 64 or 128-bit hash.
+ *
+ * Each lane is a polynomial fold over 64-bit values with its own odd multiplier, and the second lane sees a differently
+ * mixed copy of every value, so the two lanes are independent. {@link #toString()} finalises each lane with a 64-bit
+ * mix and renders it as 16 hex characters.
+ */
+public class WideHashReport implements BuilderProcessor.Report, Processor.Report {
+
+	private static final long MULTIPLIER_1 = 0x9E3779B97F4A7C15L;
+	private static final long MULTIPLIER_2 = 0xC2B2AE3D27D4EB4FL;
+	private static final long SEED_2 = 0x165667B19E3779F9L;
+	private static final long MARKER = 0x27D4EB2F165667C5L;
+
+	private final boolean twoLanes;
+	private long lane1;
+	private long lane2;
+	// each multiplier to the power of the number of values accumulated
+	private long power1 = 1;
+	private long power2 = 1;
+
+	/**
+	 * @param bits 64 or 128
+	 */
+	public WideHashReport(int bits) {
+		if (bits != 64 && bits != 128) {
+			throw new IllegalArgumentException("Unsupported hash width: " + bits + " bits, expected 64 or 128");
+		}
+		this.twoLanes = bits == 128;
+	}
+
+	/**
+	 * Marks the start of a nested object.
+	 */
+	public void accumulate() {
+		accumulate(MARKER);
+	}
+
+	public void accumulate(long newValue) {
+		lane1 = lane1 * MULTIPLIER_1 + newValue;
+		power1 *= MULTIPLIER_1;
+		if (twoLanes) {
+			lane2 = lane2 * MULTIPLIER_2 + LongHashGenerator.mix(newValue ^ SEED_2);
+			power2 *= MULTIPLIER_2;
+		}
+	}
+
+	/**
+	 * Accumulates the values accumulated by another report of the same width as if they were accumulated by this one,
+	 * so that the hash of an object can be built from the hashes of its children.
+	 */
+	public void append(WideHashReport other) {
+		lane1 = lane1 * other.power1 + other.lane1;
+		power1 *= other.power1;
+		if (twoLanes) {
+			lane2 = lane2 * other.power2 + other.lane2;
+			power2 *= other.power2;
+		}
+	}
+
+	public long getLow() {
+		return LongHashGenerator.mix(lane1);
+	}
+
+	/**
+	 * @return the second 64 bits of a 128-bit hash, or 0 for a 64-bit hash
+	 */
+	public long getHigh() {
+		return twoLanes ? LongHashGenerator.mix(lane2) : 0;
+	}
+
+	@Override
+	public String toString() {
+		return twoLanes ? toHex(getHigh()) + toHex(getLow()) : toHex(getLow());
+	}
+
+	private static String toHex(long value) {
+		String hex = Long.toHexString(value);
+		StringBuilder padded = new StringBuilder(16);
+		for (int i = hex.length(); i < 16; i++) {
+			padded.append('0');
+		}
+		return padded.append(hex).toString();
+	}
+}
@@ -20,58 +20,207 @@ package com.regnosys.rosetta.common.model;
  * ==============
  */
 
-import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Optional;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 public class CachingMethodInterceptor implements MethodInterceptor {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CachingMethodInterceptor.class);
 
-    private static final Object NULL = new Object() {
-        @Override
-        public String toString() {
-            return "null";
-        }
-    };
+    private static final Object NULL = MemoCache.NULL;
 
-    private final Cache<MemoiseCacheKey, Object> memoiseCache;
+    private final MemoCache defaultCache;
+    private final MemoisationPolicy defaultPolicy;
+    private final Map<Class<?>, MemoisationPolicy> functionPolicies;
+    private final Map<String, MemoisationPolicy> packagePolicies;
+    private final Map<MemoisationPolicy, MemoCache> policyCaches = new IdentityHashMap<>();
+    // everything about a function that does not depend on the arguments, resolved on its first call. A map rather
+    // than a ClassValue, which would keep the caches reachable from the function classes once the injector is gone.
+    private final Map<Class<?>, FunctionEntry> functionEntries = new ConcurrentHashMap<>();
     private final Set<String> debugFunctions;
+    private final Set<Class<?>> sharedAcrossScopes;
+    private final PersistentMemoStore persistentStore;
+    private final ModelObjectFingerprints fingerprints = new ModelObjectFingerprints();
+    private final Map<Class<?>, FunctionCounters> countersByFunction = new ConcurrentHashMap<>();
+    // the removal listener is only given the cache key, so the counters are also kept by method
+    private final Map<String, FunctionCounters> countersByMethod = new ConcurrentHashMap<>();
+    private final MemoCache.RemovalListener removalListener = this::onRemoval;
+    private final Map<MemoiseCacheKey, CompletableFuture<Object>> inFlightComputations = new ConcurrentHashMap<>();
+
+    public CachingMethodInterceptor(CacheBuilder<Object, Object> cacheBuilder, Set<String> debugFunctions) {
+        this(cacheBuilder, null, Collections.emptyMap(), Collections.emptyMap(), debugFunctions);
+    }
+
+    public CachingMethodInterceptor(CacheBuilder<Object, Object> cacheBuilder,
+                                    MemoisationPolicy defaultPolicy,
+                                    Map<Class<?>, MemoisationPolicy> functionPolicies,
+                                    Map<String, MemoisationPolicy> packagePolicies,
+                                    Set<String> debugFunctions) {
+        this(cacheBuilder, defaultPolicy, functionPolicies, packagePolicies, debugFunctions, Collections.emptySet());
+    }
 
-    public CachingMethodInterceptor(CacheBuilder cacheBuilder, Set<String> debugFunctions) {
-        this.memoiseCache = cacheBuilder.build();
+    public CachingMethodInterceptor(CacheBuilder<Object, Object> cacheBuilder,
+                                    MemoisationPolicy defaultPolicy,
+                                    Map<Class<?>, MemoisationPolicy> functionPolicies,
+                                    Map<String, MemoisationPolicy> packagePolicies,
+                                    Set<String> debugFunctions,
+                                    Set<Class<?>> sharedAcrossScopes) {
+        this(cacheBuilder, defaultPolicy, functionPolicies, packagePolicies, debugFunctions, sharedAcrossScopes, null);
+    }
+
+    /**
+     * @param cacheBuilder       builds the cache of the functions without a policy, unless a default policy is given
+     * @param defaultPolicy      the policy of the functions without a policy of their own, or null to use the cache builder
+     * @param functionPolicies   policies by function class, which also apply to subclasses
+     * @param packagePolicies    policies by package, which also apply to sub-packages. The policy of the longest package
+     *                           a function is in applies.
+     * @param sharedAcrossScopes functions, and their subclasses, that use the cache of their policy even within a
+     *                           {@link MemoisationScope}
+     * @param persistentStore    the store to look up results in before computing them, and to add computed results
+     *                           to, or null to only keep results in memory. Not used within a {@link MemoisationScope}.
+     */
+    public CachingMethodInterceptor(CacheBuilder<Object, Object> cacheBuilder,
+                                    MemoisationPolicy defaultPolicy,
+                                    Map<Class<?>, MemoisationPolicy> functionPolicies,
+                                    Map<String, MemoisationPolicy> packagePolicies,
+                                    Set<String> debugFunctions,
+                                    Set<Class<?>> sharedAcrossScopes,
+                                    PersistentMemoStore persistentStore) {
+        this.defaultCache = defaultPolicy == null ? buildDefaultCache(cacheBuilder) : getPolicyCache(defaultPolicy);
+        this.defaultPolicy = defaultPolicy;
+        this.functionPolicies = functionPolicies;
+        this.packagePolicies = packagePolicies;
         this.debugFunctions = debugFunctions;
+        this.sharedAcrossScopes = sharedAcrossScopes;
+        this.persistentStore = persistentStore;
     }
 
     @Override
     public Object invoke(MethodInvocation invocation) throws Throwable {
-        MemoiseCacheKey key = MemoiseCacheKey.create(invocation.getMethod().toString(), invocation.getArguments());
-        boolean debugLoggingEnabled = isDebugLoggingEnabled(invocation);
+        Method method = invocation.getMethod();
+        FunctionEntry function = getFunctionEntry(invocation.getThis().getClass(), method.getDeclaringClass());
+        MemoCache memoiseCache = function.cache;
+        if (memoiseCache == null) {
+            return invocation.proceed();
+        }
+        Object[] arguments = invocation.getArguments();
+        MemoiseCacheKey key = MemoiseCacheKey.create(function.getMethodName(method),
+                function.fingerprintModelObjects ? fingerprints.keyArguments(arguments) : arguments);
+        boolean debugLoggingEnabled = function.debugLoggingEnabled;
+        FunctionCounters counters = function.counters;
+
+        MemoisationScope scope = function.scoped ? MemoisationScope.current() : null;
+        if (scope != null) {
+            return invokeInScope(invocation, scope, key, counters, debugLoggingEnabled);
+        }
 
         Object ifPresent = memoiseCache.getIfPresent(key);
         if (ifPresent == null) {
+            ifPresent = computeOnce(invocation, memoiseCache, key, counters, debugLoggingEnabled);
+        } else {
+            counters.hits.increment();
+            log(debugLoggingEnabled, "Cached function", invocation, ifPresent);
+        }
+
+        if (ifPresent == NULL) {
+            return null;
+        }
+        return ifPresent;
+    }
+
+    /**
+     * The scope is confined to this thread, so there is no need to guard against concurrent computations.
+     */
+    private Object invokeInScope(MethodInvocation invocation, MemoisationScope scope, MemoiseCacheKey key,
+                                 FunctionCounters counters, boolean debugLoggingEnabled) throws Throwable {
+        Object ifPresent = scope.get(key);
+        if (ifPresent == null) {
+            counters.misses.increment();
+            long start = System.nanoTime();
             Object invoked = invocation.proceed();
+            counters.computeNanos.add(System.nanoTime() - start);
             log(debugLoggingEnabled, "Executed function", invocation, invoked);
-
-            if (invoked == null) {
-                memoiseCache.put(key, NULL);
-            } else {
-                memoiseCache.put(key, invoked);
-            }
+            scope.put(key, invoked == null ? NULL : invoked);
             return invoked;
         }
+        counters.hits.increment();
         log(debugLoggingEnabled, "Cached function", invocation, ifPresent);
+        return ifPresent == NULL ? null : ifPresent;
+    }
 
-        if (ifPresent == NULL) {
-            return null;
+    /**
+     * Evaluates the function unless another thread is already evaluating it with equal arguments, in which case that
+     * result, or exception, is shared. Exceptions are not cached.
+     *
+     * @return the result, or {@link #NULL} for a null result
+     */
+    private Object computeOnce(MethodInvocation invocation, MemoCache memoiseCache, MemoiseCacheKey key,
+                               FunctionCounters counters, boolean debugLoggingEnabled) throws Throwable {
+        CompletableFuture<Object> computation = new CompletableFuture<>();
+        CompletableFuture<Object> inFlight = inFlightComputations.putIfAbsent(key, computation);
+        if (inFlight != null) {
+            counters.hits.increment();
+            try {
+                return inFlight.join();
+            } catch (CompletionException e) {
+                throw e.getCause();
+            }
+        }
+        try {
+            // another thread may have finished the computation since the cache was checked
+            Object ifPresent = memoiseCache.getIfPresent(key);
+            if (ifPresent != null) {
+                counters.hits.increment();
+                computation.complete(ifPresent);
+                return ifPresent;
+            }
+            PersistentMemoStore.Key storeKey = persistentStore == null ? null
+                    : persistentStore.keyOf(key.getMethodName(), invocation.getArguments());
+            Object result = storeKey == null ? null : persistentStore.get(storeKey);
+            if (result != null) {
+                counters.hits.increment();
+                log(debugLoggingEnabled, "Stored function", invocation, result);
+            } else {
+                counters.misses.increment();
+                long start = System.nanoTime();
+                Object invoked = invocation.proceed();
+                counters.computeNanos.add(System.nanoTime() - start);
+                log(debugLoggingEnabled, "Executed function", invocation, invoked);
+
+                result = invoked == null ? NULL : invoked;
+                if (storeKey != null) {
+                    persistentStore.put(storeKey, result);
+                }
+            }
+            countersByMethod.putIfAbsent(key.getMethodName(), counters);
+            counters.size.increment();
+            // cached before the computation is removed, so that later callers find one or the other
+            memoiseCache.put(key, result);
+            computation.complete(result);
+            return result;
+        } catch (Throwable t) {
+            computation.completeExceptionally(t);
+            throw t;
+        } finally {
+            inFlightComputations.remove(key, computation);
         }
-        return ifPresent;
     }
 
 //    /* This method has slightly different null handling - experimental */
@@ -93,8 +242,97 @@ public class CachingMethodInterceptor implements MethodInterceptor {
 //        return ifPresent;
 //    }
 
-    private boolean isDebugLoggingEnabled(MethodInvocation invocation) {
-        return debugFunctions.contains(invocation.getMethod().getDeclaringClass().getSimpleName().toUpperCase());
+    /**
+     * @return a snapshot of the counters of every memoised function called so far, by function name
+     */
+    public List<MemoisationStats> getStats() {
+        List<MemoisationStats> stats = new ArrayList<>();
+        for (FunctionCounters counters : countersByFunction.values()) {
+            stats.add(counters.snapshot());
+        }
+        stats.sort(Comparator.comparing(MemoisationStats::getFunctionName));
+        return stats;
+    }
+
+    private void onRemoval(MemoiseCacheKey key, boolean evicted) {
+        FunctionCounters counters = key == null ? null : countersByMethod.get(key.getMethodName());
+        if (counters != null) {
+            counters.size.decrement();
+            if (evicted) {
+                counters.evictions.increment();
+            }
+        }
+    }
+
+    private MemoCache buildDefaultCache(CacheBuilder<Object, Object> cacheBuilder) {
+        CacheBuilder<MemoiseCacheKey, Object> withListener = cacheBuilder.removalListener(
+                (RemovalListener<MemoiseCacheKey, Object>) notification ->
+                        onRemoval(notification.getKey(), notification.wasEvicted()));
+        return MemoCache.of(withListener.build());
+    }
+
+    /**
+     * @param implementationClass the class of the intercepted instance, i.e. the Guice subclass of the *Default
+     *                            implementation, from which the policies are resolved so that they may be set on any
+     *                            class of the hierarchy
+     * @param functionClass       the class declaring evaluate, i.e. the abstract function, under which the calls are
+     *                            counted and logged
+     */
+    private FunctionEntry getFunctionEntry(Class<?> implementationClass, Class<?> functionClass) {
+        FunctionEntry function = functionEntries.get(implementationClass);
+        return function != null ? function : functionEntries.computeIfAbsent(implementationClass,
+                c -> createFunctionEntry(c, functionClass));
+    }
+
+    private FunctionEntry createFunctionEntry(Class<?> implementationClass, Class<?> functionClass) {
+        MemoisationPolicy policy = resolvePolicy(implementationClass);
+        MemoCache cache = policy == null ? defaultCache : getPolicyCache(policy);
+        if (cache == null) {
+            return new FunctionEntry(null, null, false, false, false);
+        }
+        return new FunctionEntry(cache,
+                countersByFunction.computeIfAbsent(functionClass, FunctionCounters::new),
+                debugFunctions.contains(functionClass.getSimpleName().toUpperCase()),
+                policy != null && policy.isFingerprintingModelObjects(),
+                !isSharedAcrossScopes(implementationClass));
+    }
+
+    private boolean isSharedAcrossScopes(Class<?> functionClass) {
+        for (Class<?> c = functionClass; c != null; c = c.getSuperclass()) {
+            if (sharedAcrossScopes.contains(c)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the policy of the function, or null for the cache built by the cache builder
+     */
+    private MemoisationPolicy resolvePolicy(Class<?> functionClass) {
+        for (Class<?> c = functionClass; c != null; c = c.getSuperclass()) {
+            MemoisationPolicy policy = functionPolicies.get(c);
+            if (policy != null) {
+                return policy;
+            }
+        }
+        // from the name, as a Guice subclass defined by a bridge class loader may have no package
+        int lastDot = functionClass.getName().lastIndexOf('.');
+        String packageName = lastDot < 0 ? "" : functionClass.getName().substring(0, lastDot);
+        String longestPackage = null;
+        for (String policyPackage : packagePolicies.keySet()) {
+            boolean inPackage = packageName.equals(policyPackage) || packageName.startsWith(policyPackage + ".");
+            if (inPackage && (longestPackage == null || policyPackage.length() > longestPackage.length())) {
+                longestPackage = policyPackage;
+            }
+        }
+        return longestPackage != null ? packagePolicies.get(longestPackage) : defaultPolicy;
+    }
+
+    private MemoCache getPolicyCache(MemoisationPolicy policy) {
+        synchronized (policyCaches) {
+            return policyCaches.computeIfAbsent(policy, p -> p.createCache(removalListener));
+        }
     }
 
     private static void log(boolean debugLoggingEnabled, String message, MethodInvocation invocation, Object functionResult) {
@@ -106,4 +344,46 @@ public class CachingMethodInterceptor implements MethodInterceptor {
                     functionResult);
         }
     }
+
+    private static class FunctionEntry {
+        private final MemoCache cache;
+        private final FunctionCounters counters;
+        private final boolean debugLoggingEnabled;
+        private final boolean fingerprintModelObjects;
+        private final boolean scoped;
+        // one instance per method, so that cache keys compare method names by identity
+        private final Map<Method, String> methodNames = new ConcurrentHashMap<>();
+
+        FunctionEntry(MemoCache cache, FunctionCounters counters, boolean debugLoggingEnabled,
+                      boolean fingerprintModelObjects, boolean scoped) {
+            this.cache = cache;
+            this.counters = counters;
+            this.debugLoggingEnabled = debugLoggingEnabled;
+            this.fingerprintModelObjects = fingerprintModelObjects;
+            this.scoped = scoped;
+        }
+
+        String getMethodName(Method method) {
+            String methodName = methodNames.get(method);
+            return methodName != null ? methodName : methodNames.computeIfAbsent(method, Method::toString);
+        }
+    }
+
+    private static class FunctionCounters {
+        private final String functionName;
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+        private final LongAdder computeNanos = new LongAdder();
+        private final LongAdder size = new LongAdder();
+
+        FunctionCounters(Class<?> function) {
+            this.functionName = function.getName();
+        }
+
+        MemoisationStats snapshot() {
+            return new MemoisationStats(functionName, hits.sum(), misses.sum(), evictions.sum(), computeNanos.sum(),
+                    Math.max(0, size.sum()));
+        }
+    }
 }
@@ -0,0 +1,40 @@
+package com.regnosys.rosetta.common.model;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import java.util.List;
+
+/**
+ * The JMX view of the memoisation statistics of a {@link FunctionMemoisingModule}, registered by
+ * {@link FunctionMemoisingModuleBuilder#setJmxName(String)}.
+ */
+public interface FunctionMemoisingMXBean {
+
+    List<MemoisationStats> getStats();
+
+    long getHitCount();
+
+    long getMissCount();
+
+    long getEvictionCount();
+
+    long getEstimatedSize();
+}
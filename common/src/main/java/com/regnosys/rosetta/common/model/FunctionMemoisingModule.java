@@ -28,10 +28,21 @@ import com.google.inject.matcher.Matcher;
 import com.google.inject.matcher.Matchers;
 import com.rosetta.model.lib.functions.RosettaFunction;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Method;
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import static com.google.inject.matcher.Matchers.subclassesOf;
 
@@ -41,32 +52,135 @@ public class FunctionMemoisingModule extends AbstractModule {
     public static final String EVALUATE_METHOD_NAME = "evaluate";
     private final Set<String> packages;
     private final Set<String> debugFunctions;
+    private final MemoisationPolicy defaultPolicy;
+    private final Map<Class<?>, MemoisationPolicy> functionPolicies;
+    private final Map<String, MemoisationPolicy> packagePolicies;
+    private final String jmxName;
+    private final Set<Class<?>> sharedAcrossScopes;
+    private final long maximumBytes;
+    private final PersistentMemoStore persistentStore;
+    private volatile CachingMethodInterceptor interceptor;
 
     public FunctionMemoisingModule(Set<String> packages, Set<String> debugFunctions) {
+        this(packages, debugFunctions, null, Collections.emptyMap(), Collections.emptyMap());
+    }
+
+    public FunctionMemoisingModule(Set<String> packages,
+                                   Set<String> debugFunctions,
+                                   MemoisationPolicy defaultPolicy,
+                                   Map<Class<?>, MemoisationPolicy> functionPolicies,
+                                   Map<String, MemoisationPolicy> packagePolicies) {
+        this(packages, debugFunctions, defaultPolicy, functionPolicies, packagePolicies, null);
+    }
+
+    public FunctionMemoisingModule(Set<String> packages,
+                                   Set<String> debugFunctions,
+                                   MemoisationPolicy defaultPolicy,
+                                   Map<Class<?>, MemoisationPolicy> functionPolicies,
+                                   Map<String, MemoisationPolicy> packagePolicies,
+                                   String jmxName) {
+        this(packages, debugFunctions, defaultPolicy, functionPolicies, packagePolicies, jmxName, Collections.emptySet(), -1, null);
+    }
+
+    /**
+     * @param jmxName      the name to register the statistics MBean under, or null to not register it
+     * @param maximumBytes the byte budget of the cache of the functions without a policy, as estimated by
+     *                     {@link ObjectSizeEstimator}, or -1 to hold up to 250 results whatever their size
+     * @see CachingMethodInterceptor#CachingMethodInterceptor(CacheBuilder, MemoisationPolicy, Map, Map, Set, Set, PersistentMemoStore)
+     */
+    public FunctionMemoisingModule(Set<String> packages,
+                                   Set<String> debugFunctions,
+                                   MemoisationPolicy defaultPolicy,
+                                   Map<Class<?>, MemoisationPolicy> functionPolicies,
+                                   Map<String, MemoisationPolicy> packagePolicies,
+                                   String jmxName,
+                                   Set<Class<?>> sharedAcrossScopes,
+                                   long maximumBytes,
+                                   PersistentMemoStore persistentStore) {
         this.packages = packages;
         this.debugFunctions = debugFunctions;
+        this.defaultPolicy = defaultPolicy;
+        this.functionPolicies = functionPolicies;
+        this.packagePolicies = packagePolicies;
+        this.jmxName = jmxName;
+        this.sharedAcrossScopes = sharedAcrossScopes;
+        this.maximumBytes = maximumBytes;
+        this.persistentStore = persistentStore;
     }
 
     @Override
     protected void configure() {
-        CacheBuilder<Object, Object> cacheBuilder = configureCacheBuilder();
-        Matcher<Class> classMatcher = createClassMatcher();
+        CacheBuilder<Object, Object> cacheBuilder = configureCacheBuilder(maximumBytes);
+        interceptor = new CachingMethodInterceptor(cacheBuilder, defaultPolicy, functionPolicies, packagePolicies,
+                debugFunctions, sharedAcrossScopes, persistentStore);
         binder().bindInterceptor(
-                classMatcher,
+                createClassMatcher(packages),
                 isEvaluateMethod(),
-                new CachingMethodInterceptor(cacheBuilder, debugFunctions)
+                interceptor
         );
+        if (jmxName != null) {
+            registerMBean(jmxName);
+        }
+    }
+
+    /**
+     * @return a snapshot of the memoisation counters of every function called so far, empty until the module has
+     * been installed in an injector
+     */
+    public List<MemoisationStats> getStats() {
+        CachingMethodInterceptor current = interceptor;
+        return current == null ? Collections.emptyList() : current.getStats();
+    }
+
+    /**
+     * Passes a snapshot of the statistics, e.g. to be logged, to the consumer every period until the returned future is
+     * cancelled.
+     */
+    public ScheduledFuture<?> scheduleStatsSnapshot(ScheduledExecutorService executor,
+                                                    Duration period,
+                                                    Consumer<List<MemoisationStats>> consumer) {
+        long periodNanos = period.toNanos();
+        return executor.scheduleAtFixedRate(() -> consumer.accept(getStats()), periodNanos, periodNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the name of the statistics MBean registered under the given name
+     */
+    public static ObjectName getObjectName(String jmxName) throws JMException {
+        return new ObjectName(FunctionMemoisingModule.class.getPackage().getName() + ":type=FunctionMemoising,name=" + ObjectName.quote(jmxName));
     }
 
-    private static CacheBuilder<Object, Object> configureCacheBuilder() {
+    private void registerMBean(String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = getObjectName(name);
+            // the module may be installed again, e.g. in a child injector, in which case the new interceptor is reported
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(new StatsMXBean(), objectName);
+        } catch (JMException e) {
+            addError("Failed to register memoisation statistics MBean " + name + ": " + e.getMessage());
+        }
+    }
+
+    static CacheBuilder<Object, Object> configureCacheBuilder(long maximumBytes) {
         CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder();
         cacheBuilder.expireAfterAccess(Duration.of(5, ChronoUnit.MINUTES));
-        cacheBuilder.maximumSize(250);
+        if (maximumBytes >= 0) {
+            cacheBuilder.maximumWeight(maximumBytes)
+                    .weigher((key, value) -> MemoisationPolicy.weighBytes((MemoiseCacheKey) key, value));
+        } else {
+            cacheBuilder.maximumSize(250);
+        }
         return cacheBuilder;
     }
 
+    /**
+     * @return a matcher of the default implementations of the Rosetta functions in the packages
+     */
     @SuppressWarnings("rawtypes")
-    private Matcher<Class> createClassMatcher() {
+    static Matcher<Class> createClassMatcher(Set<String> packages) {
         Matcher<Class> classMatcher = subclassesOf(RosettaFunction.class)
                 .and(isDefaultImpl());
 
@@ -86,6 +200,7 @@ public class FunctionMemoisingModule extends AbstractModule {
         };
     }
 
+    @SuppressWarnings("rawtypes")
     private static Matcher<Class> isDefaultImpl() {
         return new AbstractMatcher<Class>() {
             @Override
@@ -94,4 +209,32 @@ public class FunctionMemoisingModule extends AbstractModule {
             }
         };
     }
+
+    private class StatsMXBean implements FunctionMemoisingMXBean {
+
+        @Override
+        public List<MemoisationStats> getStats() {
+            return FunctionMemoisingModule.this.getStats();
+        }
+
+        @Override
+        public long getHitCount() {
+            return getStats().stream().mapToLong(MemoisationStats::getHitCount).sum();
+        }
+
+        @Override
+        public long getMissCount() {
+            return getStats().stream().mapToLong(MemoisationStats::getMissCount).sum();
+        }
+
+        @Override
+        public long getEvictionCount() {
+            return getStats().stream().mapToLong(MemoisationStats::getEvictionCount).sum();
+        }
+
+        @Override
+        public long getEstimatedSize() {
+            return getStats().stream().mapToLong(MemoisationStats::getEstimatedSize).sum();
+        }
+    }
 }
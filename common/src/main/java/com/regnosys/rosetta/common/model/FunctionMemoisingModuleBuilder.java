@@ -28,13 +28,22 @@ public class FunctionMemoisingModuleBuilder {
     public static final String DEBUG_FUNCTION_ENV_PREFIX = "DEBUG_ROSETTA_FUNCTION_";
     private final Set<String> packages = new HashSet<>();
     private final Set<String> debugFunctions = new HashSet<>();
+    private final Map<Class<?>, MemoisationPolicy> functionPolicies = new HashMap<>();
+    private final Map<String, MemoisationPolicy> packagePolicies = new HashMap<>();
+    private MemoisationPolicy defaultPolicy;
+    private String jmxName;
+    private final Set<Class<?>> sharedAcrossScopes = new HashSet<>();
+    private long maximumBytes = -1;
+    private PersistentMemoStore persistentStore;
 
     public FunctionMemoisingModuleBuilder setPackages(String... packages) {
         this.packages.addAll(Arrays.asList(packages));
         return this;
     }
 
-    public FunctionMemoisingModuleBuilder setDebugLoggingFunctions(Class<? extends RosettaFunction>... debugFunctions) {
+    @SafeVarargs
+    @SuppressWarnings("varargs")
+    public final FunctionMemoisingModuleBuilder setDebugLoggingFunctions(Class<? extends RosettaFunction>... debugFunctions) {
         Arrays.stream(debugFunctions).map(Class::getSimpleName).map(String::toUpperCase).
                 forEach(this.debugFunctions::add);
         return this;
@@ -55,6 +64,72 @@ public class FunctionMemoisingModuleBuilder {
         return this;
     }
 
+    /**
+     * Sets how the results of a function are cached, overriding any package or default policy. The function may be
+     * the abstract function or its *Default implementation; a policy applies to the subclasses of its class.
+     */
+    public FunctionMemoisingModuleBuilder setPolicy(Class<? extends RosettaFunction> function, MemoisationPolicy policy) {
+        functionPolicies.put(function, policy);
+        return this;
+    }
+
+    /**
+     * Sets how the results of the functions in a package, and its sub-packages, are cached.
+     */
+    public FunctionMemoisingModuleBuilder setPackagePolicy(String packageName, MemoisationPolicy policy) {
+        packagePolicies.put(packageName, policy);
+        return this;
+    }
+
+    /**
+     * Sets how the results of the functions without a function or package policy are cached. By default they share a
+     * cache of 250 results, or see {@link #setMaximumBytes(long)}, each expiring 5 minutes after it was last used.
+     */
+    public FunctionMemoisingModuleBuilder setDefaultPolicy(MemoisationPolicy policy) {
+        this.defaultPolicy = policy;
+        return this;
+    }
+
+    /**
+     * Registers the memoisation statistics of the module as an MBean, see
+     * {@link FunctionMemoisingModule#getObjectName(String)}.
+     */
+    public FunctionMemoisingModuleBuilder setJmxName(String jmxName) {
+        this.jmxName = jmxName;
+        return this;
+    }
+
+    /**
+     * Sets functions whose results are kept in the shared cache even within a {@link MemoisationScope}, such as
+     * lookups of reference data used by every unit of work.
+     */
+    @SafeVarargs
+    @SuppressWarnings("varargs")
+    public final FunctionMemoisingModuleBuilder setSharedAcrossScopes(Class<? extends RosettaFunction>... functions) {
+        this.sharedAcrossScopes.addAll(Arrays.asList(functions));
+        return this;
+    }
+
+    /**
+     * Bounds the cache of the functions without a function or package policy by the estimated size of the results,
+     * and of the arguments they were computed from, instead of holding up to 250 results.
+     *
+     * @see ObjectSizeEstimator
+     */
+    public FunctionMemoisingModuleBuilder setMaximumBytes(long maximumBytes) {
+        this.maximumBytes = maximumBytes;
+        return this;
+    }
+
+    /**
+     * Looks up the results of memoised functions in the store before computing them, and adds the computed results to
+     * it, so that they survive the JVM. The store is not closed by the module.
+     */
+    public FunctionMemoisingModuleBuilder setPersistentStore(PersistentMemoStore persistentStore) {
+        this.persistentStore = persistentStore;
+        return this;
+    }
+
     public FunctionMemoisingModuleBuilder setFromEnvironment() {
         setFromMap(System.getenv());
         return this;
@@ -62,6 +137,7 @@ public class FunctionMemoisingModuleBuilder {
 
 
     public FunctionMemoisingModule build() {
-        return new FunctionMemoisingModule(packages, debugFunctions);
+        return new FunctionMemoisingModule(packages, debugFunctions, defaultPolicy, functionPolicies, packagePolicies, jmxName,
+                sharedAcrossScopes, maximumBytes, persistentStore);
     }
 }
@@ -0,0 +1,108 @@
+package com.regnosys.rosetta.common.model;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+/**
+ * The calls of one function recorded by a {@link FunctionProfiler}. Percentiles are accurate to within a factor of two.
+ */
+public class FunctionProfileSummary {
+
+    private final String functionName;
+    private final long calls;
+    private final long inclusiveNanos;
+    private final long exclusiveNanos;
+    private final long inclusiveMedianNanos;
+    private final long inclusiveP99Nanos;
+    private final long inclusiveMaxNanos;
+    private final long exclusiveMedianNanos;
+    private final long exclusiveP99Nanos;
+    private final long exclusiveMaxNanos;
+
+    public FunctionProfileSummary(String functionName, long calls, long inclusiveNanos, long exclusiveNanos,
+                                  long inclusiveMedianNanos, long inclusiveP99Nanos, long inclusiveMaxNanos,
+                                  long exclusiveMedianNanos, long exclusiveP99Nanos, long exclusiveMaxNanos) {
+        this.functionName = functionName;
+        this.calls = calls;
+        this.inclusiveNanos = inclusiveNanos;
+        this.exclusiveNanos = exclusiveNanos;
+        this.inclusiveMedianNanos = inclusiveMedianNanos;
+        this.inclusiveP99Nanos = inclusiveP99Nanos;
+        this.inclusiveMaxNanos = inclusiveMaxNanos;
+        this.exclusiveMedianNanos = exclusiveMedianNanos;
+        this.exclusiveP99Nanos = exclusiveP99Nanos;
+        this.exclusiveMaxNanos = exclusiveMaxNanos;
+    }
+
+    public String getFunctionName() {
+        return functionName;
+    }
+
+    public long getCalls() {
+        return calls;
+    }
+
+    /**
+     * @return the total time of the calls, including the functions they called
+     */
+    public long getInclusiveNanos() {
+        return inclusiveNanos;
+    }
+
+    /**
+     * @return the total time of the calls, excluding the profiled functions they called
+     */
+    public long getExclusiveNanos() {
+        return exclusiveNanos;
+    }
+
+    public long getInclusiveMedianNanos() {
+        return inclusiveMedianNanos;
+    }
+
+    public long getInclusiveP99Nanos() {
+        return inclusiveP99Nanos;
+    }
+
+    public long getInclusiveMaxNanos() {
+        return inclusiveMaxNanos;
+    }
+
+    public long getExclusiveMedianNanos() {
+        return exclusiveMedianNanos;
+    }
+
+    public long getExclusiveP99Nanos() {
+        return exclusiveP99Nanos;
+    }
+
+    public long getExclusiveMaxNanos() {
+        return exclusiveMaxNanos;
+    }
+
+    @Override
+    public String toString() {
+        return functionName +
+                "{calls=" + calls +
+                ", inclusiveMs=" + inclusiveNanos / 1_000_000 +
+                ", exclusiveMs=" + exclusiveNanos / 1_000_000 +
+                '}';
+    }
+}
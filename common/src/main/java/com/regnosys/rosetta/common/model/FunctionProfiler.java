@@ -0,0 +1,229 @@
+package com.regnosys.rosetta.common.model;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the calls of the functions it intercepts, see {@link FunctionProfilingModule}: per function the number of
+ * calls and histograms of their inclusive and exclusive times, and the tree of which functions called which.
+ *
+ * Exclusive time excludes the time spent in the profiled functions called, so nested calls must be made on the same
+ * thread to be subtracted. The data can be exported as collapsed stacks, for flame graph tools, or as a JSON summary.
+ */
+public class FunctionProfiler implements MethodInterceptor {
+
+    private final Map<Class<?>, FunctionProfile> profiles = new ConcurrentHashMap<>();
+    private final CallNode root = new CallNode(null);
+    private final ThreadLocal<Deque<Frame>> stacks = ThreadLocal.withInitial(ArrayDeque::new);
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        FunctionProfile profile = getProfile(invocation.getMethod().getDeclaringClass());
+        Deque<Frame> stack = stacks.get();
+        Frame parent = stack.peek();
+        Frame frame = new Frame((parent == null ? root : parent.node).getChild(profile));
+        stack.push(frame);
+        long start = System.nanoTime();
+        try {
+            return invocation.proceed();
+        } finally {
+            long inclusive = System.nanoTime() - start;
+            long exclusive = inclusive - frame.childNanos;
+            stack.pop();
+            if (parent != null) {
+                parent.childNanos += inclusive;
+            }
+            profile.record(inclusive, exclusive);
+            frame.node.record(inclusive, exclusive);
+        }
+    }
+
+    private FunctionProfile getProfile(Class<?> function) {
+        FunctionProfile profile = profiles.get(function);
+        return profile != null ? profile : profiles.computeIfAbsent(function, FunctionProfile::new);
+    }
+
+    /**
+     * @return a summary of every function called so far, the one with the most exclusive time first
+     */
+    public List<FunctionProfileSummary> getSummary() {
+        List<FunctionProfileSummary> summary = new ArrayList<>();
+        for (FunctionProfile profile : profiles.values()) {
+            summary.add(profile.summarise());
+        }
+        summary.sort(Comparator.comparingLong(FunctionProfileSummary::getExclusiveNanos).reversed());
+        return summary;
+    }
+
+    /**
+     * Writes a line per call path, the names of the functions on the path separated by semicolons followed by the
+     * exclusive time spent on that path in microseconds, as read by flame graph tools.
+     */
+    public void writeCollapsedStacks(Writer writer) throws IOException {
+        for (CallNode child : root.children.values()) {
+            writeCollapsedStacks(writer, child, child.profile.name);
+        }
+        writer.flush();
+    }
+
+    private static void writeCollapsedStacks(Writer writer, CallNode node, String path) throws IOException {
+        long micros = TimeUnit.NANOSECONDS.toMicros(node.exclusiveNanos.sum());
+        if (micros > 0) {
+            writer.write(path + " " + micros + "\n");
+        }
+        for (CallNode child : node.children.values()) {
+            writeCollapsedStacks(writer, child, path + ";" + child.profile.name);
+        }
+    }
+
+    /**
+     * Writes the summary, and the call tree with the calls and times of each path, as JSON.
+     */
+    public void writeJsonSummary(Writer writer) throws IOException {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("functions", getSummary());
+        json.put("callTree", root.toJson().get("calls"));
+        new ObjectMapper()
+                .enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(writer, json);
+    }
+
+    /**
+     * Discards everything recorded so far. Calls in progress are recorded in the new call tree only from the next
+     * profiled function they call.
+     */
+    public void reset() {
+        profiles.values().forEach(FunctionProfile::reset);
+        root.children.clear();
+    }
+
+    private static class Frame {
+        private final CallNode node;
+        private long childNanos;
+
+        Frame(CallNode node) {
+            this.node = node;
+        }
+    }
+
+    private static class FunctionProfile {
+        private final String name;
+        private volatile Counters counters = new Counters();
+
+        FunctionProfile(Class<?> function) {
+            this.name = function.getName();
+        }
+
+        void record(long inclusive, long exclusive) {
+            counters.record(inclusive, exclusive);
+        }
+
+        void reset() {
+            counters = new Counters();
+        }
+
+        FunctionProfileSummary summarise() {
+            Counters current = counters;
+            return new FunctionProfileSummary(name,
+                    current.calls.sum(),
+                    current.inclusiveNanos.sum(),
+                    current.exclusiveNanos.sum(),
+                    current.inclusive.getPercentile(50),
+                    current.inclusive.getPercentile(99),
+                    current.inclusive.getMax(),
+                    current.exclusive.getPercentile(50),
+                    current.exclusive.getPercentile(99),
+                    current.exclusive.getMax());
+        }
+    }
+
+    private static class Counters {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder inclusiveNanos = new LongAdder();
+        private final LongAdder exclusiveNanos = new LongAdder();
+        private final LatencyHistogram inclusive = new LatencyHistogram();
+        private final LatencyHistogram exclusive = new LatencyHistogram();
+
+        void record(long inclusiveTime, long exclusiveTime) {
+            calls.increment();
+            inclusiveNanos.add(inclusiveTime);
+            exclusiveNanos.add(exclusiveTime);
+            inclusive.record(inclusiveTime);
+            exclusive.record(exclusiveTime);
+        }
+    }
+
+    private static class CallNode {
+        private final FunctionProfile profile;
+        private final Map<FunctionProfile, CallNode> children = new ConcurrentHashMap<>();
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder inclusiveNanos = new LongAdder();
+        private final LongAdder exclusiveNanos = new LongAdder();
+
+        CallNode(FunctionProfile profile) {
+            this.profile = profile;
+        }
+
+        CallNode getChild(FunctionProfile childProfile) {
+            CallNode child = children.get(childProfile);
+            return child != null ? child : children.computeIfAbsent(childProfile, CallNode::new);
+        }
+
+        void record(long inclusive, long exclusive) {
+            calls.increment();
+            inclusiveNanos.add(inclusive);
+            exclusiveNanos.add(exclusive);
+        }
+
+        Map<String, Object> toJson() {
+            Map<String, Object> json = new LinkedHashMap<>();
+            if (profile != null) {
+                json.put("function", profile.name);
+                json.put("calls", calls.sum());
+                json.put("inclusiveNanos", inclusiveNanos.sum());
+                json.put("exclusiveNanos", exclusiveNanos.sum());
+            }
+            List<Map<String, Object>> childJson = new ArrayList<>();
+            for (CallNode child : children.values()) {
+                childJson.add(child.toJson());
+            }
+            json.put(profile == null ? "calls" : "children", childJson);
+            return json;
+        }
+    }
+}
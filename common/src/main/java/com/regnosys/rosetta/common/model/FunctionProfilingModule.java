@@ -0,0 +1,68 @@
+package com.regnosys.rosetta.common.model;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.google.inject.AbstractModule;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Profiles the Rosetta functions that {@link FunctionMemoisingModule} would memoise, i.e. the {@code evaluate} methods
+ * of their default implementations:
+ *
+ * <pre>
+ *     FunctionProfilingModule profiling = new FunctionProfilingModule("cdm.regulation");
+ *     Injector injector = Guice.createInjector(modelModule, profiling);
+ *     ...
+ *     profiling.getProfiler().writeCollapsedStacks(writer);
+ * </pre>
+ *
+ * When installed together with the memoising module, whichever is installed first intercepts first. Installed first,
+ * the profiler also records the calls answered from the cache, so the times are those seen by the callers.
+ */
+public class FunctionProfilingModule extends AbstractModule {
+
+    private final Set<String> packages;
+    private final FunctionProfiler profiler = new FunctionProfiler();
+
+    public FunctionProfilingModule(String... packages) {
+        this(new HashSet<>(Arrays.asList(packages)));
+    }
+
+    public FunctionProfilingModule(Set<String> packages) {
+        this.packages = packages;
+    }
+
+    @Override
+    protected void configure() {
+        binder().bindInterceptor(
+                FunctionMemoisingModule.createClassMatcher(packages),
+                FunctionMemoisingModule.isEvaluateMethod(),
+                profiler
+        );
+    }
+
+    public FunctionProfiler getProfiler() {
+        return profiler;
+    }
+}
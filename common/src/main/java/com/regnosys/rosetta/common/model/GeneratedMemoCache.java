@@ -0,0 +1,67 @@
+package com.regnosys.rosetta.common.model;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * The cache of a memoising subclass generated by {@link MemoisingFunctionGenerator}. Concurrent callers with the same
+ * key wait for the first to compute the result, and exceptions are rethrown to all of them rather than cached.
+ */
+public final class GeneratedMemoCache {
+
+    private final Cache<Object, Object> cache;
+
+    /**
+     * Holds up to 250 results, each for up to 5 minutes after it was last used, as the memoising module does.
+     */
+    public GeneratedMemoCache() {
+        this(FunctionMemoisingModule.configureCacheBuilder(-1));
+    }
+
+    public GeneratedMemoCache(CacheBuilder<Object, Object> cacheBuilder) {
+        this.cache = cacheBuilder.build();
+    }
+
+    public Object get(Object key, Supplier<?> function) {
+        try {
+            Object result = cache.get(key, () -> {
+                Object computed = function.get();
+                return computed == null ? MemoCache.NULL : computed;
+            });
+            return result == MemoCache.NULL ? null : result;
+        } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public long size() {
+        return cache.size();
+    }
+}
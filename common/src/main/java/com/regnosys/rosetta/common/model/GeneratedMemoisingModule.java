@@ -0,0 +1,70 @@
+package com.regnosys.rosetta.common.model;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Singleton;
+import com.rosetta.model.lib.functions.RosettaFunction;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Binds Rosetta functions to the memoising subclasses generated for them by {@link MemoisingFunctionGenerator}, an
+ * alternative to {@link FunctionMemoisingModule} that needs no interception at runtime.
+ *
+ * The subclasses are bound as singletons, so that every caller shares the cache of each function.
+ */
+public class GeneratedMemoisingModule extends AbstractModule {
+
+    private final ClassLoader classLoader;
+    private final Collection<Class<? extends RosettaFunction>> functions;
+
+    @SafeVarargs
+    @SuppressWarnings("varargs")
+    public GeneratedMemoisingModule(Class<? extends RosettaFunction>... functions) {
+        this(null, Arrays.asList(functions));
+    }
+
+    /**
+     * @param classLoader the class loader to load the memoising subclasses from, or null to load each from the class
+     *                    loader of its function
+     */
+    public GeneratedMemoisingModule(ClassLoader classLoader, Collection<Class<? extends RosettaFunction>> functions) {
+        this.classLoader = classLoader;
+        this.functions = functions;
+    }
+
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    protected void configure() {
+        for (Class<? extends RosettaFunction> function : functions) {
+            String memoisingClassName = MemoisingFunctionGenerator.getMemoisingClassName(function);
+            try {
+                Class<?> memoisingClass = Class.forName(memoisingClassName, false,
+                        classLoader == null ? function.getClassLoader() : classLoader);
+                bind((Class) function).to(memoisingClass.asSubclass(function)).in(Singleton.class);
+            } catch (ClassNotFoundException e) {
+                addError("No memoising subclass " + memoisingClassName + " was generated for " + function.getName());
+            }
+        }
+    }
+}
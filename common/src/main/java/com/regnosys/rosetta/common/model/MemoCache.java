@@ -0,0 +1,78 @@
+package com.regnosys.rosetta.common.model;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.google.common.cache.Cache;
+
+/**
+ * The cache that the memoised results of one or more functions are kept in.
+ */
+interface MemoCache {
+
+    /**
+     * Stored in place of a null result.
+     */
+    Object NULL = new Object() {
+        @Override
+        public String toString() {
+            return "null";
+        }
+    };
+
+    /**
+     * Told of every result removed from a cache, whether evicted or replaced.
+     */
+    interface RemovalListener {
+        void onRemoval(MemoiseCacheKey key, boolean evicted);
+    }
+
+    Object getIfPresent(MemoiseCacheKey key);
+
+    void put(MemoiseCacheKey key, Object value);
+
+    static MemoCache of(Cache<MemoiseCacheKey, Object> cache) {
+        return new MemoCache() {
+            @Override
+            public Object getIfPresent(MemoiseCacheKey key) {
+                return cache.getIfPresent(key);
+            }
+
+            @Override
+            public void put(MemoiseCacheKey key, Object value) {
+                cache.put(key, value);
+            }
+        };
+    }
+
+    static MemoCache of(com.github.benmanes.caffeine.cache.Cache<MemoiseCacheKey, Object> cache) {
+        return new MemoCache() {
+            @Override
+            public Object getIfPresent(MemoiseCacheKey key) {
+                return cache.getIfPresent(key);
+            }
+
+            @Override
+            public void put(MemoiseCacheKey key, Object value) {
+                cache.put(key, value);
+            }
+        };
+    }
+}
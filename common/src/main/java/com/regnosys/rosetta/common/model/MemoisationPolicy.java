@@ -0,0 +1,170 @@
+package com.regnosys.rosetta.common.model;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Weigher;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+
+/**
+ * How the results of memoised functions are cached, see
+ * {@link FunctionMemoisingModuleBuilder#setPolicy(Class, MemoisationPolicy)}.
+ *
+ * Every policy has a cache of its own, shared by all the functions it applies to. The caches use a frequency aware
+ * (W-TinyLFU) eviction policy, so that a few frequently called functions keep their results under skewed access
+ * rather than being flushed out by many rarely called ones.
+ */
+public class MemoisationPolicy {
+
+    private static final MemoisationPolicy NO_CACHING = new MemoisationPolicy(false, -1, -1, null, null, null, false);
+
+    /**
+     * @return a policy that does not memoise the functions it applies to
+     */
+    public static MemoisationPolicy noCaching() {
+        return NO_CACHING;
+    }
+
+    /**
+     * @return a policy holding at most the given number of results
+     */
+    public static MemoisationPolicy maximumSize(long maximumSize) {
+        return new MemoisationPolicy(true, maximumSize, -1, null, null, null, false);
+    }
+
+    /**
+     * @param weigher the weight of a result, called with a placeholder object for null results
+     * @return a policy holding results up to a total weight
+     */
+    public static MemoisationPolicy maximumWeight(long maximumWeight, ToIntFunction<Object> weigher) {
+        return new MemoisationPolicy(true, -1, maximumWeight, (key, value) -> weigher.applyAsInt(value), null, null, false);
+    }
+
+    /**
+     * @return a policy holding results, and the arguments they were computed from, up to the given number of bytes as
+     * estimated by {@link ObjectSizeEstimator}
+     */
+    public static MemoisationPolicy maximumBytes(long maximumBytes) {
+        return new MemoisationPolicy(true, -1, maximumBytes, MemoisationPolicy::weighBytes, null, null, false);
+    }
+
+    static int weighBytes(MemoiseCacheKey key, Object value) {
+        return (int) Math.min(Integer.MAX_VALUE, ObjectSizeEstimator.estimate(key) + ObjectSizeEstimator.estimate(value));
+    }
+
+    private final boolean caching;
+    private final long maximumSize;
+    private final long maximumWeight;
+    private final Weigher<MemoiseCacheKey, Object> weigher;
+    private final Duration expireAfterWrite;
+    private final Duration expireAfterAccess;
+    private final boolean fingerprintModelObjects;
+
+    private MemoisationPolicy(boolean caching, long maximumSize, long maximumWeight, Weigher<MemoiseCacheKey, Object> weigher,
+                              Duration expireAfterWrite, Duration expireAfterAccess, boolean fingerprintModelObjects) {
+        this.caching = caching;
+        this.maximumSize = maximumSize;
+        this.maximumWeight = maximumWeight;
+        this.weigher = weigher;
+        this.expireAfterWrite = expireAfterWrite;
+        this.expireAfterAccess = expireAfterAccess;
+        this.fingerprintModelObjects = fingerprintModelObjects;
+    }
+
+    /**
+     * @return a copy of this policy that also drops results the given time after they were computed
+     */
+    public MemoisationPolicy expireAfterWrite(Duration duration) {
+        return new MemoisationPolicy(caching, maximumSize, maximumWeight, weigher, duration, expireAfterAccess, fingerprintModelObjects);
+    }
+
+    /**
+     * @return a copy of this policy that also drops results the given time after they were last used
+     */
+    public MemoisationPolicy expireAfterAccess(Duration duration) {
+        return new MemoisationPolicy(caching, maximumSize, maximumWeight, weigher, expireAfterWrite, duration, fingerprintModelObjects);
+    }
+
+    /**
+     * Large model objects, such as whole trades, are expensive to hash and compare on every call. With this option the
+     * cache keys hold a 128-bit fingerprint of the content of each model object argument instead, calculated once per
+     * instance, so that repeated calls with the same instance cost no more than calls with small arguments.
+     * Builders are still compared by content.
+     *
+     * @return a copy of this policy that keys results by the fingerprints of model object arguments
+     */
+    public MemoisationPolicy fingerprintModelObjects() {
+        return new MemoisationPolicy(caching, maximumSize, maximumWeight, weigher, expireAfterWrite, expireAfterAccess, true);
+    }
+
+    public boolean isFingerprintingModelObjects() {
+        return fingerprintModelObjects;
+    }
+
+    public boolean isCaching() {
+        return caching;
+    }
+
+    /**
+     * @param removalListener told of the results removed from the cache, on the thread that removed them
+     * @return a new cache following this policy, or null if this policy does not cache
+     */
+    MemoCache createCache(MemoCache.RemovalListener removalListener) {
+        if (!caching) {
+            return null;
+        }
+        Caffeine<Object, Object> caffeine = Caffeine.newBuilder()
+                .executor(Runnable::run);
+        if (maximumSize >= 0) {
+            caffeine.maximumSize(maximumSize);
+        }
+        if (maximumWeight >= 0) {
+            caffeine.maximumWeight(maximumWeight)
+                    .weigher(weigher);
+        }
+        if (expireAfterWrite != null) {
+            caffeine.expireAfterWrite(expireAfterWrite.toNanos(), TimeUnit.NANOSECONDS);
+        }
+        if (expireAfterAccess != null) {
+            caffeine.expireAfterAccess(expireAfterAccess.toNanos(), TimeUnit.NANOSECONDS);
+        }
+        return MemoCache.of(caffeine
+                .<MemoiseCacheKey, Object>removalListener((key, value, cause) -> removalListener.onRemoval(key, cause.wasEvicted()))
+                .build());
+    }
+
+    @Override
+    public String toString() {
+        if (!caching) {
+            return "MemoisationPolicy{noCaching}";
+        }
+        return "MemoisationPolicy{" +
+                "maximumSize=" + maximumSize +
+                ", maximumWeight=" + maximumWeight +
+                ", expireAfterWrite=" + expireAfterWrite +
+                ", expireAfterAccess=" + expireAfterAccess +
+                ", fingerprintModelObjects=" + fingerprintModelObjects +
+                '}';
+    }
+}
@@ -0,0 +1,107 @@
+package com.regnosys.rosetta.common.model;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Memoises function results for one unit of work, e.g. one trade through one report, instead of in the cache shared
+ * by every caller of the injector:
+ *
+ * <pre>
+ *     try (MemoisationScope scope = MemoisationScope.open()) {
+ *         ...
+ *     }
+ * </pre>
+ *
+ * While a scope is open, the memoised functions called on the thread that opened it keep their results in a plain map
+ * belonging to the scope, which is dropped when it is closed. Functions set with
+ * {@link FunctionMemoisingModuleBuilder#setSharedAcrossScopes(Class[])} keep using the shared cache. The scope is not
+ * seen by other threads, whose calls also use the shared cache.
+ *
+ * Scopes may be nested, in which case the innermost one is used until it is closed.
+ */
+public final class MemoisationScope implements AutoCloseable {
+
+    private static final ThreadLocal<MemoisationScope> CURRENT = new ThreadLocal<>();
+
+    private final Map<MemoiseCacheKey, Object> results = new HashMap<>();
+    private final MemoisationScope parent;
+    private final Thread owner;
+    private boolean closed;
+
+    private MemoisationScope(MemoisationScope parent) {
+        this.parent = parent;
+        this.owner = Thread.currentThread();
+    }
+
+    /**
+     * @return a new scope for the current thread, which must be closed by the same thread
+     */
+    public static MemoisationScope open() {
+        MemoisationScope scope = new MemoisationScope(CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * @return the innermost open scope of the current thread, or null if there is none
+     */
+    static MemoisationScope current() {
+        return CURRENT.get();
+    }
+
+    Object get(MemoiseCacheKey key) {
+        return results.get(key);
+    }
+
+    void put(MemoiseCacheKey key, Object value) {
+        results.put(key, value);
+    }
+
+    /**
+     * @return the number of results memoised in this scope
+     */
+    public int size() {
+        return results.size();
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        if (Thread.currentThread() != owner) {
+            throw new IllegalStateException("Memoisation scope opened by " + owner.getName() + " closed by " + Thread.currentThread().getName());
+        }
+        if (CURRENT.get() != this) {
+            throw new IllegalStateException("Memoisation scope closed before the scopes nested in it");
+        }
+        closed = true;
+        results.clear();
+        if (parent == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(parent);
+        }
+    }
+}
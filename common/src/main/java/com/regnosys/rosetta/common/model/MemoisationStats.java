@@ -0,0 +1,109 @@
+package com.regnosys.rosetta.common.model;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A snapshot of the memoisation counters of one function, see {@link FunctionMemoisingModule#getStats()}.
+ */
+public class MemoisationStats {
+
+    private final String functionName;
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long computeTimeNanos;
+    private final long estimatedSize;
+
+    public MemoisationStats(String functionName, long hitCount, long missCount, long evictionCount,
+                            long computeTimeNanos, long estimatedSize) {
+        this.functionName = functionName;
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.computeTimeNanos = computeTimeNanos;
+        this.estimatedSize = estimatedSize;
+    }
+
+    /**
+     * @return the name of the function class
+     */
+    public String getFunctionName() {
+        return functionName;
+    }
+
+    /**
+     * @return the number of calls answered from the cache
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return the number of calls that evaluated the function
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return the number of results dropped from the cache because of its size or expiry policy
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return the total time spent evaluating the function on cache misses
+     */
+    public long getComputeTimeNanos() {
+        return computeTimeNanos;
+    }
+
+    /**
+     * @return the number of results of the function currently in the cache, which may lag behind evictions that
+     * the cache has not yet reported
+     */
+    public long getEstimatedSize() {
+        return estimatedSize;
+    }
+
+    /**
+     * @return the ratio of hits to calls, or 1 if the function has not been called
+     */
+    public double getHitRate() {
+        long calls = hitCount + missCount;
+        return calls == 0 ? 1.0 : (double) hitCount / calls;
+    }
+
+    @Override
+    public String toString() {
+        return functionName +
+                "{hits=" + hitCount +
+                ", misses=" + missCount +
+                ", hitRate=" + String.format("%.3f", getHitRate()) +
+                ", evictions=" + evictionCount +
+                ", computeTimeMs=" + TimeUnit.NANOSECONDS.toMillis(computeTimeNanos) +
+                ", estimatedSize=" + estimatedSize +
+                '}';
+    }
+}
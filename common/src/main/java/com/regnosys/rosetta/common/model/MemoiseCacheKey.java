@@ -24,16 +24,33 @@ import java.util.Arrays;
 import java.util.Objects;
 
 public class MemoiseCacheKey {
+    /**
+     * @param name      the method name, which is compared by identity first so should be the same instance for every
+     *                  call of a method
+     * @param arguments kept without copying, so must not be changed afterwards
+     */
     public static MemoiseCacheKey create(String name, Object... arguments) {
-        return new MemoiseCacheKey(name, Arrays.asList(arguments));
+        return new MemoiseCacheKey(name, arguments);
     }
+
     private final String methodName;
 
-    private final Object args;
+    private final Object[] args;
+
+    private final int hash;
 
-    private MemoiseCacheKey(String methodName, Object args) {
+    private MemoiseCacheKey(String methodName, Object[] args) {
         this.methodName = methodName;
         this.args = args;
+        this.hash = 31 * Objects.hashCode(methodName) + Arrays.hashCode(args);
+    }
+
+    String getMethodName() {
+        return methodName;
+    }
+
+    Object[] getArguments() {
+        return args;
     }
 
     @Override
@@ -41,11 +58,11 @@ public class MemoiseCacheKey {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         MemoiseCacheKey that = (MemoiseCacheKey) o;
-        return Objects.equals(methodName, that.methodName) && Objects.equals(args, that.args);
+        return hash == that.hash && Objects.equals(methodName, that.methodName) && Arrays.equals(args, that.args);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(methodName, args);
+        return hash;
     }
 }
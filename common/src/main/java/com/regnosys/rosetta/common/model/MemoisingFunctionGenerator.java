@@ -0,0 +1,292 @@
+package com.regnosys.rosetta.common.model;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.google.inject.ImplementedBy;
+import com.rosetta.model.lib.functions.RosettaFunction;
+
+import java.io.IOException;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Generates the source of a subclass of the default implementation of a Rosetta function that memoises its
+ * {@code evaluate} methods with plain method calls and a key class per method, instead of the runtime interception of
+ * {@link FunctionMemoisingModule}. The generated subclasses are bound by {@link GeneratedMemoisingModule}.
+ *
+ * Meant to be run at build time once the model is compiled, e.g. by the exec-maven-plugin with the output directory
+ * followed by the names of the functions to memoise as arguments, and the output directory then added as a source
+ * directory.
+ */
+public class MemoisingFunctionGenerator {
+
+    public static final String MEMOISING_SUFFIX = "Memoising";
+    private static final String INDENT = "    ";
+
+    public static void main(String[] args) throws IOException, ClassNotFoundException {
+        if (args.length < 1) {
+            throw new IllegalArgumentException("Usage: MemoisingFunctionGenerator <output directory> <function class>...");
+        }
+        Path outputDirectory = Paths.get(args[0]);
+        MemoisingFunctionGenerator generator = new MemoisingFunctionGenerator();
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        for (String functionName : Arrays.asList(args).subList(1, args.length)) {
+            Class<?> function = Class.forName(functionName, false, classLoader);
+            generator.generate(outputDirectory, function.asSubclass(RosettaFunction.class));
+        }
+    }
+
+    /**
+     * @return the name of the memoising subclass generated for the function, in the package of the function
+     */
+    public static String getMemoisingClassName(Class<?> function) {
+        String packageName = function.getPackage().getName();
+        return (packageName.isEmpty() ? "" : packageName + ".") + function.getSimpleName() + MEMOISING_SUFFIX;
+    }
+
+    /**
+     * Writes the source of the memoising subclass of the function under the output directory.
+     *
+     * @return the file written
+     */
+    public Path generate(Path outputDirectory, Class<? extends RosettaFunction> function) throws IOException {
+        Path file = outputDirectory.resolve(getMemoisingClassName(function).replace('.', '/') + ".java");
+        Files.createDirectories(file.getParent());
+        Files.write(file, generate(function).getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    /**
+     * @return the source of the memoising subclass of the function
+     */
+    public String generate(Class<? extends RosettaFunction> function) {
+        Class<?> defaultImplementation = getDefaultImplementation(function);
+        List<Method> methods = getEvaluateMethods(function);
+        if (methods.isEmpty()) {
+            throw new IllegalArgumentException(function.getName() + " has no evaluate method to memoise");
+        }
+        String packageName = function.getPackage().getName();
+        String className = function.getSimpleName() + MEMOISING_SUFFIX;
+
+        StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("/**\n")
+                .append(" * Memoises {@link ").append(function.getCanonicalName()).append("}, generated by ")
+                .append(MemoisingFunctionGenerator.class.getSimpleName()).append(".\n")
+                .append(" */\n")
+                .append("public class ").append(className).append(" extends ").append(defaultImplementation.getCanonicalName()).append(" {\n\n")
+                .append(INDENT).append("private final ").append(GeneratedMemoCache.class.getName()).append(" cache = new ")
+                .append(GeneratedMemoCache.class.getName()).append("();\n");
+        for (int i = 0; i < methods.size(); i++) {
+            appendMethod(source, methods.get(i), "Key" + i);
+        }
+        for (int i = 0; i < methods.size(); i++) {
+            appendKey(source, methods.get(i), "Key" + i);
+        }
+        source.append("}\n");
+        return source.toString();
+    }
+
+    private static Class<?> getDefaultImplementation(Class<?> function) {
+        ImplementedBy implementedBy = function.getAnnotation(ImplementedBy.class);
+        if (implementedBy == null || !implementedBy.value().getName().endsWith(FunctionMemoisingModule.DEFAULT_SUFFIX)) {
+            throw new IllegalArgumentException(function.getName() + " is not implemented by a default implementation");
+        }
+        Class<?> defaultImplementation = implementedBy.value();
+        if (Modifier.isFinal(defaultImplementation.getModifiers())) {
+            throw new IllegalArgumentException(defaultImplementation.getName() + " is final");
+        }
+        return defaultImplementation;
+    }
+
+    private static List<Method> getEvaluateMethods(Class<?> function) {
+        List<Method> methods = new ArrayList<>();
+        for (Method method : function.getDeclaredMethods()) {
+            if (!FunctionMemoisingModule.isEvaluateMethod().matches(method)
+                    || !Modifier.isPublic(method.getModifiers())
+                    || Modifier.isStatic(method.getModifiers())) {
+                continue;
+            }
+            if (Modifier.isFinal(method.getModifiers())) {
+                throw new IllegalArgumentException(method + " is final");
+            }
+            if (method.getTypeParameters().length > 0) {
+                throw new IllegalArgumentException(method + " has type parameters");
+            }
+            if (Arrays.stream(method.getExceptionTypes()).anyMatch(MemoisingFunctionGenerator::isChecked)) {
+                throw new IllegalArgumentException(method + " throws checked exceptions");
+            }
+            methods.add(method);
+        }
+        // the declared methods are in no particular order, so sort them to generate the same source every time
+        methods.sort(Comparator.comparing(Method::toGenericString));
+        return methods;
+    }
+
+    private static boolean isChecked(Class<?> exceptionType) {
+        return !RuntimeException.class.isAssignableFrom(exceptionType) && !Error.class.isAssignableFrom(exceptionType);
+    }
+
+    private static void appendMethod(StringBuilder source, Method method, String keyName) {
+        Type[] parameterTypes = method.getGenericParameterTypes();
+        List<String> parameters = new ArrayList<>();
+        List<String> arguments = new ArrayList<>();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            parameters.add("final " + typeName(parameterTypes[i]) + " arg" + i);
+            arguments.add("arg" + i);
+        }
+        String argumentList = String.join(", ", arguments);
+        String keyInstance = "new " + keyName + "(" + argumentList + ")";
+        String call = "super." + method.getName() + "(" + argumentList + ")";
+
+        source.append("\n");
+        boolean isVoid = method.getReturnType() == void.class;
+        if (!isVoid) {
+            source.append(INDENT).append("@SuppressWarnings(\"unchecked\")\n");
+        }
+        source.append(INDENT).append("@Override\n")
+                .append(INDENT).append("public ").append(typeName(method.getGenericReturnType())).append(" ")
+                .append(method.getName()).append("(").append(String.join(", ", parameters)).append(") {\n");
+        if (isVoid) {
+            source.append(INDENT).append(INDENT).append("cache.get(").append(keyInstance).append(", () -> {\n")
+                    .append(INDENT).append(INDENT).append(INDENT).append(call).append(";\n")
+                    .append(INDENT).append(INDENT).append(INDENT).append("return null;\n")
+                    .append(INDENT).append(INDENT).append("});\n");
+        } else {
+            String castType = method.getReturnType().isPrimitive()
+                    ? boxed(method.getReturnType()).getCanonicalName()
+                    : typeName(method.getGenericReturnType());
+            source.append(INDENT).append(INDENT).append("return (").append(castType).append(") cache.get(")
+                    .append(keyInstance).append(", () -> ").append(call).append(");\n");
+        }
+        source.append(INDENT).append("}\n");
+    }
+
+    private static void appendKey(StringBuilder source, Method method, String keyName) {
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        List<String> fieldTypes = Arrays.stream(parameterTypes)
+                .map(type -> boxed(type).getCanonicalName())
+                .collect(Collectors.toList());
+        String indent2 = INDENT + INDENT;
+        String indent3 = indent2 + INDENT;
+
+        source.append("\n")
+                .append(INDENT).append("private static final class ").append(keyName).append(" {\n");
+        for (int i = 0; i < parameterTypes.length; i++) {
+            source.append(indent2).append("private final ").append(fieldTypes.get(i)).append(" arg").append(i).append(";\n");
+        }
+        source.append(indent2).append("private final int hash;\n\n");
+
+        List<String> parameters = new ArrayList<>();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            parameters.add(fieldTypes.get(i) + " arg" + i);
+        }
+        source.append(indent2).append(keyName).append("(").append(String.join(", ", parameters)).append(") {\n");
+        for (int i = 0; i < parameterTypes.length; i++) {
+            source.append(indent3).append("this.arg").append(i).append(" = arg").append(i).append(";\n");
+        }
+        source.append(indent3).append("int hash = ").append(keyName.hashCode()).append(";\n");
+        for (int i = 0; i < parameterTypes.length; i++) {
+            source.append(indent3).append("hash = 31 * hash + ").append(hashCodeOf(parameterTypes[i], "arg" + i)).append(";\n");
+        }
+        source.append(indent3).append("this.hash = hash;\n")
+                .append(indent2).append("}\n\n")
+                .append(indent2).append("@Override\n")
+                .append(indent2).append("public int hashCode() {\n")
+                .append(indent3).append("return hash;\n")
+                .append(indent2).append("}\n\n")
+                .append(indent2).append("@Override\n")
+                .append(indent2).append("public boolean equals(Object o) {\n")
+                .append(indent3).append("if (this == o) return true;\n")
+                .append(indent3).append("if (!(o instanceof ").append(keyName).append(")) return false;\n")
+                .append(indent3).append(keyName).append(" other = (").append(keyName).append(") o;\n")
+                .append(indent3).append("return hash == other.hash");
+        for (int i = 0; i < parameterTypes.length; i++) {
+            source.append("\n").append(indent3).append(indent2).append("&& ")
+                    .append(equalsOf(parameterTypes[i], "arg" + i, "other.arg" + i));
+        }
+        source.append(";\n")
+                .append(indent2).append("}\n")
+                .append(INDENT).append("}\n");
+    }
+
+    private static String hashCodeOf(Class<?> type, String field) {
+        return type.isArray() ? "java.util.Arrays.deepHashCode(new Object[]{" + field + "})" : "java.util.Objects.hashCode(" + field + ")";
+    }
+
+    private static String equalsOf(Class<?> type, String field, String otherField) {
+        return type.isArray() ? "java.util.Objects.deepEquals(" + field + ", " + otherField + ")" : "java.util.Objects.equals(" + field + ", " + otherField + ")";
+    }
+
+    private static Class<?> boxed(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return type;
+        }
+        if (type == boolean.class) return Boolean.class;
+        if (type == byte.class) return Byte.class;
+        if (type == char.class) return Character.class;
+        if (type == short.class) return Short.class;
+        if (type == int.class) return Integer.class;
+        if (type == long.class) return Long.class;
+        if (type == float.class) return Float.class;
+        if (type == double.class) return Double.class;
+        return Void.class;
+    }
+
+    private static String typeName(Type type) {
+        if (type instanceof Class) {
+            return ((Class<?>) type).getCanonicalName();
+        }
+        if (type instanceof ParameterizedType) {
+            ParameterizedType parameterized = (ParameterizedType) type;
+            return typeName(parameterized.getRawType()) + Arrays.stream(parameterized.getActualTypeArguments())
+                    .map(MemoisingFunctionGenerator::typeName)
+                    .collect(Collectors.joining(", ", "<", ">"));
+        }
+        if (type instanceof WildcardType) {
+            WildcardType wildcard = (WildcardType) type;
+            if (wildcard.getLowerBounds().length > 0) {
+                return "? super " + typeName(wildcard.getLowerBounds()[0]);
+            }
+            Type upperBound = wildcard.getUpperBounds()[0];
+            return upperBound == Object.class ? "?" : "? extends " + typeName(upperBound);
+        }
+        if (type instanceof GenericArrayType) {
+            return typeName(((GenericArrayType) type).getGenericComponentType()) + "[]";
+        }
+        throw new IllegalArgumentException("Unsupported type " + type);
+    }
+}
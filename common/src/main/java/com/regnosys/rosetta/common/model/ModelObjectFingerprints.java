@@ -0,0 +1,128 @@
+package com.regnosys.rosetta.common.model;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.regnosys.rosetta.common.hashing.FingerprintCollector;
+import com.regnosys.rosetta.common.hashing.WideHashReport;
+import com.rosetta.model.lib.RosettaModelObject;
+import com.rosetta.model.lib.RosettaModelObjectBuilder;
+import com.rosetta.model.lib.path.RosettaPath;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Replaces model object arguments with fingerprints of their content, see
+ * {@link MemoisationPolicy#fingerprintModelObjects()}.
+ *
+ * The fingerprint of each instance is calculated once and kept for as long as the instance is, so later calls with the
+ * same instance do not walk it again. Builders are left as they are, since they may change after the call.
+ */
+class ModelObjectFingerprints {
+
+    private final Cache<RosettaModelObject, Fingerprint> fingerprints = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build();
+
+    /**
+     * @return the arguments with every model object, including those in lists, replaced by its fingerprint, or the
+     * given array if there are none
+     */
+    Object[] keyArguments(Object[] arguments) {
+        Object[] keyArguments = arguments;
+        for (int i = 0; i < arguments.length; i++) {
+            Object keyArgument = keyArgument(arguments[i]);
+            if (keyArgument != arguments[i]) {
+                if (keyArguments == arguments) {
+                    keyArguments = arguments.clone();
+                }
+                keyArguments[i] = keyArgument;
+            }
+        }
+        return keyArguments;
+    }
+
+    private Object keyArgument(Object argument) {
+        if (isFingerprinted(argument)) {
+            return getFingerprint((RosettaModelObject) argument);
+        }
+        if (argument instanceof List && ((List<?>) argument).stream().anyMatch(ModelObjectFingerprints::isFingerprinted)) {
+            List<Object> keyList = new ArrayList<>(((List<?>) argument).size());
+            for (Object element : (List<?>) argument) {
+                keyList.add(keyArgument(element));
+            }
+            return keyList;
+        }
+        return argument;
+    }
+
+    private static boolean isFingerprinted(Object argument) {
+        return argument instanceof RosettaModelObject && !(argument instanceof RosettaModelObjectBuilder);
+    }
+
+    Fingerprint getFingerprint(RosettaModelObject object) {
+        try {
+            return fingerprints.get(object, () -> calculate(object));
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to fingerprint " + object.getType().getName(), e.getCause());
+        }
+    }
+
+    private static Fingerprint calculate(RosettaModelObject object) {
+        FingerprintCollector collector = new FingerprintCollector().withRoot(object);
+        object.process(RosettaPath.valueOf(object.getType().getSimpleName()), collector);
+        WideHashReport report = collector.report();
+        return new Fingerprint(object.getType(), report.getHigh(), report.getLow());
+    }
+
+    static class Fingerprint {
+        private final Class<?> type;
+        private final long high;
+        private final long low;
+
+        Fingerprint(Class<?> type, long high, long low) {
+            this.type = type;
+            this.high = high;
+            this.low = low;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Fingerprint that = (Fingerprint) o;
+            return high == that.high && low == that.low && type == that.type;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(low);
+        }
+
+        @Override
+        public String toString() {
+            return type.getSimpleName() + "#" + Long.toHexString(high) + Long.toHexString(low);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.regnosys.rosetta.common.model;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.regnosys.rosetta.common.util.SimpleProcessor;
+import com.rosetta.model.lib.RosettaModelObject;
+import com.rosetta.model.lib.path.RosettaPath;
+import com.rosetta.model.lib.process.AttributeMeta;
+import com.rosetta.model.lib.records.Date;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estimates the memory retained by a memoised result, for caches bounded by a byte budget, see
+ * {@link MemoisationPolicy#maximumBytes(long)}.
+ *
+ * The estimate assumes a 64-bit JVM and is deliberately cheap rather than exact: model objects are walked once,
+ * counting an object header per object, a reference per attribute and the size of each basic value, and shared
+ * instances are counted every time they are reached.
+ */
+public class ObjectSizeEstimator {
+
+    static final int HEADER = 16;
+    static final int REFERENCE = 8;
+    private static final int LIST = 40;
+    private static final int MAP_ENTRY = 32;
+
+    private ObjectSizeEstimator() {
+    }
+
+    /**
+     * @return the estimated number of bytes retained by the value, or 0 for null
+     */
+    public static long estimate(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof MemoiseCacheKey) {
+            // the method name is shared by every key of the method
+            return HEADER + 2 * REFERENCE + estimate(((MemoiseCacheKey) value).getArguments());
+        }
+        if (value instanceof RosettaModelObject) {
+            RosettaModelObject object = (RosettaModelObject) value;
+            SizeCollector collector = new SizeCollector();
+            object.process(RosettaPath.valueOf(object.getType().getSimpleName()), collector);
+            return HEADER + collector.size;
+        }
+        if (value instanceof Collection) {
+            long size = LIST + (long) REFERENCE * ((Collection<?>) value).size();
+            for (Object element : (Collection<?>) value) {
+                size += estimate(element);
+            }
+            return size;
+        }
+        if (value instanceof Map) {
+            long size = LIST + (long) MAP_ENTRY * ((Map<?, ?>) value).size();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                size += estimate(entry.getKey()) + estimate(entry.getValue());
+            }
+            return size;
+        }
+        if (value instanceof Object[]) {
+            long size = HEADER + (long) REFERENCE * ((Object[]) value).length;
+            for (Object element : (Object[]) value) {
+                size += estimate(element);
+            }
+            return size;
+        }
+        return estimateBasic(value);
+    }
+
+    private static long estimateBasic(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof String) {
+            return 2 * HEADER + 8 + 2L * ((String) value).length();
+        }
+        if (value instanceof BigDecimal) {
+            BigInteger unscaled = ((BigDecimal) value).unscaledValue();
+            return unscaled.bitLength() < 64 ? 40 : 40 + HEADER + 24 + unscaled.bitLength() / 8;
+        }
+        if (value instanceof Boolean || value instanceof Enum) {
+            // shared constants
+            return 0;
+        }
+        if (value instanceof LocalDate || value instanceof LocalTime) {
+            return 24;
+        }
+        if (value instanceof Date) {
+            return 48;
+        }
+        if (value instanceof LocalDateTime) {
+            return 72;
+        }
+        if (value instanceof ZonedDateTime) {
+            // the zone and offset are usually shared
+            return 96;
+        }
+        if (value instanceof Long || value instanceof Double) {
+            return 24;
+        }
+        return HEADER;
+    }
+
+    private static class SizeCollector extends SimpleProcessor {
+        private long size;
+
+        @Override
+        public <R extends RosettaModelObject> boolean processRosetta(RosettaPath path, Class<? extends R> rosettaType, R instance,
+                                                                     RosettaModelObject parent, AttributeMeta... metas) {
+            size += REFERENCE;
+            if (instance == null) {
+                return false;
+            }
+            size += HEADER;
+            return true;
+        }
+
+        /**
+         * The elements are walked without being passed to the processor, so their headers are counted here.
+         */
+        @Override
+        public <R extends RosettaModelObject> boolean processRosetta(RosettaPath path, Class<? extends R> rosettaType,
+                                                                     List<? extends R> instances, RosettaModelObject parent,
+                                                                     AttributeMeta... metas) {
+            size += REFERENCE;
+            if (instances == null) {
+                return false;
+            }
+            size += LIST + (long) (REFERENCE + HEADER) * instances.size();
+            return true;
+        }
+
+        @Override
+        public <T> void processBasic(RosettaPath path, Class<? extends T> rosettaType, T instance, RosettaModelObject parent,
+                                     AttributeMeta... metas) {
+            size += REFERENCE + estimateBasic(instance);
+        }
+
+        @Override
+        public <T> void processBasic(RosettaPath path, Class<? extends T> rosettaType, Collection<? extends T> instances,
+                                     RosettaModelObject parent, AttributeMeta... metas) {
+            size += REFERENCE;
+            if (instances != null) {
+                size += LIST + (long) REFERENCE * instances.size();
+                for (T instance : instances) {
+                    size += estimateBasic(instance);
+                }
+            }
+        }
+
+        @Override
+        public Report report() {
+            return null;
+        }
+    }
+}
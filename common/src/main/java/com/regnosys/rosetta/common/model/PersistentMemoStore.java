@@ -0,0 +1,405 @@
+package com.regnosys.rosetta.common.model;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.regnosys.rosetta.common.hashing.FingerprintCollector;
+import com.regnosys.rosetta.common.hashing.WideHashReport;
+import com.regnosys.rosetta.common.serialisation.RosettaObjectMapper;
+import com.rosetta.model.lib.RosettaModelObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A persistent tier for memoised results, so that a fresh JVM replaying the same inputs, e.g. a nightly regression
+ * run, can start from the results of the previous run. See
+ * {@link FunctionMemoisingModuleBuilder#setPersistentStore(PersistentMemoStore)}.
+ *
+ * Results are keyed by the method and a 128-bit fingerprint of the arguments, and appended to a memory mapped file as
+ * JSON. The file records the model version it was written for and is emptied when opened for any other version, so
+ * results computed by a different model are never returned. Calls whose arguments are not model objects or basic
+ * values, or whose results cannot be serialised, are not stored.
+ *
+ * The store is safe to share between threads, but not between processes.
+ */
+public class PersistentMemoStore implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PersistentMemoStore.class);
+
+    private static final int MAGIC = 0x524D454D;
+    private static final int FORMAT = 1;
+    private static final int SEGMENT_SIZE = 16 * 1024 * 1024;
+    // segment size, then records of: length, key high, key low, kind, type name and JSON
+    private static final int SEGMENT_HEADER = 4;
+    private static final int RECORD_HEADER = 4 + 8 + 8 + 1 + 2;
+    private static final byte KIND_NULL = 0;
+    private static final byte KIND_VALUE = 1;
+    private static final byte KIND_LIST = 2;
+
+    private final Path file;
+    private final String modelVersion;
+    private final ObjectMapper mapper;
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final FileChannel channel;
+    private long fileSize;
+
+    /**
+     * @param modelVersion identifies the model the results were computed with, e.g. {@link #modelJarHash(Class)}
+     */
+    public PersistentMemoStore(Path file, String modelVersion) throws IOException {
+        this(file, modelVersion, RosettaObjectMapper.getNewRosettaObjectMapper());
+    }
+
+    public PersistentMemoStore(Path file, String modelVersion, ObjectMapper mapper) throws IOException {
+        this.file = file;
+        this.modelVersion = modelVersion;
+        this.mapper = mapper;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (!readExisting()) {
+            reset();
+        }
+    }
+
+    /**
+     * @return the SHA-256 hash of the jar the model class was loaded from, so that the store is invalidated by any
+     * change to the model
+     */
+    public static String modelJarHash(Class<?> modelClass) throws IOException {
+        CodeSource codeSource = modelClass.getProtectionDomain().getCodeSource();
+        Path jar;
+        try {
+            jar = codeSource == null ? null : Paths.get(codeSource.getLocation().toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException("Unable to locate the jar of " + modelClass.getName(), e);
+        }
+        if (jar == null || !Files.isRegularFile(jar)) {
+            throw new IOException(modelClass.getName() + " was not loaded from a jar");
+        }
+        try (InputStream in = Files.newInputStream(jar)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[64 * 1024];
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                digest.update(buffer, 0, read);
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the key of a call, or null if its arguments cannot be fingerprinted the same way in every JVM
+     */
+    Key keyOf(String methodName, Object[] arguments) {
+        FingerprintCollector collector = new FingerprintCollector();
+        if (!collector.accumulateValue(methodName) || !collector.accumulateValue(Arrays.asList(arguments))) {
+            return null;
+        }
+        WideHashReport report = collector.report();
+        return new Key(report.getHigh(), report.getLow());
+    }
+
+    /**
+     * @return the stored result, {@link MemoCache#NULL} for a null result, or null if there is none
+     */
+    Object get(Key key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        try {
+            return read(entry);
+        } catch (IOException | ClassNotFoundException e) {
+            LOGGER.debug("Unable to read memoised result from {}", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores a result, unless one is already stored for the key or it cannot be serialised or written, as the store is
+     * only a cache and a failure to write to it must not fail the function.
+     */
+    void put(Key key, Object result) {
+        if (entries.containsKey(key)) {
+            return;
+        }
+        byte[] record;
+        try {
+            record = toRecord(key, result);
+        } catch (IOException e) {
+            LOGGER.debug("Unable to serialise memoised result of type {}", result.getClass().getName(), e);
+            return;
+        }
+        if (record != null) {
+            try {
+                append(key, record);
+            } catch (IOException e) {
+                LOGGER.warn("Unable to write memoised result to {}", file, e);
+            }
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public String getModelVersion() {
+        return modelVersion;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+        entries.clear();
+        segments.clear();
+        channel.close();
+    }
+
+    private byte[] toRecord(Key key, Object result) throws IOException {
+        byte kind;
+        Class<?> type = null;
+        byte[] json = new byte[0];
+        if (result == MemoCache.NULL) {
+            kind = KIND_NULL;
+        } else if (result instanceof List) {
+            type = elementType((List<?>) result);
+            if (type == null) {
+                return null;
+            }
+            kind = KIND_LIST;
+            json = mapper.writeValueAsBytes(result);
+        } else {
+            type = typeOf(result);
+            kind = KIND_VALUE;
+            json = mapper.writeValueAsBytes(result);
+        }
+        byte[] typeName = type == null ? new byte[0] : type.getName().getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(RECORD_HEADER + typeName.length + json.length);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(RECORD_HEADER - 4 + typeName.length + json.length);
+        out.writeLong(key.high);
+        out.writeLong(key.low);
+        out.writeByte(kind);
+        out.writeShort(typeName.length);
+        out.write(typeName);
+        out.write(json);
+        return bytes.toByteArray();
+    }
+
+    private static Class<?> typeOf(Object value) {
+        return value instanceof RosettaModelObject ? ((RosettaModelObject) value).getType() : value.getClass();
+    }
+
+    /**
+     * @return the type of every element, or null if the elements differ in type or the list is empty
+     */
+    private static Class<?> elementType(List<?> list) {
+        Class<?> type = null;
+        for (Object element : list) {
+            if (element == null) {
+                return null;
+            }
+            Class<?> elementType = typeOf(element);
+            if (type != null && type != elementType) {
+                return null;
+            }
+            type = elementType;
+        }
+        return type;
+    }
+
+    private synchronized void append(Key key, byte[] record) throws IOException {
+        if (entries.containsKey(key)) {
+            return;
+        }
+        MappedByteBuffer segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (segment == null || segment.remaining() < record.length) {
+            segment = map(fileSize, Math.max(SEGMENT_SIZE, record.length + SEGMENT_HEADER));
+            segment.putInt(0, segment.capacity());
+            segment.position(SEGMENT_HEADER);
+        }
+        int offset = segment.position();
+        segment.put(record);
+        entries.put(key, new Entry(segments.size() - 1, offset));
+    }
+
+    private MappedByteBuffer map(long position, int size) throws IOException {
+        MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+        segments.add(segment);
+        fileSize = position + size;
+        return segment;
+    }
+
+    private Object read(Entry entry) throws IOException, ClassNotFoundException {
+        ByteBuffer buffer;
+        synchronized (this) {
+            buffer = segments.get(entry.segment).duplicate();
+        }
+        buffer.position(entry.offset);
+        int length = buffer.getInt();
+        buffer.position(buffer.position() + 16);
+        byte kind = buffer.get();
+        byte[] typeName = new byte[buffer.getShort()];
+        buffer.get(typeName);
+        byte[] json = new byte[length - (RECORD_HEADER - 4) - typeName.length];
+        buffer.get(json);
+        if (kind == KIND_NULL) {
+            return MemoCache.NULL;
+        }
+        Class<?> type = Class.forName(new String(typeName, StandardCharsets.UTF_8), false, getClassLoader());
+        JavaType javaType = kind == KIND_LIST
+                ? mapper.getTypeFactory().constructCollectionType(List.class, type)
+                : mapper.getTypeFactory().constructType(type);
+        return mapper.readValue(json, javaType);
+    }
+
+    private static ClassLoader getClassLoader() {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        return classLoader != null ? classLoader : PersistentMemoStore.class.getClassLoader();
+    }
+
+    /**
+     * @return false if the file is new, or was written for another model version or format
+     */
+    private boolean readExisting() throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            return false;
+        }
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, 4096));
+        if (header.remaining() < 12 || header.getInt() != MAGIC || header.getInt() != FORMAT) {
+            return false;
+        }
+        int versionLength = header.getInt();
+        if (versionLength < 0 || versionLength > header.remaining()) {
+            return false;
+        }
+        byte[] version = new byte[versionLength];
+        header.get(version);
+        if (!modelVersion.equals(new String(version, StandardCharsets.UTF_8))) {
+            LOGGER.info("Discarding memoised results in {} written for another model version", file);
+            return false;
+        }
+        fileSize = header.position();
+        while (fileSize + SEGMENT_HEADER <= size) {
+            int segmentSize = channel.map(FileChannel.MapMode.READ_ONLY, fileSize, SEGMENT_HEADER).getInt();
+            if (segmentSize < SEGMENT_HEADER || fileSize + segmentSize > size) {
+                break;
+            }
+            MappedByteBuffer segment = map(fileSize, segmentSize);
+            segment.position(SEGMENT_HEADER);
+            readRecords(segment);
+        }
+        return true;
+    }
+
+    /**
+     * Indexes the records of a segment, leaving it positioned after the last one.
+     */
+    private void readRecords(MappedByteBuffer segment) {
+        while (segment.remaining() >= RECORD_HEADER) {
+            int offset = segment.position();
+            int length = segment.getInt(offset);
+            if (length <= 0 || length > segment.remaining() - 4) {
+                break;
+            }
+            Key key = new Key(segment.getLong(offset + 4), segment.getLong(offset + 12));
+            entries.putIfAbsent(key, new Entry(segments.size() - 1, offset));
+            segment.position(offset + 4 + length);
+        }
+    }
+
+    private void reset() throws IOException {
+        entries.clear();
+        segments.clear();
+        channel.truncate(0);
+        byte[] version = modelVersion.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(12 + version.length);
+        header.putInt(MAGIC).putInt(FORMAT).putInt(version.length).put(version);
+        header.flip();
+        channel.write(header, 0);
+        fileSize = header.capacity();
+    }
+
+    static final class Key {
+        private final long high;
+        private final long low;
+
+        Key(long high, long low) {
+            this.high = high;
+            this.low = low;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return high == key.high && low == key.low;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(low);
+        }
+    }
+
+    private static final class Entry {
+        private final int segment;
+        private final int offset;
+
+        Entry(int segment, int offset) {
+            this.segment = segment;
+            this.offset = offset;
+        }
+    }
+}
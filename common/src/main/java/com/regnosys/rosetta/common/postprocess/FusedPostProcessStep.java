@@ -0,0 +1,43 @@
+package com.regnosys.rosetta.common.postprocess;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.rosetta.model.lib.RosettaModelObject;
+import com.rosetta.model.lib.RosettaModelObjectBuilder;
+import com.rosetta.model.lib.process.PostProcessStep;
+
+import java.util.List;
+
+/**
+ * PostProcessStep that can share its walks of the builder with other steps, see {@link FusedPostProcessor}.
+ *
+ * The step describes its work as an ordered list of passes. Each pass is run in its own phase, so a pass only starts
+ * once every callback of the step's previous pass, over the whole object, has completed.
+ */
+public interface FusedPostProcessStep extends PostProcessStep {
+
+	/**
+	 * @param topClass the type of the object being processed
+	 * @param builder the builder that all passes of all steps are run against
+	 * @return the passes to run, in order
+	 */
+	<T extends RosettaModelObject> List<PostProcessPass> createPasses(Class<? extends T> topClass, RosettaModelObjectBuilder builder);
+}
@@ -0,0 +1,138 @@
+package com.regnosys.rosetta.common.postprocess;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.regnosys.rosetta.common.util.CompositeBuilderProcessor;
+import com.rosetta.model.lib.RosettaModelObject;
+import com.rosetta.model.lib.RosettaModelObjectBuilder;
+import com.rosetta.model.lib.path.RosettaPath;
+import com.rosetta.model.lib.process.BuilderProcessor;
+import com.rosetta.model.lib.process.PostProcessStep;
+import com.rosetta.model.lib.process.PostProcessor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * PostProcessor that runs several steps over one shared builder using as few walks as the data dependencies allow.
+ *
+ * The passes of all {@link FusedPostProcessStep}s are grouped into phases and each phase is a single walk of the
+ * builder, with the processors of the phase called in the order their steps were added. A step added with
+ * {@link #add(PostProcessStep)} has its first pass in the current phase and each further pass in the following phase.
+ * {@link #barrier()} starts a new phase after every pass added so far, for steps that need the complete result of
+ * earlier steps. Steps that are not fused run on their own, between barriers.
+ *
+ * For example, hashing and key collection can share the first walk, re-keying and reference resolution the second, and
+ * qualification, which reads fully resolved objects, runs after a barrier on the third.
+ */
+public class FusedPostProcessor implements PostProcessor {
+
+	private final List<Entry> entries = new ArrayList<>();
+
+	/**
+	 * Adds a step to the current phase.
+	 */
+	public FusedPostProcessor add(PostProcessStep step) {
+		boolean fused = step instanceof FusedPostProcessStep;
+		entries.add(new Entry(step, !fused));
+		if (!fused) {
+			barrier();
+		}
+		return this;
+	}
+
+	/**
+	 * Makes any step added after this call wait for all the steps added before it.
+	 */
+	public FusedPostProcessor barrier() {
+		entries.add(Entry.BARRIER);
+		return this;
+	}
+
+	@Override
+	public <T extends RosettaModelObject> RosettaModelObjectBuilder postProcess(Class<T> rosettaType, RosettaModelObjectBuilder instance) {
+		RosettaPath path = RosettaPath.valueOf(instance.getType().getSimpleName());
+		for (Phase phase : plan(rosettaType, instance)) {
+			if (phase.standalone != null) {
+				phase.standalone.runProcessStep(rosettaType, instance);
+			} else {
+				runPhase(path, rosettaType, instance, phase.passes);
+			}
+		}
+		return instance;
+	}
+
+	private <T extends RosettaModelObject> List<Phase> plan(Class<T> rosettaType, RosettaModelObjectBuilder instance) {
+		List<Phase> phases = new ArrayList<>();
+		int start = 0;
+		for (Entry entry : entries) {
+			if (entry == Entry.BARRIER) {
+				start = phases.size();
+			} else if (entry.standalone) {
+				start = phases.size();
+				phases.add(new Phase(entry.step));
+			} else {
+				List<PostProcessPass> passes = ((FusedPostProcessStep) entry.step).createPasses(rosettaType, instance);
+				for (int i = 0; i < passes.size(); i++) {
+					while (phases.size() <= start + i) {
+						phases.add(new Phase(null));
+					}
+					phases.get(start + i).passes.add(passes.get(i));
+				}
+			}
+		}
+		return phases;
+	}
+
+	private <T extends RosettaModelObject> void runPhase(RosettaPath path, Class<T> rosettaType, RosettaModelObjectBuilder instance, List<PostProcessPass> passes) {
+		List<BuilderProcessor> processors = new ArrayList<>(passes.size());
+		for (PostProcessPass pass : passes) {
+			BuilderProcessor processor = pass.createProcessor();
+			if (pass.isProcessRoot()) {
+				processor.processRosetta(path, rosettaType, instance, null);
+			}
+			processors.add(processor);
+		}
+		instance.process(path, processors.size() == 1 ? processors.get(0) : new CompositeBuilderProcessor(processors));
+		passes.forEach(PostProcessPass::complete);
+	}
+
+	private static class Entry {
+		static final Entry BARRIER = new Entry(null, false);
+
+		final PostProcessStep step;
+		final boolean standalone;
+
+		Entry(PostProcessStep step, boolean standalone) {
+			this.step = step;
+			this.standalone = standalone;
+		}
+	}
+
+	private static class Phase {
+		final PostProcessStep standalone;
+		final List<PostProcessPass> passes = new ArrayList<>();
+
+		Phase(PostProcessStep standalone) {
+			this.standalone = standalone;
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package com.regnosys.rosetta.common.postprocess;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.rosetta.model.lib.process.BuilderProcessor;
+
+import java.util.function.Supplier;
+
+/**
+ * One walk's worth of work for a {@link FusedPostProcessStep}.
+ *
+ * The processor is only created when the phase containing the pass starts, so it can safely read state gathered by the
+ * step's earlier passes, and the pass is completed once the walk of the phase is over, when every pass of the phase has
+ * seen the whole builder.
+ */
+public class PostProcessPass {
+
+	private final Supplier<? extends BuilderProcessor> processorSupplier;
+	private final boolean processRoot;
+	private final Runnable onComplete;
+
+	/**
+	 * @param processorSupplier creates the processor for the walk
+	 * @param processRoot whether the processor should also be called for the root object itself, before the walk of its
+	 *                    attributes
+	 */
+	public PostProcessPass(Supplier<? extends BuilderProcessor> processorSupplier, boolean processRoot) {
+		this(processorSupplier, processRoot, () -> {});
+	}
+
+	/**
+	 * @param onComplete run once the walk of the phase is over
+	 */
+	public PostProcessPass(Supplier<? extends BuilderProcessor> processorSupplier, boolean processRoot, Runnable onComplete) {
+		this.processorSupplier = processorSupplier;
+		this.processRoot = processRoot;
+		this.onComplete = onComplete;
+	}
+
+	public BuilderProcessor createProcessor() {
+		return processorSupplier.get();
+	}
+
+	public boolean isProcessRoot() {
+		return processRoot;
+	}
+
+	public void complete() {
+		onComplete.run();
+	}
+}
@@ -25,28 +25,26 @@ import com.regnosys.rosetta.common.hashing.*;
 import com.regnosys.rosetta.common.postprocess.qualify.QualifyProcessorStep;
 import com.rosetta.model.lib.RosettaModelObject;
 import com.rosetta.model.lib.RosettaModelObjectBuilder;
-import com.rosetta.model.lib.process.PostProcessStep;
 import com.rosetta.model.lib.process.PostProcessor;
 
-import java.util.Arrays;
-import java.util.List;
-
+/**
+ * Runs the key, reference and qualification steps in three walks of the builder: keys are hashed and referenced
+ * objects collected on the first, references re-keyed and resolved on the second and objects qualified on the last.
+ */
 public class WorkflowPostProcessor implements PostProcessor {
-	private final List<PostProcessStep> postProcessors;
+	private final FusedPostProcessor postProcessor;
 
 	@Inject
 	public WorkflowPostProcessor(QualifyProcessorStep qualifyProcessorStep, ReferenceConfig resolverConfig) {
-		this.postProcessors = Arrays.asList(
-				new ReKeyProcessStep(new GlobalKeyProcessStep(NonNullHashCollector::new)),
-				new ReferenceResolverProcessStep(resolverConfig),
-				qualifyProcessorStep);
+		this.postProcessor = new FusedPostProcessor()
+				.add(new ReKeyProcessStep(new BottomUpGlobalKeyProcessStep()))
+				.add(new ReferenceResolverProcessStep(resolverConfig))
+				.barrier()
+				.add(qualifyProcessorStep);
 	}
 
 	@Override
 	public <T extends RosettaModelObject> RosettaModelObjectBuilder postProcess(Class<T> rosettaType, RosettaModelObjectBuilder instance) {
-		for (PostProcessStep postProcessor : postProcessors) {
-			postProcessor.runProcessStep(rosettaType, instance);
-		}
-		return instance;
+		return postProcessor.postProcess(rosettaType, instance);
 	}
 }
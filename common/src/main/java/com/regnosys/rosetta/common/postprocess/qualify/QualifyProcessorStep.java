@@ -21,20 +21,21 @@ package com.regnosys.rosetta.common.postprocess.qualify;
  */
 
 import com.google.inject.Inject;
+import com.regnosys.rosetta.common.postprocess.FusedPostProcessStep;
+import com.regnosys.rosetta.common.postprocess.PostProcessPass;
 import com.regnosys.rosetta.common.util.SimpleBuilderProcessor;
 import com.rosetta.model.lib.RosettaModelObject;
 import com.rosetta.model.lib.RosettaModelObjectBuilder;
 import com.rosetta.model.lib.meta.RosettaMetaData;
 import com.rosetta.model.lib.path.RosettaPath;
 import com.rosetta.model.lib.process.AttributeMeta;
-import com.rosetta.model.lib.process.PostProcessStep;
 import com.rosetta.model.lib.qualify.QualifyFunctionFactory;
 import com.rosetta.model.lib.qualify.QualifyResult;
 
 import java.util.*;
 import java.util.function.Function;
 
-public class QualifyProcessorStep implements PostProcessStep {
+public class QualifyProcessorStep implements FusedPostProcessStep {
 	
 	@Inject
 	QualifyFunctionFactory qualifyFunctionFactory;
@@ -68,6 +69,12 @@ public class QualifyProcessorStep implements PostProcessStep {
 		return new QualificationReport(builder.build(), collectedResults);
 	}
 
+	@Override
+	public <T extends RosettaModelObject> List<PostProcessPass> createPasses(Class<? extends T> topClass, RosettaModelObjectBuilder builder) {
+		return Collections.singletonList(new PostProcessPass(() ->
+				new QualifyThenUpdateResultProcessor(qualificationHandlerProvider.getQualificationHandlerMap(), new ArrayList<>()), true));
+	}
+
 	private class QualifyThenUpdateResultProcessor extends SimpleBuilderProcessor {
 
 		private final Map<Class<?>, QualificationHandler<?, ?, ?>> handlerMap;
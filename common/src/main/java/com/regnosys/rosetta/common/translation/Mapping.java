@@ -34,6 +34,8 @@ public class Mapping {
     private boolean condition;
     // error if multiple external paths are mapped into a single model path
     private boolean duplicate;
+    // the store to tell when the model path changes, so it can re-index this mapping
+    private volatile MappingStore store;
 
     public Mapping(Path xmlPath, Object xmlValue, Path rosettaPath, Object rosettaValue, String error, boolean allowsMultiple, boolean condition, boolean duplicate) {
         this.xmlPath = xmlPath;
@@ -59,7 +61,12 @@ public class Mapping {
     }
 
 	public void setRosettaPath(Path rosettaPath) {
+		Path previousRosettaPath = this.rosettaPath;
 		this.rosettaPath = rosettaPath;
+		MappingStore current = store;
+		if (current != null) {
+			current.rosettaPathChanged(this, previousRosettaPath);
+		}
 	}
 
 	public Object getRosettaValue() {
@@ -98,6 +105,14 @@ public class Mapping {
 		this.duplicate = duplicate;
 	}
 
+	MappingStore getStore() {
+		return store;
+	}
+
+	void setStore(MappingStore store) {
+		this.store = store;
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o)
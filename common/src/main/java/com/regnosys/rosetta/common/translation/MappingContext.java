@@ -24,6 +24,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
@@ -41,13 +42,24 @@ public class MappingContext {
     private final SynonymToEnumMap synonymToEnumMap;
     // Execute mapping on separate thread pool
     private final ExecutorService executor;
-    // Collect any tasks invoked during mapping so we can wait until they're complete before continuing
-    private final List<CompletableFuture<?>> invokedTasks = new ArrayList<>();
+    // Whether the executor outlives this context, rather than being shut down once mapped
+    private final boolean executorShared;
+    // Collect any tasks invoked during mapping so we can wait until they're complete before continuing.
+    // Synchronized, as mapping processors may run in parallel.
+    private final List<CompletableFuture<?>> invokedTasks = Collections.synchronizedList(new ArrayList<>());
 
-    private final List<String> mappingErrors = new ArrayList<>();
+    private final List<String> mappingErrors = Collections.synchronizedList(new ArrayList<>());
 
     public MappingContext(Map<Class<?>, Map<String, Enum<?>>> synonymToEnumMap) {
-        this(new ArrayList<>(), new ConcurrentHashMap<>(), synonymToEnumMap);
+        this(new MappingStore(), new ConcurrentHashMap<>(), synonymToEnumMap);
+    }
+
+    /**
+     * @param sharedExecutor the executor to map on, shared with other contexts and so not shut down once mapped, e.g.
+     *                       one of {@link MappingExecutors}
+     */
+    public MappingContext(Map<Class<?>, Map<String, Enum<?>>> synonymToEnumMap, ExecutorService sharedExecutor) {
+        this(new MappingStore(), new ConcurrentHashMap<>(), synonymToEnumMap, sharedExecutor, true);
     }
 
     // Unit testing
@@ -59,11 +71,24 @@ public class MappingContext {
                 Executors.newFixedThreadPool(5, new ThreadFactoryBuilder().setNameFormat("mapper-%d").build()));
     }
 
+    /**
+     * @param mappings the mappings of the file, which {@link MappingProcessorUtils} looks up without scanning when given
+     *                 as a {@link MappingStore}
+     */
     public MappingContext(List<Mapping> mappings, Map<Object, Object> mappingParams, Map<Class<?>, Map<String, Enum<?>>> synonymToEnumMap, ExecutorService executor) {
+        this(mappings, mappingParams, synonymToEnumMap, executor, false);
+    }
+
+    /**
+     * @param executorShared whether the executor is shared with other contexts, in which case it is not shut down once
+     *                       mapped, and a timed out mapping is cancelled instead
+     */
+    public MappingContext(List<Mapping> mappings, Map<Object, Object> mappingParams, Map<Class<?>, Map<String, Enum<?>>> synonymToEnumMap, ExecutorService executor, boolean executorShared) {
         this.mappings = mappings;
         this.mappingParams = mappingParams;
         this.synonymToEnumMap = new SynonymToEnumMap(synonymToEnumMap);
         this.executor = executor;
+        this.executorShared = executorShared;
     }
 
     public List<Mapping> getMappings() {
@@ -78,6 +103,10 @@ public class MappingContext {
         return executor;
     }
 
+    public boolean isExecutorShared() {
+        return executorShared;
+    }
+
     public List<CompletableFuture<?>> getInvokedTasks() {
         return invokedTasks;
     }
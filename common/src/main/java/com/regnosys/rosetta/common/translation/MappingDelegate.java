@@ -23,6 +23,7 @@ package com.regnosys.rosetta.common.translation;
 import com.rosetta.model.lib.RosettaModelObjectBuilder;
 import com.rosetta.model.lib.path.RosettaPath;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
@@ -39,4 +40,21 @@ public interface MappingDelegate {
 	RosettaPath getModelPath();
 
 	List<Path> getSynonymPaths();
+
+	/**
+	 * The model paths whose objects, or the objects below them, this delegate reads. Used to decide which delegates
+	 * can run at the same time when mapping in parallel.
+	 */
+	default Collection<RosettaPath> getReadPaths() {
+		return Collections.singletonList(getModelPath());
+	}
+
+	/**
+	 * The model paths whose objects, or the objects below them, this delegate changes. By default the parent of the
+	 * model path, as delegates are given the parent to set the mapped object on.
+	 */
+	default Collection<RosettaPath> getWritePaths() {
+		RosettaPath modelPath = getModelPath();
+		return Collections.singletonList(modelPath.getParent() != null ? modelPath.getParent() : modelPath);
+	}
 }
@@ -0,0 +1,64 @@
+package com.regnosys.rosetta.common.translation;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Executors to share between {@link MappingContext}s, so that a thread pool is not created and shut down for every
+ * document mapped.
+ */
+public final class MappingExecutors {
+
+    private MappingExecutors() {
+    }
+
+    /**
+     * @return a pool of the given number of daemon threads. The mapping of a document waits on a thread of the pool
+     * for the tasks its processors invoke, so these should not be run on the same pool when it is small.
+     */
+    public static ExecutorService newSharedExecutor(int threads) {
+        return Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setNameFormat("mapper-shared-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    /**
+     * @return an executor that runs each task on a new virtual thread when running on Java 21 or later, otherwise on
+     * a cached daemon thread
+     */
+    public static ExecutorService newPerTaskExecutor() {
+        try {
+            // looked up reflectively, as this library is built for Java 8
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            return Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                    .setNameFormat("mapper-task-%d")
+                    .setDaemon(true)
+                    .build());
+        }
+    }
+}
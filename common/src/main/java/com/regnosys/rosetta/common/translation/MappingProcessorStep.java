@@ -21,6 +21,7 @@ package com.regnosys.rosetta.common.translation;
  */
 
 import com.google.common.base.Stopwatch;
+import com.google.common.base.Throwables;
 import com.google.common.util.concurrent.Uninterruptibles;
 import com.rosetta.lib.postprocess.PostProcessorReport;
 import com.rosetta.model.lib.RosettaModelObject;
@@ -41,23 +42,45 @@ public class MappingProcessorStep implements PostProcessStep {
 	private static final Logger LOGGER = LoggerFactory.getLogger(MappingProcessorStep.class);
 	private final int mappingMaxTimeout;
 	private final List<MappingDelegate> mappingDelegates;
+	private final List<MappingDispatchProcessor> walks;
+	private final ExecutorService parallelExecutor;
+	private final List<List<MappingDispatchProcessor>> parallelLevels;
+	// the walks started on the parallel executor, to cancel on timeout, after which no more are started
+	private final List<Future<?>> parallelTasks = new ArrayList<>();
+	private boolean timedOut; // guarded by parallelTasks
 	private final ExecutorService executor;
 	private final List<CompletableFuture<?>> invokedTasks;
 	private final MappingContext context;
 
 	public MappingProcessorStep(Collection<MappingProcessor> mappingProcessors, MappingContext context) {
-		this.context = context;
-		this.mappingDelegates = new ArrayList<>(mappingProcessors);
-		this.mappingDelegates.sort(MAPPING_DELEGATE_COMPARATOR);
-		this.executor = context.getExecutor();
-		this.invokedTasks = context.getInvokedTasks();
-		this.mappingMaxTimeout = 3000;
+		this(mappingProcessors, context, 3000);
 	}
 
 	public MappingProcessorStep(Collection<MappingProcessor> mappingProcessors, MappingContext context, int mappingMaxTimeout) {
+		this(mappingProcessors, context, mappingMaxTimeout, null);
+	}
+
+	/**
+	 * @param parallelExecutor the executor to run the mapping processors that do not conflict on, see
+	 *                         {@link #groupNonConflicting(List)}, or null to run them one at a time. Only used when the
+	 *                         mappings of the context are a {@link MappingStore}, as other lists are not thread safe.
+	 *                         Not shut down by this step, but the walks started on it are cancelled on timeout.
+	 */
+	public MappingProcessorStep(Collection<MappingProcessor> mappingProcessors, MappingContext context, int mappingMaxTimeout, ExecutorService parallelExecutor) {
 		this.context = context;
 		this.mappingDelegates = new ArrayList<>(mappingProcessors);
 		this.mappingDelegates.sort(MAPPING_DELEGATE_COMPARATOR);
+		this.walks = new ArrayList<>();
+		mappingDelegates.forEach(delegate -> walks.add(new MappingDispatchProcessor(delegate)));
+		this.parallelExecutor = parallelExecutor;
+		this.parallelLevels = new ArrayList<>();
+		if (parallelExecutor != null) {
+			for (List<MappingDelegate> level : groupNonConflicting(mappingDelegates)) {
+				List<MappingDispatchProcessor> processors = new ArrayList<>();
+				level.forEach(delegate -> processors.add(new MappingDispatchProcessor(delegate)));
+				parallelLevels.add(processors);
+			}
+		}
 		this.executor = context.getExecutor();
 		this.invokedTasks = context.getInvokedTasks();
 		this.mappingMaxTimeout = mappingMaxTimeout;
@@ -79,18 +102,17 @@ public class MappingProcessorStep implements PostProcessStep {
 		LOGGER.debug("About to run {} mappingDelegates", mappingDelegates.size());
 		Stopwatch stopwatch = Stopwatch.createStarted();
 		RosettaModelObjectBuilder builder = instance.toBuilder();
+		synchronized (parallelTasks) {
+			parallelTasks.clear();
+			timedOut = false;
+		}
 		Future<?> mappingsFuture = executor.submit(() -> {
 			RosettaPath path = RosettaPath.valueOf(instance.getType().getSimpleName());
-			for (MappingDelegate mapper : mappingDelegates) {
-				LOGGER.debug("Running mapper {} for model path {}", mapper.getClass().getSimpleName(), mapper.getModelPath());
-				long t0 = System.currentTimeMillis();
-				MappingBuilderProcessor processor = new MappingBuilderProcessor(mapper);
-				processor.processRosetta(path, topClass, builder, null);
-				long t = System.currentTimeMillis() - t0;
-				if (t > 200) {
-					LOGGER.debug("Took {} ms to run mapper {} for model path {}", t, mapper.getClass().getSimpleName(), mapper.getModelPath());	
-				}
-				builder.process(path, processor);
+			if (parallelExecutor != null && context.getMappings() instanceof MappingStore) {
+				runInParallel(path, topClass, builder);
+			} else {
+				// a walk of the model per mapper, in order, so each sees the objects created by those before it
+				walks.forEach(processor -> walk(processor, path, topClass, builder));
 			}
 			// Mapper thread waits for invoked tasks to complete before continuing (subject to timeout before)
 			awaitCompletion(invokedTasks);
@@ -105,10 +127,23 @@ public class MappingProcessorStep implements PostProcessStep {
 		} catch (TimeoutException e1) {
 			LOGGER.error("Timeout running mapping processor");
 			this.context.getMappingErrors().add("Timeout running mapping processors");
+			if (context.isExecutorShared()) {
+				// the executor carries on mapping other documents, so only this document's tasks are stopped
+				mappingsFuture.cancel(true);
+				new ArrayList<>(invokedTasks).forEach(task -> task.cancel(true));
+			}
+			// the parallel executor is never shut down by this step, so its walks are stopped whether shared or not
+			synchronized (parallelTasks) {
+				timedOut = true;
+				parallelTasks.forEach(task -> task.cancel(true));
+			}
 		}
 
 		LOGGER.info("Mappers completed in {}", stopwatch.stop());
 
+		if (context.isExecutorShared()) {
+			return null;
+		}
 		LOGGER.debug("Shutdown mapper thread pool");
 		executor.shutdown();
 		try {
@@ -127,6 +162,91 @@ public class MappingProcessorStep implements PostProcessStep {
 		return null;
 	}
 
+	/**
+	 * Runs each level of mapping processors in turn, those within a level at the same time. The walks are those run in
+	 * sequence, in the same order bar those that do not conflict. This thread runs every walk of a level the parallel executor has not started, so a busy
+	 * executor only slows the mapping down.
+	 */
+	private <T extends RosettaModelObject> void runInParallel(RosettaPath path, Class<? extends T> topClass, RosettaModelObjectBuilder builder) {
+		for (List<MappingDispatchProcessor> level : parallelLevels) {
+			List<FutureTask<Void>> tasks = new ArrayList<>();
+			level.forEach(processor -> tasks.add(new FutureTask<>(() -> walk(processor, path, topClass, builder), null)));
+			synchronized (parallelTasks) {
+				if (timedOut) {
+					throw new CancellationException("Timeout running mapping processors");
+				}
+				parallelTasks.addAll(tasks);
+			}
+			tasks.subList(1, tasks.size()).forEach(parallelExecutor::execute);
+			// a no-op for the walks already started
+			tasks.forEach(FutureTask::run);
+			for (FutureTask<Void> task : tasks) {
+				try {
+					task.get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new CancellationException("Interrupted running mapping processors");
+				} catch (ExecutionException e) {
+					Throwables.throwIfUnchecked(e.getCause());
+					throw new RuntimeException(e.getCause().getMessage(), e.getCause());
+				}
+			}
+		}
+	}
+
+	private static <T extends RosettaModelObject> void walk(MappingDispatchProcessor processor, RosettaPath path, Class<? extends T> topClass, RosettaModelObjectBuilder builder) {
+		processor.processRosetta(path, topClass, builder, null);
+		builder.process(path, processor);
+	}
+
+	/**
+	 * Groups the sorted mapping delegates into levels of delegates that can run at the same time, each delegate being
+	 * in a later level than every earlier delegate it conflicts with, so that the results are those of running them in
+	 * order. Two delegates conflict when one writes a model path that is the start of, or starts with, a path the other
+	 * reads or writes, or when they map synonym paths one of which starts with the other, as they update the same
+	 * mappings. Indexes are ignored.
+	 */
+	static List<List<MappingDelegate>> groupNonConflicting(List<MappingDelegate> sortedDelegates) {
+		List<List<MappingDelegate>> levels = new ArrayList<>();
+		int[] delegateLevels = new int[sortedDelegates.size()];
+		for (int i = 0; i < sortedDelegates.size(); i++) {
+			int level = 0;
+			for (int j = 0; j < i; j++) {
+				if (delegateLevels[j] >= level && conflict(sortedDelegates.get(i), sortedDelegates.get(j))) {
+					level = delegateLevels[j] + 1;
+				}
+			}
+			delegateLevels[i] = level;
+			if (level == levels.size()) {
+				levels.add(new ArrayList<>());
+			}
+			levels.get(level).add(sortedDelegates.get(i));
+		}
+		return levels;
+	}
+
+	private static boolean conflict(MappingDelegate d1, MappingDelegate d2) {
+		return overlap(d1.getWritePaths(), d2.getWritePaths())
+				|| overlap(d1.getWritePaths(), d2.getReadPaths())
+				|| overlap(d1.getReadPaths(), d2.getWritePaths())
+				|| d1.getSynonymPaths().stream().anyMatch(p1 -> d2.getSynonymPaths().stream()
+						.anyMatch(p2 -> p1.nameStartMatches(p2) || p2.nameStartMatches(p1)));
+	}
+
+	private static boolean overlap(Collection<RosettaPath> paths1, Collection<RosettaPath> paths2) {
+		for (RosettaPath path1 : paths1) {
+			List<String> names1 = path1.allElementPaths();
+			for (RosettaPath path2 : paths2) {
+				List<String> names2 = path2.allElementPaths();
+				int length = Math.min(names1.size(), names2.size());
+				if (names1.subList(0, length).equals(names2.subList(0, length))) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
 	private void awaitCompletion(List<CompletableFuture<?>> invokedTasks) {
 		try {
 			CompletableFuture.allOf(invokedTasks.toArray(new CompletableFuture[0])).get();
@@ -153,18 +273,25 @@ public class MappingProcessorStep implements PostProcessStep {
 	static final Comparator<MappingDelegate> MAPPING_DELEGATE_COMPARATOR = new PathComparator().thenComparing(p -> p.getClass().getName());
 
 	/**
-	 * Implements BuilderProcessor and delegates to the given MappingProcessor when the path matches.
+	 * Implements BuilderProcessor and delegates to one MappingProcessor at its model path. Below the root, only descends
+	 * into the objects on the way to the model path, each mapper having its own walk so that it is given the objects
+	 * created by those before it.
+	 * Stops the walk once the thread is interrupted, e.g. when the mapping times out.
 	 */
-	private static class MappingBuilderProcessor implements BuilderProcessor {
+	private static class MappingDispatchProcessor implements BuilderProcessor {
 
-		private final MappingDelegate delegate;
 		private final RosettaPath modelPath;
-		private final List<Path> synonymPaths;
+		private final List<MappingDelegate> delegates;
+		// the element names of the paths above the model path, indexes being ignored as list elements are not passed to processRosetta
+		private final Set<List<String>> modelPathParents = new HashSet<>();
 
-		MappingBuilderProcessor(MappingDelegate delegate) {
-			this.delegate = delegate;
+		MappingDispatchProcessor(MappingDelegate delegate) {
 			this.modelPath = delegate.getModelPath();
-			this.synonymPaths = delegate.getSynonymPaths();
+			this.delegates = Collections.singletonList(delegate);
+			List<String> names = modelPath.allElementPaths();
+			for (int i = 1; i < names.size(); i++) {
+				modelPathParents.add(new ArrayList<>(names.subList(0, i)));
+			}
 		}
 
 		@Override
@@ -173,10 +300,12 @@ public class MappingProcessorStep implements PostProcessStep {
 				RosettaModelObjectBuilder builder,
 				RosettaModelObjectBuilder parent,
 				AttributeMeta... meta) {
-			if (currentPath.equals(modelPath)) {
-				synonymPaths.forEach(p -> delegate.map(p, Optional.ofNullable(builder), parent));
+			for (MappingDelegate delegate : getDelegates(currentPath)) {
+				long t0 = System.currentTimeMillis();
+				delegate.getSynonymPaths().forEach(p -> delegate.map(p, Optional.ofNullable(builder), parent));
+				logIfSlow(delegate, t0);
 			}
-			return true;
+			return modelPathParents.contains(currentPath.allElementPaths());
 		}
 
 		@Override
@@ -185,23 +314,39 @@ public class MappingProcessorStep implements PostProcessStep {
 				List<? extends RosettaModelObjectBuilder> builder,
 				RosettaModelObjectBuilder parent,
 				AttributeMeta... meta) {
-			if (currentPath.equals(modelPath)) {
-				synonymPaths.forEach(p -> delegate.map(p, Optional.ofNullable(builder).orElse(Collections.emptyList()), parent));
+			for (MappingDelegate delegate : getDelegates(currentPath)) {
+				long t0 = System.currentTimeMillis();
+				delegate.getSynonymPaths().forEach(p -> delegate.map(p, Optional.ofNullable(builder).orElse(Collections.emptyList()), parent));
+				logIfSlow(delegate, t0);
 			}
 			return true;
 		}
 
 		@Override
 		public <T> void processBasic(RosettaPath currentPath, Class<T> rosettaType, T instance, RosettaModelObjectBuilder parent, AttributeMeta... meta) {
-			if (currentPath.equals(modelPath)) {
-				synonymPaths.forEach(p -> delegate.mapBasic(p, Optional.ofNullable(instance), parent));
+			for (MappingDelegate delegate : getDelegates(currentPath)) {
+				delegate.getSynonymPaths().forEach(p -> delegate.mapBasic(p, Optional.ofNullable(instance), parent));
 			}
 		}
 
 		@Override
 		public <T> void processBasic(RosettaPath currentPath, Class<T> rosettaType, Collection<? extends T> instance, RosettaModelObjectBuilder parent, AttributeMeta... meta) {
-			if (currentPath.equals(modelPath)) {
-				synonymPaths.forEach(p -> delegate.mapBasic(p, Optional.ofNullable(instance).orElse(Collections.emptyList()), parent));
+			for (MappingDelegate delegate : getDelegates(currentPath)) {
+				delegate.getSynonymPaths().forEach(p -> delegate.mapBasic(p, Optional.ofNullable(instance).orElse(Collections.emptyList()), parent));
+			}
+		}
+
+		private List<MappingDelegate> getDelegates(RosettaPath currentPath) {
+			if (Thread.currentThread().isInterrupted()) {
+				throw new CancellationException("Interrupted running mapping processors");
+			}
+			return currentPath.equals(modelPath) ? delegates : Collections.emptyList();
+		}
+
+		private static void logIfSlow(MappingDelegate delegate, long t0) {
+			long t = System.currentTimeMillis() - t0;
+			if (t > 200) {
+				LOGGER.debug("Took {} ms to run mapper {} for model path {}", t, delegate.getClass().getSimpleName(), delegate.getModelPath());
 			}
 		}
 
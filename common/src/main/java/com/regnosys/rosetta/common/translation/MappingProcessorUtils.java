@@ -73,13 +73,13 @@ public class MappingProcessorUtils {
 	}
 
 	public static List<Mapping> filterListMappings(List<Mapping> mappings, Path synonymPath) {
-		return mappings.stream()
+		return candidates(mappings, store -> store.getBySynonymListPath(synonymPath)).stream()
 				.filter(m -> pathListEquals(synonymPath, m.getXmlPath()))
 				.collect(Collectors.toList());
 	}
 
 	public static List<Mapping> filterMappings(List<Mapping> mappings, Path synonymPath) {
-		return mappings.stream()
+		return candidates(mappings, store -> store.getBySynonymPath(synonymPath)).stream()
 				.filter(p -> synonymPath.nameIndexMatches(p.getXmlPath()))
 				.collect(Collectors.toList());
 	}
@@ -88,13 +88,13 @@ public class MappingProcessorUtils {
 	 * Compare parent path on both name and index, but only compare the leaf on name.
 	 */
 	private static boolean pathListEquals(Path path1, Path path2) {
-		if (path1.getElements().size() != path2.getElements().size()) {
+		if (path1.size() != path2.size()) {
 			return false;
 		}
 		String pathName1 = path1.getLastElement().getPathName();
 		String pathName2 = path2.getLastElement().getPathName();
 
-		if (path1.getElements().size() > 1) {
+		if (path1.size() > 1) {
 			Path parentPath1 = path1.getParent();
 			Path parentPath2 = path2.getParent();
 			return parentPath1.nameIndexMatches(parentPath2) && pathName1.equals(pathName2);
@@ -104,14 +104,14 @@ public class MappingProcessorUtils {
 	}
 
 	public static List<Mapping> filterMappings(List<Mapping> mappings, RosettaPath rosettaPath) {
-		return mappings.stream()
+		return candidates(mappings, store -> store.getByModelPath(toPath(rosettaPath))).stream()
 				.filter(m -> m.getRosettaPath() != null && m.getRosettaValue() != null)
 				.filter(p -> rosettaPath.equals(toRosettaPath(p.getRosettaPath())))
 				.collect(Collectors.toList());
 	}
 
 	public static List<Mapping> filterMappings(List<Mapping> mappings, Path synonymPath, Path startsWithModelPath) {
-		return mappings.stream()
+		return candidates(mappings, store -> store.getBySynonymPath(synonymPath)).stream()
 				.filter(m -> synonymPath.nameIndexMatches(m.getXmlPath()))
 				.filter(m -> m.getRosettaPath() != null)
 				.filter(m -> startsWithModelPath.fullStartMatches(m.getRosettaPath()))
@@ -119,7 +119,7 @@ public class MappingProcessorUtils {
 	}
 
 	public static List<Mapping> getEmptyMappings(List<Mapping> mappings, Path synonymPath) {
-		return mappings.stream()
+		return candidates(mappings, store -> store.getBySynonymPath(synonymPath)).stream()
 				.filter(p -> synonymPath.nameIndexMatches(p.getXmlPath()))
 				.filter(m -> m.getRosettaPath() == null || m.getError() != null)
 				.collect(Collectors.toList());
@@ -156,14 +156,14 @@ public class MappingProcessorUtils {
 	}
 
 	public static Optional<Mapping> getNonNullMapping(List<Mapping> mappings, Path synonymPath) {
-		return mappings.stream()
+		return candidates(mappings, store -> store.getBySynonymPath(synonymPath)).stream()
 				.filter(m -> synonymPath.nameIndexMatches(m.getXmlPath()))
 				.filter(m -> m.getXmlValue() != null)
 				.findFirst();
 	}
 
 	public static Optional<Mapping> getNonNullMapping(List<Mapping> mappings, Path startsWith, String... endsWith) {
-		return mappings.stream()
+		return candidates(mappings, store -> store.getBySynonymPathStart(startsWith)).stream()
 				.filter(m -> startsWith.fullStartMatches(m.getXmlPath()))
 				.filter(m -> m.getXmlPath().endsWith(endsWith))
 				.filter(m -> m.getXmlValue() != null)
@@ -172,7 +172,7 @@ public class MappingProcessorUtils {
 
 	public static Optional<Mapping> getNonNullMapping(List<Mapping> mappings, RosettaPath modelPathStartsWith, Path synonymPathStartsWith,
 			String... synonymPathEndsWith) {
-		return mappings.stream()
+		return candidates(mappings, store -> store.getBySynonymPathStart(synonymPathStartsWith)).stream()
 				.filter(m -> synonymPathStartsWith.fullStartMatches(m.getXmlPath()))
 				.filter(m -> m.getXmlPath().endsWith(synonymPathEndsWith))
 				.filter(m -> Optional.ofNullable(modelPathStartsWith).map(PathUtils::toPath).map(p -> p.fullStartMatches(m.getRosettaPath())).orElse(true))
@@ -181,7 +181,7 @@ public class MappingProcessorUtils {
 	}
 
 	public static Optional<Mapping> getNonNullMappingForModelPath(List<Mapping> mappings, Path modelPath) {
-		return mappings.stream()
+		return candidates(mappings, store -> store.getByModelPath(modelPath)).stream()
 				.filter(m -> m.getRosettaPath() != null)
 				.filter(m -> modelPath.nameIndexMatches(m.getRosettaPath()))
 				.filter(m -> m.getXmlValue() != null)
@@ -192,18 +192,26 @@ public class MappingProcessorUtils {
 		if (path.endsWith(lastElement)) {
 			return Optional.of(path);
 		}
-		if (path.getElements().size() > 0) {
+		if (path.size() > 0) {
 			return subPath(lastElement, path.getParent());
 		}
 		return Optional.empty();
 	}
 
 	public static void updateMappings(Path synonymPath, List<Mapping> mappings, RosettaPath rosettaPath) {
-		mappings.stream()
+		candidates(mappings, store -> store.getBySynonymPathStart(synonymPath)).stream()
 				.filter(p -> synonymPath.fullStartMatches(p.getXmlPath()))
 				.forEach(m -> updateMappingSuccess(m, rosettaPath));
 	}
 
+	/**
+	 * @return the mappings looked up in the indexes of a {@link MappingStore}, which still need filtering as a scan of
+	 * the list would, or the list itself
+	 */
+	private static List<Mapping> candidates(List<Mapping> mappings, Function<MappingStore, List<Mapping>> lookup) {
+		return mappings instanceof MappingStore ? lookup.apply((MappingStore) mappings) : mappings;
+	}
+
 	public static void updateMappingSuccess(Mapping mapping, Path rosettaPath) {
 		mapping.setRosettaPath(rosettaPath);
 		mapping.setError(null);
@@ -0,0 +1,404 @@
+package com.regnosys.rosetta.common.translation;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * A list of mappings indexed by synonym path, by the synonym path with the index of its last element ignored, and by
+ * model path, so that {@link MappingProcessorUtils} can look mappings up without scanning the whole list. The synonym
+ * paths are also linked to their parents, to find the mappings under a path. Lookups return the mappings in list
+ * order, as a scan would.
+ *
+ * Appending mappings keeps the indexes up to date, and the model path index is told when the model path of a mapping
+ * changes. Any other change to the list rebuilds the indexes on the next lookup.
+ *
+ * Mappings may be added while others are iterated, e.g. by mapping processors running in parallel, so iterators and
+ * streams return the mappings in the list when they are created, leaving out those appended since. They fail fast on
+ * any other change, as list iterators do on any change.
+ */
+public class MappingStore extends AbstractList<Mapping> implements RandomAccess {
+
+    private final List<Mapping> mappings = new ArrayList<>();
+    private final Map<PathKey, List<Mapping>> bySynonymPath = new HashMap<>();
+    private final Map<PathKey, List<Mapping>> bySynonymListPath = new HashMap<>();
+    // the synonym paths, and their starts, under each start of a synonym path
+    private final Map<PathKey, Set<PathKey>> synonymPathChildren = new HashMap<>();
+    private final Map<PathKey, Set<Mapping>> byModelPath = new HashMap<>();
+    // the position of each mapping, to return the mappings found by model path in list order
+    private final Map<Mapping, Integer> positions = new IdentityHashMap<>();
+    private boolean stale;
+    // the number of changes to the list that moved or replaced mappings rather than appending them
+    private int shifts;
+    // set when a mapping is in the list twice, or in another store that is told of its model path changes instead
+    private boolean scanModelPaths;
+    // set when a mapping is in the list twice, so its position does not order the mappings found under a path
+    private boolean duplicated;
+
+    public MappingStore() {
+    }
+
+    public MappingStore(Collection<? extends Mapping> mappings) {
+        addAll(mappings);
+    }
+
+    @Override
+    public synchronized Mapping get(int index) {
+        return mappings.get(index);
+    }
+
+    @Override
+    public synchronized int size() {
+        return mappings.size();
+    }
+
+    @Override
+    public synchronized void add(int index, Mapping mapping) {
+        modCount++;
+        mappings.add(index, mapping);
+        if (index == mappings.size() - 1) {
+            if (!stale) {
+                index(mapping, index);
+            }
+        } else {
+            shifts++;
+            stale = true;
+        }
+    }
+
+    @Override
+    public synchronized Mapping set(int index, Mapping mapping) {
+        shifts++;
+        stale = true;
+        return mappings.set(index, mapping);
+    }
+
+    @Override
+    public synchronized Mapping remove(int index) {
+        modCount++;
+        shifts++;
+        stale = true;
+        return mappings.remove(index);
+    }
+
+    @Override
+    public synchronized void clear() {
+        modCount++;
+        shifts++;
+        stale = true;
+        mappings.clear();
+    }
+
+    @Override
+    public Iterator<Mapping> iterator() {
+        return new Itr();
+    }
+
+    @Override
+    public Spliterator<Mapping> spliterator() {
+        Itr iterator = new Itr();
+        return Spliterators.spliterator(iterator, iterator.end, Spliterator.ORDERED);
+    }
+
+    /**
+     * Removes the matching mappings in one pass, the indexes being rebuilt once on the next lookup.
+     */
+    @Override
+    public synchronized boolean removeIf(Predicate<? super Mapping> filter) {
+        if (!mappings.removeIf(filter)) {
+            return false;
+        }
+        modCount++;
+        shifts++;
+        stale = true;
+        return true;
+    }
+
+    /**
+     * Iterates the mappings in the list when created, in place. Appended mappings are left out, and any other change
+     * to the list made other than through the iterator fails fast.
+     */
+    private final class Itr implements Iterator<Mapping> {
+        private int end;
+        private int cursor;
+        private int last = -1;
+        private int expectedShifts;
+
+        Itr() {
+            synchronized (MappingStore.this) {
+                end = mappings.size();
+                expectedShifts = shifts;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return cursor < end;
+        }
+
+        @Override
+        public Mapping next() {
+            synchronized (MappingStore.this) {
+                checkForShifts();
+                if (cursor >= end) {
+                    throw new NoSuchElementException();
+                }
+                last = cursor++;
+                return mappings.get(last);
+            }
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            synchronized (MappingStore.this) {
+                checkForShifts();
+                MappingStore.this.remove(last);
+                expectedShifts = shifts;
+            }
+            cursor = last;
+            last = -1;
+            end--;
+        }
+
+        private void checkForShifts() {
+            if (shifts != expectedShifts) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    /**
+     * @return the mappings whose synonym path matches the given path on name and index
+     */
+    synchronized List<Mapping> getBySynonymPath(Path synonymPath) {
+        return lookup(bySynonymPath, new PathKey(synonymPath, false));
+    }
+
+    /**
+     * @return the mappings whose synonym path matches the given path on name and index, except for the index of the
+     * last element
+     */
+    synchronized List<Mapping> getBySynonymListPath(Path synonymPath) {
+        return lookup(bySynonymListPath, new PathKey(synonymPath, true));
+    }
+
+    /**
+     * @return the mappings whose synonym path starts with the given path, matching on name and index
+     */
+    synchronized List<Mapping> getBySynonymPathStart(Path synonymPathStart) {
+        // an empty path is only the start of an empty path
+        if (synonymPathStart.size() == 0) {
+            return getBySynonymPath(synonymPathStart);
+        }
+        rebuildIfStale();
+        if (duplicated) {
+            return mappings.stream()
+                    .filter(m -> synonymPathStart.fullStartMatches(m.getXmlPath()))
+                    .collect(Collectors.toList());
+        }
+        List<Mapping> result = new ArrayList<>();
+        int pathsFound = 0;
+        Deque<PathKey> keys = new ArrayDeque<>();
+        keys.push(new PathKey(synonymPathStart, false));
+        while (!keys.isEmpty()) {
+            PathKey key = keys.pop();
+            List<Mapping> found = bySynonymPath.get(key);
+            if (found != null) {
+                result.addAll(found);
+                pathsFound++;
+            }
+            synonymPathChildren.getOrDefault(key, Collections.emptySet()).forEach(keys::push);
+        }
+        if (pathsFound > 1) {
+            result.sort(Comparator.comparingInt(positions::get));
+        }
+        return result;
+    }
+
+    /**
+     * @return the mappings whose model path matches the given path on name and index
+     */
+    synchronized List<Mapping> getByModelPath(Path modelPath) {
+        rebuildIfStale();
+        if (scanModelPaths) {
+            return mappings.stream()
+                    .filter(m -> m.getRosettaPath() != null && modelPath.nameIndexMatches(m.getRosettaPath()))
+                    .collect(Collectors.toList());
+        }
+        Set<Mapping> found = byModelPath.get(new PathKey(modelPath, false));
+        if (found == null) {
+            return Collections.emptyList();
+        }
+        List<Mapping> result = new ArrayList<>(found);
+        result.sort(Comparator.comparing(positions::get));
+        return result;
+    }
+
+    synchronized void rosettaPathChanged(Mapping mapping, Path previousRosettaPath) {
+        if (stale || scanModelPaths || !positions.containsKey(mapping)) {
+            return;
+        }
+        if (previousRosettaPath != null) {
+            Set<Mapping> previous = byModelPath.get(new PathKey(previousRosettaPath, false));
+            if (previous != null) {
+                previous.remove(mapping);
+            }
+        }
+        indexModelPath(mapping);
+    }
+
+    private List<Mapping> lookup(Map<PathKey, List<Mapping>> index, PathKey key) {
+        rebuildIfStale();
+        List<Mapping> found = index.get(key);
+        return found == null ? Collections.emptyList() : new ArrayList<>(found);
+    }
+
+    private void rebuildIfStale() {
+        if (!stale) {
+            return;
+        }
+        bySynonymPath.clear();
+        bySynonymListPath.clear();
+        synonymPathChildren.clear();
+        byModelPath.clear();
+        positions.clear();
+        scanModelPaths = false;
+        duplicated = false;
+        stale = false;
+        for (int i = 0; i < mappings.size(); i++) {
+            index(mappings.get(i), i);
+        }
+    }
+
+    private void index(Mapping mapping, int position) {
+        Path synonymPath = mapping.getXmlPath();
+        PathKey key = new PathKey(synonymPath, false);
+        List<Mapping> sameSynonymPath = bySynonymPath.computeIfAbsent(key, k -> new ArrayList<>());
+        if (sameSynonymPath.isEmpty()) {
+            linkToParents(key, synonymPath);
+        }
+        sameSynonymPath.add(mapping);
+        if (synonymPath.size() > 0) {
+            bySynonymListPath.computeIfAbsent(new PathKey(synonymPath, true), k -> new ArrayList<>()).add(mapping);
+        }
+
+        if (mapping.getStore() == null) {
+            mapping.setStore(this);
+        }
+        if (positions.putIfAbsent(mapping, position) != null) {
+            duplicated = true;
+        }
+        if (mapping.getStore() != this || duplicated) {
+            scanModelPaths = true;
+        }
+        if (!scanModelPaths) {
+            indexModelPath(mapping);
+        }
+    }
+
+    /**
+     * Links the synonym path to its parent, and so on up to a start of a synonym path already linked.
+     */
+    private void linkToParents(PathKey key, Path synonymPath) {
+        for (Path path = synonymPath; path.size() > 0; path = path.getParent()) {
+            PathKey parentKey = new PathKey(path.getParent(), false);
+            if (!synonymPathChildren.computeIfAbsent(parentKey, k -> new HashSet<>()).add(key)) {
+                return;
+            }
+            key = parentKey;
+        }
+    }
+
+    private void indexModelPath(Mapping mapping) {
+        Path rosettaPath = mapping.getRosettaPath();
+        if (rosettaPath != null) {
+            byModelPath.computeIfAbsent(new PathKey(rosettaPath, false),
+                    k -> Collections.newSetFromMap(new IdentityHashMap<>())).add(mapping);
+        }
+    }
+
+    /**
+     * The names and indexes of the elements of a path, a missing index being 0 as when paths are matched.
+     */
+    private static final class PathKey {
+        private static final int ANY_INDEX = -1;
+
+        private final String[] names;
+        private final int[] indexes;
+        private final int hash;
+
+        PathKey(Path path, boolean anyLastIndex) {
+            int length = path.size();
+            names = new String[length];
+            indexes = new int[length];
+            Path start = path;
+            for (int i = length - 1; i >= 0; i--) {
+                Path.PathElement element = start.getLastElement();
+                names[i] = element.getPathName();
+                indexes[i] = element.getIndexOrZero();
+                start = start.getParent();
+            }
+            if (anyLastIndex && length > 0) {
+                indexes[length - 1] = ANY_INDEX;
+            }
+            hash = 31 * Arrays.hashCode(names) + Arrays.hashCode(indexes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof PathKey))
+                return false;
+            PathKey other = (PathKey) o;
+            return hash == other.hash && Arrays.equals(indexes, other.indexes) && Arrays.equals(names, other.names);
+        }
+    }
+}
@@ -20,43 +20,66 @@ package com.regnosys.rosetta.common.translation;
  * ==============
  */
 
-import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.regnosys.rosetta.common.util.PathException;
 
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
+/**
+ * A path of named, and optionally indexed, elements. Each path points to its parent, so paths built from a common
+ * prefix share it, and caches its hash code. The list of elements is built on each call of {@link #getElements()}
+ * rather than kept, so prefer {@link #size()} and walking the parents where possible.
+ */
 public class Path {
 
     private static final String WILDCARD = "*";
+    private static final Path EMPTY = new Path();
 
-    private final List<PathElement> elements;
+    private final Path parent;
+    private final PathElement element;
+    private final int size;
+    // the hash code of the elements, or 0 until computed. Forcing the index of an element does not change it.
+    private int elementsHash;
 
     public Path() {
-        this.elements = ImmutableList.of();
+        this.parent = null;
+        this.element = null;
+        this.size = 0;
     }
 
     public Path(List<PathElement> elements) {
-        this.elements = elements;
+        Path prefix = EMPTY;
+        for (int i = 0; i < elements.size() - 1; i++) {
+            prefix = new Path(prefix, elements.get(i));
+        }
+        this.parent = elements.isEmpty() ? null : prefix;
+        this.element = elements.isEmpty() ? null : elements.get(elements.size() - 1);
+        this.size = elements.size();
+    }
+
+    private Path(Path parent, PathElement element) {
+        this.parent = parent;
+        this.element = element;
+        this.size = parent.size + 1;
     }
 
     public static Path valueOf(List<String> path) {
-        return new Path(path.stream().map(p -> new PathElement(p)).collect(Collectors.toList()));
+        Path result = EMPTY;
+        for (String name : path) {
+            result = result.addElement(name);
+        }
+        return result;
     }
 
     public static Path valueOf(String path) {
-        List<PathElement> newPath = new ArrayList<>();
-        newPath.add(new PathElement(path));
-        return new Path(newPath);
+        return EMPTY.addElement(path);
     }
 
     public Path addElement(PathElement element) {
-        List<PathElement> newPath = new ArrayList<>();
-        newPath.addAll(elements);
-        newPath.add(element);
-        return new Path(newPath);
+        return new Path(this, element);
     }
 
     public Path addElement(String name) {
@@ -68,31 +91,48 @@ public class Path {
     }
 
     public List<PathElement> getElements() {
-        return elements;
+        PathElement[] elements = new PathElement[size];
+        Path path = this;
+        for (int i = size - 1; i >= 0; i--) {
+            elements[i] = path.element;
+            path = path.parent;
+        }
+        return Collections.unmodifiableList(Arrays.asList(elements));
+    }
+
+    /**
+     * @return the number of elements
+     */
+    public int size() {
+        return size;
     }
 
     public String[] getPathNames() {
-        return elements.stream()
-                .map(Path.PathElement::getPathName)
-                .toArray(String[]::new);
+        String[] names = new String[size];
+        Path path = this;
+        for (int i = size - 1; i >= 0; i--) {
+            names[i] = path.element.pathName;
+            path = path.parent;
+        }
+        return names;
     }
 
     public Path getParent() {
-        return new Path(elements.subList(0, elements.size() - 1));
+        if (size == 0) {
+            throw new IndexOutOfBoundsException("An empty path has no parent");
+        }
+        return parent;
     }
 
     public PathElement getLastElement() {
-        if (elements.size() < 1)
-            return null;
-        return elements.get(elements.size()-1);
+        return element;
     }
 
     public Path append(Path append) {
-        List<PathElement> list = ImmutableList.<PathElement>builder()
-                .addAll(elements)
-                .addAll(append.elements)
-                .build();
-        return new Path(list);
+        if (append.size == 0) {
+            return this;
+        }
+        return append(append.parent).addElement(append.element);
     }
 
     public Path prefixWithWildcard() {
@@ -100,9 +140,13 @@ public class Path {
     }
 
     public Path trimFirst() {
-        LinkedList<PathElement> elements = new LinkedList<>(getElements());
-        elements.removeFirst();
-        return new Path(elements);
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        if (size == 1) {
+            return EMPTY;
+        }
+        return parent.trimFirst().addElement(element);
     }
     
     /**
@@ -118,16 +162,17 @@ public class Path {
      * matching only on the name
      */
     public boolean nameStartMatches(Path other, boolean allowWildcard) {
-        if (elements.isEmpty() && other.elements.isEmpty())
+        if (size == 0 && other.size == 0)
             return true;
-		if (elements.isEmpty())
+		if (size == 0)
 			return false;
-        if (elements.size() > other.elements.size())
+        if (size > other.size)
             return false;
-        for (int i = 0; i < elements.size(); i++) {
-            String p1 = elements.get(i).pathName;
-            String p2 = other.elements.get(i).pathName;
-            if (!(p1.equals(p2) || wildcardMatches(allowWildcard, p1, p2)))
+        Path otherStart = other.getAncestor(size);
+        for (Path p1 = this, p2 = otherStart; p1.size > 0; p1 = p1.parent, p2 = p2.parent) {
+            String n1 = p1.element.pathName;
+            String n2 = p2.element.pathName;
+            if (!(n1.equals(n2) || wildcardMatches(allowWildcard, n1, n2)))
                 return false;
         }
         return true;
@@ -146,77 +191,71 @@ public class Path {
     }
 
     public boolean fullStartMatches(Path other, boolean allowWildcard) {
-        if (elements.isEmpty() && other.elements.isEmpty())
+        if (size == 0 && other.size == 0)
             return true;
-        if (elements.isEmpty())
+        if (size == 0)
             return false;
-        if (elements.size() > other.elements.size())
+        if (size > other.size)
             return false;
-        for (int i = 0; i < elements.size(); i++) {
-            String p1 = elements.get(i).pathName;
-            String p2 = other.elements.get(i).pathName;
-            if (wildcardMatches(allowWildcard, p1, p2))
+        Path otherStart = other.getAncestor(size);
+        for (Path p1 = this, p2 = otherStart; p1.size > 0; p1 = p1.parent, p2 = p2.parent) {
+            String n1 = p1.element.pathName;
+            String n2 = p2.element.pathName;
+            if (wildcardMatches(allowWildcard, n1, n2))
                 continue;
-            if (!p1.equals(p2) || elements.get(i).index.orElse(0).intValue() != other.elements.get(i).index.orElse(0).intValue())
+            if (!n1.equals(n2) || p1.element.getIndexOrZero() != p2.element.getIndexOrZero())
                 return false;
         }
         return true;
     }
 
     public boolean nameIndexMatches(Path other) {
-        if (elements.isEmpty() && other.elements.isEmpty())
+        if (size == 0 && other.size == 0)
             return true;
-        if (elements.isEmpty())
+        if (size == 0)
             return false;
-        if (elements.size() != other.elements.size())
+        if (size != other.size)
             return false;
-        for (int i = 0; i < elements.size(); i++) {
-            if (!elements.get(i).pathName.equals(other.elements.get(i).pathName) ||
-                    elements.get(i).index.orElse(0).intValue() != other.elements.get(i).index.orElse(0).intValue())
+        for (Path p1 = this, p2 = other; p1 != p2 && p1.size > 0; p1 = p1.parent, p2 = p2.parent) {
+            if (!p1.element.pathName.equals(p2.element.pathName) ||
+                    p1.element.getIndexOrZero() != p2.element.getIndexOrZero())
                 return false;
         }
         return true;
     }
 
     public boolean endsWith(String... path) {
-        int dif = elements.size() - path.length;
-        if (dif < 0)
+        if (size < path.length)
             return false;
-        else {
-            for (int i = 0; i < path.length; i++) {
-                PathElement el = elements.get(dif + i);
-                String s = path[i];
-                if (!el.getPathName().equalsIgnoreCase(s))
-                    return false;
-            }
+        Path p = this;
+        for (int i = path.length - 1; i >= 0; i--) {
+            if (!p.element.getPathName().equalsIgnoreCase(path[i]))
+                return false;
+            p = p.parent;
         }
         return true;
     }
 
     public boolean endsWith(Path other) {
-        int thisSize = elements.size();
-        int otherSize = other.elements.size();
-        if (otherSize > thisSize) {
+        if (other.size > size) {
             return false;
-        } else {
-            // from the last element to the first, check that each element is equal
-            for (int i = 1; i <= otherSize; i++) {
-                if (!elements.get(thisSize - i).equals(other.elements.get(otherSize - i)))
-                    return false;
-            }
+        }
+        // from the last element to the first, check that each element is equal
+        for (Path p1 = this, p2 = other; p2.size > 0; p1 = p1.parent, p2 = p2.parent) {
+            if (!p1.element.equals(p2.element))
+                return false;
         }
         return true;
     }
 
     public int cardinality() {
         int result = -1;
-        for (PathElement element : elements) {
-            if (element.index.isPresent()) {
-				if (result != -1) {
-					//TODO restore this exception when I have time to diagnose the translate test that is hitting it
-					//throw new PathException("Multiple cardinalities found in path "+this);
-				}
-				else result = element.index.get();
+        // from the last element to the first, keeping the index of the first indexed element
+        for (Path p = this; p.size > 0; p = p.parent) {
+            if (p.element.hasIndex()) {
+				//TODO restore this exception when I have time to diagnose the translate test that is hitting it
+				//if (result != -1) throw new PathException("Multiple cardinalities found in path "+this);
+				result = p.element.index;
             }
         }
         if (result == -1)
@@ -225,15 +264,26 @@ public class Path {
         return result;
     }
 
+    private Path getAncestor(int ancestorSize) {
+        Path path = this;
+        while (path.size > ancestorSize) {
+            path = path.parent;
+        }
+        return path;
+    }
+
     public static Path parse(String pathString) {
         return parse(pathString, false);
     }
 
     public static Path parse(String pathString, boolean allowWildcard) {
-        return new Path(Arrays.stream(pathString.split("\\."))
-                .filter(s -> s.length() > 0)
-                .map(s -> PathElement.parse(s, allowWildcard))
-                .collect(Collectors.toList()));
+        Path result = EMPTY;
+        for (String s : pathString.split("\\.")) {
+            if (s.length() > 0) {
+                result = result.addElement(PathElement.parse(s, allowWildcard));
+            }
+        }
+        return result;
     }
 
     @Override
@@ -243,21 +293,59 @@ public class Path {
         if (o == null || getClass() != o.getClass())
             return false;
         Path path = (Path) o;
-        return elements.equals(path.elements);
+        if (size != path.size)
+            return false;
+        // paths sharing a prefix are equal from there
+        for (Path p1 = this, p2 = path; p1 != p2 && p1.size > 0; p1 = p1.parent, p2 = p2.parent) {
+            if (!p1.element.equals(p2.element))
+                return false;
+        }
+        return true;
     }
 
+    /**
+     * @return the hash code of the list of elements hashed as by {@code Objects.hash(elements)}
+     */
     @Override public int hashCode() {
-        return Objects.hash(elements);
+        return 31 + elementsHashCode();
+    }
+
+    private int elementsHashCode() {
+        if (size == 0) {
+            return 1;
+        }
+        int hash = elementsHash;
+        if (hash == 0) {
+            hash = 31 * parent.elementsHashCode() + element.hashCode();
+            elementsHash = hash;
+        }
+        return hash;
     }
 
     @Override
     public String toString() {
-        return String.join(".", elements.stream().map(PathElement::toString).collect(Collectors.toList()));
+        if (size == 0) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder();
+        appendTo(builder);
+        return builder.toString();
+    }
+
+    private void appendTo(StringBuilder builder) {
+        if (parent.size > 0) {
+            parent.appendTo(builder);
+            builder.append('.');
+        }
+        builder.append(element);
     }
 
     public static class PathElement {
+        private static final int NO_INDEX = -1;
+        private static final Interner<String> NAMES = Interners.newWeakInterner();
+
         private final String pathName;
-        private Optional<Integer> index;//this can't be final because sometimes we don't know this is index[0] until we find index[1] later
+        private int index;//this can't be final because sometimes we don't know this is index[0] until we find index[1] later
         private final Map<String, String> metas;
 
         public PathElement(String pathName) {
@@ -269,32 +357,39 @@ public class Path {
         }
 
         public PathElement(String pathName, Optional<Integer> index, Map<String, String> metas) {
-            Objects.nonNull(pathName);
-            Objects.nonNull(index);
-            Objects.nonNull(metas);
-            this.pathName = pathName;
-            this.index = index;
-            this.metas = metas;
+            this(pathName, index == null ? NO_INDEX : index.orElse(NO_INDEX), metas);
         }
 
         public PathElement(String pathName, int index) {
-            this(pathName, Optional.of(index), Collections.emptyMap());
+            this(pathName, index, Collections.emptyMap());
         }
 
         public PathElement(String pathName, int index, Map<String, String> metas) {
-            this(pathName, Optional.of(index), metas);
+            this.pathName = pathName == null ? null : NAMES.intern(pathName);
+            this.index = index;
+            this.metas = metas;
         }
 
         public int forceGetIndex() {
-            if (index.isPresent()) {
-                return index.get();
+            if (index == NO_INDEX) {
+                index = 0;
             }
-            index = Optional.of(0);
-            return 0;
+            return index;
         }
 
         public Optional<Integer> getIndex() {
-            return index;
+            return hasIndex() ? Optional.of(index) : Optional.empty();
+        }
+
+        public boolean hasIndex() {
+            return index != NO_INDEX;
+        }
+
+        /**
+         * @return the index, or 0 when there is none, as paths are matched on
+         */
+        public int getIndexOrZero() {
+            return hasIndex() ? index : 0;
         }
 
         public String getPathName() {
@@ -307,7 +402,7 @@ public class Path {
 
         @Override
         public String toString() {
-            return pathName + index.map(i -> "(" + i + ")").orElse("");
+            return hasIndex() ? pathName + "(" + index + ")" : pathName;
         }
 
         private static Pattern pattern = Pattern.compile("(\\w*)(\\[(\\d*)])?");
@@ -321,17 +416,20 @@ public class Path {
             Matcher match = allowWildcard ? patternAllowWildcard.matcher(s) : pattern.matcher(s);
             if (match.matches()) {
                 String name = match.group(1);
-                Optional<Integer> index = (match.group(3) != null) ? Optional.of(Integer.valueOf(match.group(3))) : Optional.empty();
+                int index = (match.group(3) != null) ? Integer.parseInt(match.group(3)) : NO_INDEX;
                 return new PathElement(name, index, Collections.emptyMap());
             }
             throw new PathException("Failed to parse path element " + s);
         }
 
+        /**
+         * Hashes as when the index was an {@code Optional<Integer>}, so a missing index hashes as index 0.
+         */
         @Override
         public int hashCode() {
             final int prime = 31;
             int result = 1;
-            result = prime * result + ((index == null) ? 0 : index.hashCode());
+            result = prime * result + (hasIndex() ? index : 0);
             result = prime * result + ((pathName == null) ? 0 : pathName.hashCode());
             return result;
         }
@@ -345,10 +443,7 @@ public class Path {
             if (getClass() != obj.getClass())
                 return false;
             PathElement other = (PathElement) obj;
-            if (index == null) {
-                if (other.index != null)
-                    return false;
-            } else if (!index.equals(other.index))
+            if (index != other.index)
                 return false;
             if (metas != null && other.metas!=null && !metas.isEmpty() && ! other.metas.isEmpty()) {
             	//if one is null or empty they are considered to match
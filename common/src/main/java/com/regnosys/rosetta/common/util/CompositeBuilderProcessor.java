@@ -0,0 +1,106 @@
+package com.regnosys.rosetta.common.util;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.rosetta.model.lib.RosettaModelObject;
+import com.rosetta.model.lib.RosettaModelObjectBuilder;
+import com.rosetta.model.lib.path.RosettaPath;
+import com.rosetta.model.lib.process.AttributeMeta;
+import com.rosetta.model.lib.process.BuilderProcessor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * BuilderProcessor that fans every callback out to a list of delegates, in order, so that several processors can share
+ * a single walk of a builder.
+ *
+ * Each delegate sees exactly the callbacks it would have seen walking the builder on its own. When a delegate returns
+ * false for a single valued attribute it is dropped from the walk of that attribute's subtree; the subtree is then
+ * descended manually with the remaining delegates. As with a plain builder walk, the result of a list callback does not
+ * stop the list elements from being descended.
+ */
+public class CompositeBuilderProcessor implements BuilderProcessor {
+
+	private final List<? extends BuilderProcessor> delegates;
+
+	public CompositeBuilderProcessor(List<? extends BuilderProcessor> delegates) {
+		this.delegates = delegates;
+	}
+
+	@Override
+	public <R extends RosettaModelObject> boolean processRosetta(RosettaPath path,
+			Class<R> rosettaType,
+			RosettaModelObjectBuilder builder,
+			RosettaModelObjectBuilder parent,
+			AttributeMeta... metas) {
+		List<BuilderProcessor> descending = null;
+		for (int i = 0; i < delegates.size(); i++) {
+			BuilderProcessor delegate = delegates.get(i);
+			boolean result = delegate.processRosetta(path, rosettaType, builder, parent, metas);
+			if (!result && descending == null) {
+				descending = new ArrayList<>(delegates.subList(0, i));
+			} else if (result && descending != null) {
+				descending.add(delegate);
+			}
+		}
+		if (descending == null) {
+			return true;
+		}
+		if (builder != null && !descending.isEmpty()) {
+			builder.process(path, new CompositeBuilderProcessor(descending));
+		}
+		return false;
+	}
+
+	@Override
+	public <R extends RosettaModelObject> boolean processRosetta(RosettaPath path,
+			Class<R> rosettaType,
+			List<? extends RosettaModelObjectBuilder> builders,
+			RosettaModelObjectBuilder parent,
+			AttributeMeta... metas) {
+		boolean result = true;
+		for (BuilderProcessor delegate : delegates) {
+			result &= delegate.processRosetta(path, rosettaType, builders, parent, metas);
+		}
+		return result;
+	}
+
+	@Override
+	public <T> void processBasic(RosettaPath path, Class<T> rosettaType, T instance, RosettaModelObjectBuilder parent, AttributeMeta... metas) {
+		for (BuilderProcessor delegate : delegates) {
+			delegate.processBasic(path, rosettaType, instance, parent, metas);
+		}
+	}
+
+	@Override
+	public <T> void processBasic(RosettaPath path, Class<T> rosettaType, Collection<? extends T> instances, RosettaModelObjectBuilder parent, AttributeMeta... metas) {
+		for (BuilderProcessor delegate : delegates) {
+			delegate.processBasic(path, rosettaType, instances, parent, metas);
+		}
+	}
+
+	@Override
+	public Report report() {
+		return null;
+	}
+}
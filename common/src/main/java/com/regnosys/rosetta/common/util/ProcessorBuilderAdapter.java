@@ -0,0 +1,108 @@
+package com.regnosys.rosetta.common.util;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.rosetta.model.lib.RosettaModelObject;
+import com.rosetta.model.lib.RosettaModelObjectBuilder;
+import com.rosetta.model.lib.path.RosettaPath;
+import com.rosetta.model.lib.process.AttributeMeta;
+import com.rosetta.model.lib.process.BuilderProcessor;
+import com.rosetta.model.lib.process.Processor;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Runs a read-only {@link Processor} as part of a builder walk.
+ *
+ * A Processor walk does not descend into list elements when the list callback returns false, whereas a builder walk
+ * always does. To keep the Processor semantics the elements of such lists are remembered and any callback made from
+ * within them is swallowed.
+ */
+public class ProcessorBuilderAdapter implements BuilderProcessor {
+
+	private final Processor processor;
+	private final Set<RosettaModelObject> skipped = Collections.newSetFromMap(new IdentityHashMap<>());
+
+	public ProcessorBuilderAdapter(Processor processor) {
+		this.processor = processor;
+	}
+
+	@Override
+	public <R extends RosettaModelObject> boolean processRosetta(RosettaPath path,
+			Class<R> rosettaType,
+			RosettaModelObjectBuilder builder,
+			RosettaModelObjectBuilder parent,
+			AttributeMeta... metas) {
+		if (isSkipped(parent)) {
+			return false;
+		}
+		return processor.processRosetta(path, rosettaType, builder, parent, metas);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <R extends RosettaModelObject> boolean processRosetta(RosettaPath path,
+			Class<R> rosettaType,
+			List<? extends RosettaModelObjectBuilder> builders,
+			RosettaModelObjectBuilder parent,
+			AttributeMeta... metas) {
+		boolean result = !isSkipped(parent) && processor.processRosetta(path, rosettaType, (List<? extends R>) builders, parent, metas);
+		if (!result && builders != null) {
+			for (RosettaModelObjectBuilder builder : builders) {
+				if (builder != null) {
+					skipped.add(builder);
+				}
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public <T> void processBasic(RosettaPath path, Class<T> rosettaType, T instance, RosettaModelObjectBuilder parent, AttributeMeta... metas) {
+		if (!isSkipped(parent)) {
+			processor.processBasic(path, rosettaType, instance, parent, metas);
+		}
+	}
+
+	@Override
+	public <T> void processBasic(RosettaPath path, Class<T> rosettaType, Collection<? extends T> instances, RosettaModelObjectBuilder parent, AttributeMeta... metas) {
+		if (!isSkipped(parent)) {
+			processor.processBasic(path, rosettaType, instances, parent, metas);
+		}
+	}
+
+	@Override
+	public Report report() {
+		return null;
+	}
+
+	public Processor getProcessor() {
+		return processor;
+	}
+
+	private boolean isSkipped(RosettaModelObjectBuilder parent) {
+		return !skipped.isEmpty() && skipped.contains(parent);
+	}
+}
@@ -0,0 +1,133 @@
+package com.regnosys.rosetta.common.hashing;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.regnosys.rosetta.common.hashing.testpojo.Node;
+import com.regnosys.rosetta.common.hashing.testpojo.Nodes;
+import com.regnosys.rosetta.common.serialisation.json.preannotation.testpojo.Price;
+import com.regnosys.rosetta.common.serialisation.json.preannotation.testpojo.metafields.ReferenceWithMetaPrice;
+import com.rosetta.model.lib.meta.Key;
+import com.rosetta.model.lib.meta.Reference;
+import com.rosetta.model.lib.path.RosettaPath;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BottomUpGlobalKeyProcessStepTest {
+
+	@Test
+	void keysAreIdenticalToNonNullHashCollectorKeys() {
+		Map<RosettaPath, String> expected = keys(new GlobalKeyProcessStep(NonNullHashCollector::new), tree());
+		Map<RosettaPath, String> actual = keys(new BottomUpGlobalKeyProcessStep(), tree());
+
+		assertThat(expected.size(), greaterThan(50));
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	void listContainingNullIsNotDescended() {
+		Node.NodeBuilder withNull = Node.builder().setName("parent");
+		withNull.getOrCreateChild(1).setName("child");
+		Node.NodeBuilder withoutNull = Node.builder().setName("parent");
+		withoutNull.getOrCreateChild(0).setName("child");
+
+		String expected = keys(new GlobalKeyProcessStep(NonNullHashCollector::new), withNull).get(RosettaPath.valueOf("Node"));
+		String actual = keys(new BottomUpGlobalKeyProcessStep(), withNull).get(RosettaPath.valueOf("Node"));
+
+		assertEquals(expected, actual);
+		assertThat(actual, not(keys(new BottomUpGlobalKeyProcessStep(), withoutNull).get(RosettaPath.valueOf("Node"))));
+	}
+
+	@Test
+	void eachObjectIsHashedOnce() {
+		int depth = 200;
+		Node.NodeBuilder nested = Nodes.tree(depth, 1);
+		long before = Node.VISITS.get();
+		new GlobalKeyProcessStep(NonNullHashCollector::new).runProcessStep(Node.class, nested);
+		long topDownVisits = Node.VISITS.get() - before;
+
+		nested = Nodes.tree(depth, 1);
+		before = Node.VISITS.get();
+		new BottomUpGlobalKeyProcessStep().runProcessStep(Node.class, nested);
+		long bottomUpVisits = Node.VISITS.get() - before;
+
+		// one visit to find the keyed objects and one to hash them
+		assertEquals(2L * depth, bottomUpVisits);
+		assertThat(topDownVisits, greaterThan((long) depth * depth / 2));
+	}
+
+	@Test
+	void collisionChecksAreIdenticalToWideHashCollectorChecks() {
+		Node.NodeBuilder tree = tree();
+		GlobalKeyCalculator topDown = new GlobalKeyProcessStep(NonNullHashCollector::new, WideHashCollector::new)
+				.createKeyCalculator();
+		GlobalKeyCalculator bottomUp = new BottomUpGlobalKeyProcessStep(true).createKeyCalculator();
+
+		RosettaPath path = RosettaPath.valueOf("Node");
+		assertNull(topDown.calculateCollisionCheck(path, tree));
+		assertNotNull(bottomUp.calculateCollisionCheck(path, tree));
+		WideHashCollector expected = new WideHashCollector();
+		tree.process(path, expected);
+		assertEquals(expected.report().toString(), bottomUp.calculateCollisionCheck(path, tree));
+		Node.NodeBuilder first = tree.getChild().get(0);
+		expected = new WideHashCollector();
+		first.process(path, expected);
+		assertEquals(expected.report().toString(), bottomUp.calculateCollisionCheck(path, first));
+	}
+
+	@Test
+	void collisionCheckDoesNotHashObjectsAgain() {
+		int depth = 200;
+		Node.NodeBuilder nested = Nodes.tree(depth, 1);
+		long before = Node.VISITS.get();
+		GlobalKeyProcessStep.KeyPostProcessReport report = new BottomUpGlobalKeyProcessStep(true)
+				.runProcessStep(Node.class, nested);
+
+		assertEquals(2L * depth, Node.VISITS.get() - before);
+		assertThat(report.getCollisions(), empty());
+	}
+
+	private static Node.NodeBuilder tree() {
+		Node.NodeBuilder tree = Nodes.tree(4, 3);
+		Node.NodeBuilder first = tree.getChild().get(0);
+		first.getOrCreateMeta().addKey(Key.builder().setKeyValue("node-1").setScope("DOCUMENT"));
+		first.getOrCreatePriceReference().setReference(Reference.builder().setReference("price-0"));
+		first.getChild().get(1).setPriceReference(ReferenceWithMetaPrice.builder()
+				.setValue(Price.builder().setRate(BigDecimal.TEN)));
+		first.getChild().get(2).getOrCreateChild(2).setName("after-nulls");
+		tree.getChild().get(1).getOrCreatePrice().getOrCreateMeta().setScheme("scheme");
+		tree.getChild().get(2).addChild(Node.builder());
+		return tree;
+	}
+
+	private static Map<RosettaPath, String> keys(GlobalKeyProcessStep step, Node.NodeBuilder tree) {
+		Map<RosettaPath, String> keys = new TreeMap<>();
+		step.runProcessStep(Node.class, tree).getKeyMap()
+				.forEach((path, key) -> keys.put(path, key.getMeta().getGlobalKey()));
+		return keys;
+	}
+}
@@ -0,0 +1,94 @@
+package com.regnosys.rosetta.common.hashing;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.regnosys.rosetta.common.hashing.testpojo.Node;
+import com.regnosys.rosetta.common.hashing.testpojo.Nodes;
+import com.rosetta.model.lib.RosettaModelObject;
+import com.rosetta.model.lib.path.RosettaPath;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FingerprintCollectorTest {
+
+	@Test
+	void shouldGiveEqualObjectsEqualFingerprints() {
+		Node tree = Nodes.tree(4, 3).build();
+		assertEquals(fingerprint(tree), fingerprint(Nodes.tree(4, 3).build()));
+		assertEquals(fingerprint(tree), fingerprint(tree.toBuilder().build()));
+	}
+
+	@Test
+	void shouldDistinguishWhatEqualsDistinguishes() {
+		Node node = Node.builder().setName("node").setAmount(new BigDecimal("2.5")).build();
+		Set<String> fingerprints = new HashSet<>();
+		fingerprints.add(fingerprint(node));
+		// trailing zeros, which the global key hashes ignore
+		fingerprints.add(fingerprint(node.toBuilder().setAmount(new BigDecimal("2.50")).build()));
+		fingerprints.add(fingerprint(node.toBuilder().setName("node2").build()));
+		// the same value under another attribute
+		fingerprints.add(fingerprint(Node.builder().setAmount(new BigDecimal("2.5")).build()));
+		// metadata
+		Node.NodeBuilder keyed = Nodes.tree(1, 1);
+		fingerprints.add(fingerprint(keyed.build()));
+		keyed.getPrice().getMeta().setExternalKey("other");
+		fingerprints.add(fingerprint(keyed.build()));
+		assertEquals(6, fingerprints.size());
+	}
+
+	@Test
+	void shouldDistinguishListOrderAndNesting() {
+		Node a = Node.builder().setName("a").build();
+		Node b = Node.builder().setName("b").build();
+		String ab = fingerprint(Node.builder().addChild(a).addChild(b).build());
+		assertThat(ab, not(fingerprint(Node.builder().addChild(b).addChild(a).build())));
+		assertThat(ab, not(fingerprint(Node.builder().addChild(a.toBuilder().addChild(b)).build())));
+	}
+
+	@Test
+	void shouldGiveDistinctObjectsDistinctFingerprints() {
+		Node tree = Nodes.tree(6, 4).build();
+		Set<String> fingerprints = new HashSet<>();
+		collect(tree, fingerprints);
+		// 1 + 4 + 16 + 64 + 256 + 1024 nodes, each with a distinct name
+		assertEquals(1365, fingerprints.size());
+	}
+
+	private static void collect(Node node, Set<String> fingerprints) {
+		fingerprints.add(fingerprint(node));
+		if (node.getChild() != null) {
+			node.getChild().forEach(child -> collect(child, fingerprints));
+		}
+	}
+
+	private static String fingerprint(RosettaModelObject object) {
+		FingerprintCollector collector = new FingerprintCollector().withRoot(object);
+		object.process(RosettaPath.valueOf(object.getType().getSimpleName()), collector);
+		return collector.report().toString();
+	}
+}
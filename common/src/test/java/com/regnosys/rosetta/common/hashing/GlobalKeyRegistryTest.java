@@ -0,0 +1,121 @@
+package com.regnosys.rosetta.common.hashing;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.regnosys.rosetta.common.hashing.testpojo.Node;
+import com.regnosys.rosetta.common.hashing.testpojo.Nodes;
+import com.regnosys.rosetta.common.model.ObjectSizeEstimator;
+import com.regnosys.rosetta.common.serialisation.json.preannotation.testpojo.Price;
+import com.regnosys.rosetta.common.serialisation.json.preannotation.testpojo.metafields.FieldWithMetaPrice;
+import com.regnosys.rosetta.common.serialisation.json.preannotation.testpojo.metafields.MetaFields;
+import com.regnosys.rosetta.common.serialisation.json.preannotation.testpojo.metafields.ReferenceWithMetaPrice;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GlobalKeyRegistryTest {
+
+	@Test
+	void shouldResolveReferencesToOtherDocumentsOfTheBatch() {
+		GlobalKeyRegistry registry = new GlobalKeyRegistry();
+		ReKeyProcessStep reKey = new ReKeyProcessStep(new BottomUpGlobalKeyProcessStep(), registry);
+		ReferenceResolverProcessStep resolver = new ReferenceResolverProcessStep(ReferenceConfig.noScopeOrExcludedPaths(), registry);
+
+		Node.NodeBuilder first = Nodes.tree(2, 2);
+		reKey.runProcessStep(Node.class, first);
+		resolver.runProcessStep(Node.class, first.build());
+
+		Node.NodeBuilder second = Node.builder()
+				.setName("other")
+				.setPrice(FieldWithMetaPrice.builder()
+						.setMeta(MetaFields.builder().setExternalKey("price-other"))
+						.setValue(Price.builder().setRate(BigDecimal.valueOf(99))))
+				.setPriceReference(ReferenceWithMetaPrice.builder().setExternalReference("price-1"));
+		reKey.runProcessStep(Node.class, second);
+		Node resolved = (Node) resolver.runProcessStep(Node.class, second.build()).getResultObject();
+
+		Price referencedPrice = first.getChild().get(0).getPrice().getValue().build();
+		assertEquals(first.getChild().get(0).getPrice().getMeta().getGlobalKey(), resolved.getPriceReference().getGlobalReference());
+		assertEquals(referencedPrice, resolved.getPriceReference().getValue());
+	}
+
+	@Test
+	void shouldSpillOldestObjectsToFile(@TempDir Path dir) throws IOException {
+		long priceBytes = ObjectSizeEstimator.estimate(Price.builder().setRate(BigDecimal.ONE).build());
+		try (GlobalKeyRegistry registry = new GlobalKeyRegistry(2 * priceBytes, dir.resolve("spill.bin"))) {
+			for (int i = 0; i < 10; i++) {
+				registry.put("key-" + i, Price.class, Price.builder().setRate(BigDecimal.valueOf(i)));
+			}
+
+			assertEquals(10, registry.size());
+			assertEquals(8, registry.getSpilledCount());
+			for (int i = 0; i < 10; i++) {
+				assertEquals(Price.builder().setRate(BigDecimal.valueOf(i)).build(), registry.get("key-" + i, Price.class));
+			}
+			assertNull(registry.get("key-0", Node.class));
+			assertNull(registry.get("key-10", Price.class));
+		}
+	}
+
+	@Test
+	void shouldKeepFirstObjectRegisteredUnderKey() {
+		GlobalKeyRegistry registry = new GlobalKeyRegistry();
+		registry.put("key", Price.class, Price.builder().setRate(BigDecimal.ONE).build());
+		registry.put("key", Price.class, Price.builder().setRate(BigDecimal.TEN).build());
+		registry.putExternalKey("external", "key");
+		registry.putExternalKey("external", "key");
+
+		assertEquals(Price.builder().setRate(BigDecimal.ONE).build(), registry.get("key", Price.class));
+		assertEquals("key", registry.getGlobalKey("external"));
+		assertTrue(registry.getAmbiguousExternalKeys().isEmpty());
+	}
+
+	@Test
+	void shouldNotResolveExternalKeysOfObjectsInSeveralDocuments() {
+		GlobalKeyRegistry registry = new GlobalKeyRegistry();
+		ReKeyProcessStep reKey = new ReKeyProcessStep(new BottomUpGlobalKeyProcessStep(), registry);
+		reKey.runProcessStep(Node.class, pricedNode("first", "price-1", 1));
+		reKey.runProcessStep(Node.class, pricedNode("second", "price-1", 2));
+
+		Node.NodeBuilder third = Node.builder()
+				.setName("third")
+				.setPriceReference(ReferenceWithMetaPrice.builder().setExternalReference("price-1"));
+		Node reKeyed = (Node) reKey.runProcessStep(Node.class, third).getResultObject();
+
+		assertNull(registry.getGlobalKey("price-1"));
+		assertEquals(Collections.singleton("price-1"), registry.getAmbiguousExternalKeys());
+		assertNull(reKeyed.getPriceReference().getGlobalReference());
+	}
+
+	private static Node.NodeBuilder pricedNode(String name, String externalKey, int rate) {
+		return Node.builder()
+				.setName(name)
+				.setPrice(FieldWithMetaPrice.builder()
+						.setMeta(MetaFields.builder().setExternalKey(externalKey))
+						.setValue(Price.builder().setRate(BigDecimal.valueOf(rate))));
+	}
+}
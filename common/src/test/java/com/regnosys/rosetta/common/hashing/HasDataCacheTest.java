@@ -0,0 +1,65 @@
+package com.regnosys.rosetta.common.hashing;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.regnosys.rosetta.common.hashing.testpojo.Node;
+import com.regnosys.rosetta.common.hashing.testpojo.Nodes;
+import com.regnosys.rosetta.common.serialisation.json.preannotation.testpojo.Price;
+import com.regnosys.rosetta.common.serialisation.json.preannotation.testpojo.metafields.FieldWithMetaPrice;
+import com.regnosys.rosetta.common.serialisation.json.preannotation.testpojo.metafields.MetaFields;
+import com.regnosys.rosetta.common.serialisation.json.preannotation.testpojo.metafields.ReferenceWithMetaPrice;
+import com.rosetta.model.lib.RosettaModelObject;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HasDataCacheTest {
+
+	@Test
+	void shouldMatchBuilderHasData() {
+		List<RosettaModelObject> instances = Arrays.asList(
+				Node.builder().build(),
+				Node.builder().setName("name").build(),
+				Node.builder().setMeta(MetaFields.builder().setExternalKey("key")).build(),
+				Node.builder().addChild(Node.builder()).build(),
+				Node.builder().addChild(Node.builder()).addChild(Node.builder().setAmount(BigDecimal.ONE)).build(),
+				Node.builder().setPrice(FieldWithMetaPrice.builder().setMeta(MetaFields.builder().setGlobalKey("key"))).build(),
+				Node.builder().setPrice(FieldWithMetaPrice.builder().setValue(Price.builder())).build(),
+				Node.builder().setPrice(FieldWithMetaPrice.builder().setValue(Price.builder().setRate(BigDecimal.TEN))).build(),
+				Node.builder().setPriceReference(ReferenceWithMetaPrice.builder().setGlobalReference("key")).build(),
+				Node.builder().setPriceReference(ReferenceWithMetaPrice.builder().setValue(Price.builder())).build(),
+				MetaFields.builder().setExternalKey("key").build(),
+				MetaFields.builder().build(),
+				Nodes.tree(3, 2).build(),
+				Node.builder().addChild(Node.builder().addChild(Node.builder())).build(),
+				Node.builder().addChild(Node.builder().addChild(Node.builder().setName("leaf"))).build());
+
+		for (RosettaModelObject instance : instances) {
+			boolean expected = instance.toBuilder().hasData();
+			assertEquals(expected, new HasDataCache().hasData(instance), instance.toString());
+			assertEquals(expected, new HasDataCache().hasData(instance.toBuilder()), instance.toString());
+		}
+	}
+}
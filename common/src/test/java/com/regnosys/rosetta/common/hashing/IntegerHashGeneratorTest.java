@@ -0,0 +1,110 @@
+package com.regnosys.rosetta.common.hashing;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.rosetta.model.lib.records.Date;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IntegerHashGeneratorTest {
+
+	private final IntegerHashGenerator generator = new IntegerHashGenerator();
+
+	@Test
+	void shouldHashDecimalsAsStrippedPlainString() {
+		String[] values = {"0", "0.000", "0E+5", "2", "2.0", "2.00", "-2.50", "100", "1E+3", "-1E+3", "0.001", "-0.00100",
+				"123.456", "123456789012345678", "1234567890123456789", "-0.000000000000000001", "9.99999999999999999E+40",
+				"12345678901234567890.123456789", "1E-30", "-1.5E-7"};
+		for (String value : values) {
+			BigDecimal decimal = new BigDecimal(value);
+			assertEquals(stringHash(decimal.stripTrailingZeros().toPlainString()), generator.generateInt(decimal), value);
+			assertEquals(generator.generate(decimal).intValue(), generator.generateInt(decimal), value);
+		}
+	}
+
+	@Test
+	void shouldHashRandomDecimalsAsStrippedPlainString() {
+		Random random = new Random(42);
+		for (int i = 0; i < 10_000; i++) {
+			BigInteger unscaled = new BigInteger(1 + random.nextInt(70), random);
+			if (random.nextBoolean()) {
+				unscaled = unscaled.negate();
+			}
+			BigDecimal decimal = new BigDecimal(unscaled, random.nextInt(30) - 10);
+			assertEquals(stringHash(decimal.stripTrailingZeros().toPlainString()), generator.generateInt(decimal), decimal.toString());
+		}
+	}
+
+	@Test
+	void shouldHashOtherBasicTypesAsBefore() {
+		assertEquals(stringHash("some string"), generator.generateInt("some string"));
+		assertEquals(0, generator.generateInt(""));
+		assertEquals(42, generator.generateInt(42));
+		assertEquals(1231, generator.generateInt(true));
+		assertEquals(1237, generator.generateInt(false));
+		assertEquals(stringHash("MINUTES"), generator.generateInt(ChronoUnit.MINUTES));
+
+		LocalDate date = LocalDate.of(2024, 2, 29);
+		int dateHash = (2024 & 0xFFFFF800) ^ ((2024 << 11) + (2 << 6) + 29);
+		assertEquals(dateHash, generator.generateInt(date));
+		assertEquals(dateHash, generator.generateInt(Date.of(date)));
+
+		LocalTime time = LocalTime.of(13, 45, 30, 123);
+		long nod = time.toNanoOfDay();
+		int timeHash = (int) (nod ^ (nod >>> 32));
+		assertEquals(timeHash, generator.generateInt(time));
+		assertEquals(dateHash ^ timeHash, generator.generateInt(LocalDateTime.of(date, time)));
+
+		ZonedDateTime zoned = ZonedDateTime.of(date, time, ZoneId.of("Europe/London"));
+		assertEquals(dateHash ^ timeHash ^ zoned.getOffset().getTotalSeconds() ^ stringHash("Europe/London"),
+				generator.generateInt(zoned));
+
+		for (Object value : new Object[] {"some string", 42, true, ChronoUnit.MINUTES, date, time, zoned, BigDecimal.TEN}) {
+			assertEquals(generator.generate(value).intValue(), generator.generateInt(value));
+		}
+	}
+
+	@Test
+	void shouldRejectUnsupportedTypes() {
+		assertThrows(IllegalArgumentException.class, () -> generator.generateInt(1L));
+		assertThrows(IllegalArgumentException.class, () -> generator.generate(1L));
+	}
+
+	private static int stringHash(String string) {
+		int h = 0;
+		for (char c : string.toCharArray()) {
+			h = 31 * h + c;
+		}
+		return h;
+	}
+}
@@ -0,0 +1,80 @@
+package com.regnosys.rosetta.common.hashing;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.rosetta.model.lib.path.RosettaPath;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReferenceConfigTest {
+
+	@Test
+	void shouldMatchExcludedPathSuffixes() {
+		ReferenceConfig config = new ReferenceConfig(null, Arrays.asList(
+				RosettaPath.valueOf("trade.price"),
+				RosettaPath.valueOf("party.*.name"),
+				RosettaPath.valueOf("account")));
+
+		assertTrue(config.isExcluded(RosettaPath.valueOf("Root.trade(2).price")));
+		assertTrue(config.isExcluded(RosettaPath.valueOf("trade.price")));
+		assertTrue(config.isExcluded(RosettaPath.valueOf("Root.party(1).contact.name")));
+		assertTrue(config.isExcluded(RosettaPath.valueOf("Root.account")));
+		assertFalse(config.isExcluded(RosettaPath.valueOf("price")));
+		assertFalse(config.isExcluded(RosettaPath.valueOf("Root.leg.price")));
+		assertFalse(config.isExcluded(RosettaPath.valueOf("Root.party.name")));
+		assertFalse(config.isExcluded(RosettaPath.valueOf("Root.account.name")));
+	}
+
+	@Test
+	void shouldMatchSameAsEndsWith() {
+		String[] names = {"a", "b", "c", "*"};
+		Random random = new Random(11);
+		List<RosettaPath> excluded = new ArrayList<>();
+		for (int i = 0; i < 30; i++) {
+			excluded.add(randomPath(random, names));
+		}
+		ReferenceConfig config = new ReferenceConfig(null, excluded);
+		ReferenceConfig noExclusions = ReferenceConfig.noScopeOrExcludedPaths();
+
+		for (int i = 0; i < 2000; i++) {
+			RosettaPath path = randomPath(random, Arrays.copyOf(names, 3));
+			assertEquals(excluded.stream().anyMatch(path::endsWith), config.isExcluded(path), path.buildPath());
+			assertFalse(noExclusions.isExcluded(path));
+		}
+	}
+
+	private static RosettaPath randomPath(Random random, String[] names) {
+		RosettaPath path = RosettaPath.valueOf(names[random.nextInt(names.length)]);
+		int depth = random.nextInt(5);
+		for (int i = 0; i < depth; i++) {
+			path = random.nextBoolean()
+					? path.newSubPath(names[random.nextInt(names.length)])
+					: path.newSubPath(names[random.nextInt(names.length)], random.nextInt(3));
+		}
+		return path;
+	}
+}
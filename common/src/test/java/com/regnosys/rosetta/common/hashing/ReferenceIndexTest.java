@@ -0,0 +1,95 @@
+package com.regnosys.rosetta.common.hashing;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.Table;
+import org.junit.jupiter.api.Test;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReferenceIndexTest {
+
+	@Test
+	void shouldFindObjectsByAssignableType() {
+		ReferenceIndex index = new ReferenceIndex();
+		index.put(Integer.class, "key-1", 1);
+		index.put(String.class, "key-2", "two");
+
+		assertEquals(1, index.get("key-1", Integer.class));
+		assertEquals(1, index.get("key-1", Number.class));
+		assertEquals(1, index.get("key-1", Comparable.class));
+		assertEquals(1, index.get("key-1", Object.class));
+		assertEquals("two", index.get("key-2", CharSequence.class));
+		assertNull(index.get("key-1", String.class));
+		assertNull(index.get("key-3", Object.class));
+	}
+
+	@Test
+	void shouldPreferClassFirstStoredLatest() {
+		ReferenceIndex index = new ReferenceIndex();
+		index.put(Integer.class, "key-1", 1);
+		index.put(Long.class, "key-2", 2L);
+		index.put(Long.class, "key-1", 3L);
+
+		assertEquals(1, index.get("key-1", Integer.class));
+		assertEquals(3L, index.get("key-1", Long.class));
+		assertEquals(3L, index.get("key-1", Number.class));
+
+		// replacing a value keeps the position of its class
+		index.put(Integer.class, "key-1", 4);
+		assertEquals(3L, index.get("key-1", Number.class));
+		assertEquals(4, index.get("key-1", Integer.class));
+	}
+
+	@Test
+	void shouldMatchLastAssignableTableEntry() {
+		Class<?>[] classes = {Integer.class, Long.class, String.class, StringBuilder.class, Double.class};
+		Class<?>[] valueTypes = {Object.class, Number.class, Comparable.class, CharSequence.class, Serializable.class,
+				Integer.class, String.class, Double.class};
+		Random random = new Random(7);
+		Table<Class<?>, String, Object> table = HashBasedTable.create();
+		ReferenceIndex index = new ReferenceIndex();
+		for (int i = 0; i < 500; i++) {
+			Class<?> valueClass = classes[random.nextInt(classes.length)];
+			String key = "key-" + random.nextInt(20);
+			table.put(valueClass, key, i);
+			index.put(valueClass, key, i);
+		}
+
+		for (int k = 0; k < 20; k++) {
+			String key = "key-" + k;
+			for (Class<?> valueType : valueTypes) {
+				Object expected = null;
+				for (Map.Entry<Class<?>, Object> entry : table.column(key).entrySet()) {
+					if (valueType.isAssignableFrom(entry.getKey())) {
+						expected = entry.getValue();
+					}
+				}
+				assertEquals(expected, index.get(key, valueType), key + " " + valueType.getSimpleName());
+			}
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package com.regnosys.rosetta.common.hashing;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.regnosys.rosetta.common.hashing.testpojo.Node;
+import com.regnosys.rosetta.common.hashing.testpojo.Nodes;
+import com.regnosys.rosetta.common.postprocess.FusedPostProcessor;
+import com.regnosys.rosetta.common.serialisation.json.preannotation.testpojo.metafields.FieldWithMetaPrice;
+import com.rosetta.model.lib.path.RosettaPath;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ReferenceResolverProcessStepTest {
+
+	private static ForkJoinPool pool;
+
+	@BeforeAll
+	static void createPool() {
+		pool = new ForkJoinPool(4);
+	}
+
+	@AfterAll
+	static void shutdownPool() {
+		pool.shutdown();
+	}
+
+	@Test
+	void parallelResolutionGivesSameResultAsSequential() {
+		Node keyed = keyedTree();
+		ReferenceConfig config = ReferenceConfig.noScopeOrExcludedPaths();
+
+		Node sequential = (Node) new ReferenceResolverProcessStep(config).runProcessStep(Node.class, keyed).getResultObject();
+		Node parallel = (Node) new ReferenceResolverProcessStep(config, pool).runProcessStep(Node.class, keyed).getResultObject();
+
+		assertEquals(sequential, parallel);
+		Node child = parallel.getChild().get(3).getChild().get(1);
+		assertThat(child.getPriceReference().getValue(), notNullValue());
+		assertEquals(parallel.getChild().get(3).getPrice().getValue(), child.getPriceReference().getValue());
+	}
+
+	@Test
+	void parallelResolutionWithScopeAndExcludedPathsGivesSameResultAsSequential() {
+		Node keyed = keyedTree();
+		ReferenceConfig config = new ReferenceConfig(Node.class,
+				Collections.singletonList(RosettaPath.valueOf("child.child.priceReference")));
+
+		Node sequential = (Node) new ReferenceResolverProcessStep(config).runProcessStep(Node.class, keyed).getResultObject();
+		Node parallel = (Node) new ReferenceResolverProcessStep(config, pool).runProcessStep(Node.class, keyed).getResultObject();
+
+		assertEquals(sequential, parallel);
+		assertThat(parallel.getChild().get(0).getPriceReference().getValue(), notNullValue());
+		assertEquals(null, parallel.getChild().get(0).getChild().get(0).getPriceReference().getValue());
+	}
+
+	@Test
+	void parallelResolutionSplitAtScopeTypeGivesSameResultAsSequential() {
+		Node keyed = keyedTree();
+		ReferenceConfig config = new ReferenceConfig(FieldWithMetaPrice.class, Collections.emptyList());
+
+		Node sequential = (Node) new ReferenceResolverProcessStep(config).runProcessStep(Node.class, keyed).getResultObject();
+		Node parallel = (Node) new ReferenceResolverProcessStep(config, pool).runProcessStep(Node.class, keyed).getResultObject();
+
+		assertEquals(sequential, parallel);
+	}
+
+	@Test
+	void parallelResolutionOfBuildersGivesSameResultAsSequential() {
+		ReferenceConfig config = ReferenceConfig.noScopeOrExcludedPaths();
+		Node.NodeBuilder sequential = keyedTree().toBuilder();
+		Node.NodeBuilder parallel = keyedTree().toBuilder();
+
+		new ReferenceResolverProcessStep(config).runProcessStep(Node.class, sequential);
+		new ReferenceResolverProcessStep(config, pool).runProcessStep(Node.class, parallel);
+
+		assertEquals(sequential.build(), parallel.build());
+		Node.NodeBuilder child = parallel.getChild().get(3).getChild().get(1);
+		// the referenced builder itself, as in a sequential walk
+		assertSame(parallel.getChild().get(3).getPrice().getValue(), child.getPriceReference().getValue());
+	}
+
+	@Test
+	void parallelResolutionInFusedWalksGivesSameResultAsSequential() {
+		ReferenceConfig config = ReferenceConfig.noScopeOrExcludedPaths();
+		Node.NodeBuilder sequential = Nodes.tree(5, 4);
+		new ReKeyProcessStep(new BottomUpGlobalKeyProcessStep()).runProcessStep(Node.class, sequential);
+		new ReferenceResolverProcessStep(config).runProcessStep(Node.class, sequential);
+
+		Node.NodeBuilder fused = Nodes.tree(5, 4);
+		new FusedPostProcessor()
+				.add(new ReKeyProcessStep(new BottomUpGlobalKeyProcessStep()))
+				.add(new ReferenceResolverProcessStep(config, pool))
+				.postProcess(Node.class, fused);
+
+		assertEquals(sequential.build(), fused.build());
+		assertThat(fused.getChild().get(0).getPriceReference().getValue(), notNullValue());
+	}
+
+	private static Node keyedTree() {
+		Node.NodeBuilder tree = Nodes.tree(5, 4);
+		new ReKeyProcessStep(new BottomUpGlobalKeyProcessStep()).runProcessStep(Node.class, tree);
+		return tree.build();
+	}
+}
@@ -0,0 +1,112 @@
+package com.regnosys.rosetta.common.hashing;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.regnosys.rosetta.common.hashing.testpojo.Node;
+import com.regnosys.rosetta.common.translation.Path;
+import com.rosetta.model.lib.path.RosettaPath;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScopeReferenceHelperTest {
+
+	private static final RosettaPath ROOT = RosettaPath.valueOf("Root");
+
+	@Test
+	void shouldFindScopeByNameAndIndex() {
+		ScopeReferenceHelper<List<String>> helper = newHelper();
+		helper.collectScopePath(ROOT.newSubPath("trade", 0), Node.class);
+		helper.collectScopePath(ROOT.newSubPath("trade", 1), Node.class);
+
+		assertSame(scopeData(helper, "Root.trade[1]"), helper.getDataForModelPath(Path.parse("Root.trade[1].price.value")));
+		assertSame(scopeData(helper, "Root.trade[0]"), helper.getDataForModelPath(Path.parse("Root.trade[0].price")));
+		// an absent index is index 0
+		assertSame(scopeData(helper, "Root.trade[0]"), helper.getDataForModelPath(Path.parse("Root.trade.price")));
+		assertSame(scopeData(helper, "Root.trade[1]"), helper.getDataForModelPath(Path.parse("Root.trade[1]")));
+	}
+
+	@Test
+	void shouldFindLongestMatchingScope() {
+		ScopeReferenceHelper<List<String>> helper = newHelper();
+		helper.collectScopePath(ROOT.newSubPath("trade", 2), Node.class);
+		helper.collectScopePath(ROOT.newSubPath("trade", 2).newSubPath("leg", 1), Node.class);
+
+		assertSame(scopeData(helper, "Root.trade[2].leg[1]"), helper.getDataForModelPath(Path.parse("Root.trade[2].leg[1].price")));
+		assertSame(scopeData(helper, "Root.trade[2]"), helper.getDataForModelPath(Path.parse("Root.trade[2].leg[0].price")));
+	}
+
+	@Test
+	void shouldUseEmptyScopeWhenNoScopeMatches() {
+		ScopeReferenceHelper<List<String>> helper = newHelper();
+		helper.collectScopePath(ROOT.newSubPath("trade", 0), Node.class);
+		helper.collectScopePath(ROOT.newSubPath("other", 0), String.class);
+
+		List<String> data = helper.getDataForModelPath(Path.parse("Root.other[0].price"));
+
+		assertSame(helper.getScopeToDataMap().get(ScopeReferenceHelper.EMPTY_SCOPE), data);
+		assertSame(data, helper.getDataForModelPath(Path.parse("Root.trade[1]")));
+		assertEquals(2, helper.getScopeToDataMap().size());
+	}
+
+	@Test
+	void shouldScaleWithNumberOfScopes() {
+		// a linear scan of the scopes would make this 10^10 path comparisons
+		assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+			for (int scopes : new int[] {1_000, 10_000, 100_000}) {
+				ScopeReferenceHelper<List<String>> helper = newHelper();
+				List<Path> modelPaths = new ArrayList<>();
+				for (int i = 0; i < scopes; i++) {
+					helper.collectScopePath(ROOT.newSubPath("trade", i), Node.class);
+					modelPaths.add(Path.parse("Root.trade[" + i + "].product.economicTerms.payout"));
+				}
+				Collections.shuffle(modelPaths);
+
+				long start = System.nanoTime();
+				for (Path modelPath : modelPaths) {
+					helper.getDataForModelPath(modelPath).add(modelPath.toString());
+				}
+				long nanosPerLookup = (System.nanoTime() - start) / scopes;
+
+				assertEquals(scopes, helper.getScopeToDataMap().size());
+				helper.getScopeToDataMap().values().forEach(data -> assertEquals(1, data.size()));
+				System.out.printf("%,d scopes: %,d ns per lookup%n", scopes, nanosPerLookup);
+			}
+		});
+	}
+
+	private static ScopeReferenceHelper<List<String>> newHelper() {
+		return new ScopeReferenceHelper<>(new ReferenceConfig(Node.class, Collections.emptyList()), ArrayList::new);
+	}
+
+	private static List<String> scopeData(ScopeReferenceHelper<List<String>> helper, String scopePath) {
+		Map<Path, List<String>> scopeToDataMap = helper.getScopeToDataMap();
+		List<String> data = scopeToDataMap.get(Path.parse(scopePath));
+		assertNotNull(data, scopePath);
+		return data;
+	}
+}
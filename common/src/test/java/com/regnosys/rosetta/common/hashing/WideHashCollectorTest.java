@@ -0,0 +1,103 @@
+package com.regnosys.rosetta.common.hashing;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.regnosys.rosetta.common.hashing.GlobalKeyProcessStep.KeyPostProcessReport;
+import com.regnosys.rosetta.common.hashing.testpojo.Node;
+import com.regnosys.rosetta.common.hashing.testpojo.Nodes;
+import com.rosetta.model.lib.path.RosettaPath;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WideHashCollectorTest {
+
+	@Test
+	void shouldGenerate128And64BitKeys() {
+		assertThat(rootKey(new GlobalKeyProcessStep(WideHashCollector::new), Nodes.tree(3, 2)), matchesPattern("[0-9a-f]{32}"));
+		assertThat(rootKey(new GlobalKeyProcessStep(() -> new WideHashCollector(64)), Nodes.tree(3, 2)), matchesPattern("[0-9a-f]{16}"));
+	}
+
+	@Test
+	void shouldGiveEqualContentEqualKeys() {
+		GlobalKeyProcessStep step = new GlobalKeyProcessStep(WideHashCollector::new);
+
+		String key = rootKey(step, Node.builder().setName("node").setAmount(new BigDecimal("2.5")));
+		assertEquals(key, rootKey(step, Node.builder().setName("node").setAmount(new BigDecimal("2.50"))));
+		assertThat(key, not(rootKey(step, Node.builder().setName("node").setAmount(new BigDecimal("2.6")))));
+		assertThat(key, not(rootKey(step, Node.builder().setName("node2").setAmount(new BigDecimal("2.5")))));
+	}
+
+	@Test
+	void shouldGiveDistinctObjectsDistinctKeys() {
+		KeyPostProcessReport report = new GlobalKeyProcessStep(WideHashCollector::new).runProcessStep(Node.class, Nodes.tree(6, 4));
+
+		Set<String> keys = new HashSet<>();
+		report.getKeyMap().values().forEach(k -> keys.add(k.getMeta().getGlobalKey()));
+		// every node and every price in the tree has different content
+		assertEquals(report.getKeyMap().size(), keys.size());
+	}
+
+	@Test
+	void shouldReportCollisions() {
+		Node.NodeBuilder tree = Node.builder().setName("parent")
+				.addChild(Node.builder().setName("child"))
+				.addChild(Node.builder().setName("child"));
+
+		KeyPostProcessReport report = new GlobalKeyProcessStep(ConstantHashCollector::new, WideHashCollector::new)
+				.runProcessStep(Node.class, tree);
+
+		// the two children have the same content, so only the first clashes with the parent
+		List<GlobalKeyCollision> collisions = report.getCollisions();
+		assertThat(collisions, hasSize(1));
+		assertEquals("0", collisions.get(0).getGlobalKey());
+		assertEquals(RosettaPath.valueOf("Node"), collisions.get(0).getFirstPath());
+		assertEquals(RosettaPath.valueOf("Node").newSubPath("child", 0), collisions.get(0).getSecondPath());
+	}
+
+	@Test
+	void shouldNotReportCollisionsWithoutCheck() {
+		Node.NodeBuilder tree = Node.builder().setName("parent").addChild(Node.builder().setName("child"));
+
+		KeyPostProcessReport report = new GlobalKeyProcessStep(ConstantHashCollector::new).runProcessStep(Node.class, tree);
+
+		assertThat(report.getCollisions(), empty());
+	}
+
+	private static String rootKey(GlobalKeyProcessStep step, Node.NodeBuilder node) {
+		step.runProcessStep(Node.class, node);
+		return node.getMeta().getGlobalKey();
+	}
+
+	private static class ConstantHashCollector extends NonNullHashCollector {
+		@Override
+		public IntegerReport report() {
+			return new IntegerReport(0);
+		}
+	}
+}
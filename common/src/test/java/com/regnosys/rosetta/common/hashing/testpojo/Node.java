@@ -0,0 +1,480 @@
+package com.regnosys.rosetta.common.hashing.testpojo;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.google.common.collect.ImmutableList;
+import com.regnosys.rosetta.common.serialisation.json.preannotation.testpojo.metafields.FieldWithMetaPrice;
+import com.regnosys.rosetta.common.serialisation.json.preannotation.testpojo.metafields.MetaFields;
+import com.regnosys.rosetta.common.serialisation.json.preannotation.testpojo.metafields.ReferenceWithMetaPrice;
+import com.rosetta.model.lib.GlobalKey;
+import com.rosetta.model.lib.RosettaModelObject;
+import com.rosetta.model.lib.RosettaModelObjectBuilder;
+import com.rosetta.model.lib.annotations.RosettaClass;
+import com.rosetta.model.lib.meta.RosettaMetaData;
+import com.rosetta.model.lib.path.RosettaPath;
+import com.rosetta.model.lib.process.AttributeMeta;
+import com.rosetta.model.lib.process.BuilderMerger;
+import com.rosetta.model.lib.process.BuilderProcessor;
+import com.rosetta.model.lib.process.Processor;
+import com.rosetta.util.ListEquals;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static java.util.Optional.ofNullable;
+
+/**
+ * Recursive test type used to exercise the post-processing steps. Hand written in the shape of the generated code, with
+ * a global key, a nested list of itself, a keyed field with meta and a reference.
+ *
+ * @version test
+ */
+@RosettaClass
+public interface Node extends RosettaModelObject, GlobalKey {
+
+	/**
+	 * Number of times a builder's {@code process} method has been called, i.e. the number of node visits made by all
+	 * walks over {@link NodeBuilderImpl} instances.
+	 */
+	AtomicLong VISITS = new AtomicLong();
+
+	/*********************** Getter Methods  ***********************/
+	MetaFields getMeta();
+	String getName();
+	BigDecimal getAmount();
+	List<? extends Node> getChild();
+	FieldWithMetaPrice getPrice();
+	ReferenceWithMetaPrice getPriceReference();
+
+	/*********************** Build Methods  ***********************/
+	Node build();
+
+	NodeBuilder toBuilder();
+
+	static NodeBuilder builder() {
+		return new NodeBuilderImpl();
+	}
+
+	/*********************** Utility Methods  ***********************/
+	@Override
+	default RosettaMetaData<? extends Node> metaData() {
+		return null;
+	}
+
+	@Override
+	default Class<? extends Node> getType() {
+		return Node.class;
+	}
+
+	@Override
+	default void process(RosettaPath path, Processor processor) {
+		processor.processBasic(path.newSubPath("name"), String.class, getName(), this);
+		processor.processBasic(path.newSubPath("amount"), BigDecimal.class, getAmount(), this);
+
+		processRosetta(path.newSubPath("meta"), processor, MetaFields.class, getMeta());
+		processRosetta(path.newSubPath("child"), processor, Node.class, getChild());
+		processRosetta(path.newSubPath("price"), processor, FieldWithMetaPrice.class, getPrice(), AttributeMeta.GLOBAL_KEY_FIELD);
+		processRosetta(path.newSubPath("priceReference"), processor, ReferenceWithMetaPrice.class, getPriceReference());
+	}
+
+	/*********************** Builder Interface  ***********************/
+	interface NodeBuilder extends Node, RosettaModelObjectBuilder, GlobalKeyBuilder {
+		MetaFields.MetaFieldsBuilder getOrCreateMeta();
+		MetaFields.MetaFieldsBuilder getMeta();
+		NodeBuilder getOrCreateChild(int _index);
+		List<? extends NodeBuilder> getChild();
+		FieldWithMetaPrice.FieldWithMetaPriceBuilder getOrCreatePrice();
+		FieldWithMetaPrice.FieldWithMetaPriceBuilder getPrice();
+		ReferenceWithMetaPrice.ReferenceWithMetaPriceBuilder getOrCreatePriceReference();
+		ReferenceWithMetaPrice.ReferenceWithMetaPriceBuilder getPriceReference();
+		NodeBuilder setMeta(MetaFields meta);
+		NodeBuilder setName(String name);
+		NodeBuilder setAmount(BigDecimal amount);
+		NodeBuilder addChild(Node child);
+		NodeBuilder setChild(List<? extends Node> child);
+		NodeBuilder setPrice(FieldWithMetaPrice price);
+		NodeBuilder setPriceReference(ReferenceWithMetaPrice priceReference);
+
+		@Override
+		default void process(RosettaPath path, BuilderProcessor processor) {
+			processor.processBasic(path.newSubPath("name"), String.class, getName(), this);
+			processor.processBasic(path.newSubPath("amount"), BigDecimal.class, getAmount(), this);
+
+			processRosetta(path.newSubPath("meta"), processor, MetaFields.MetaFieldsBuilder.class, getMeta());
+			processRosetta(path.newSubPath("child"), processor, NodeBuilder.class, getChild());
+			processRosetta(path.newSubPath("price"), processor, FieldWithMetaPrice.FieldWithMetaPriceBuilder.class, getPrice(), AttributeMeta.GLOBAL_KEY_FIELD);
+			processRosetta(path.newSubPath("priceReference"), processor, ReferenceWithMetaPrice.ReferenceWithMetaPriceBuilder.class, getPriceReference());
+		}
+
+		NodeBuilder prune();
+	}
+
+	/*********************** Immutable Implementation of Node  ***********************/
+	class NodeImpl implements Node {
+		private final MetaFields meta;
+		private final String name;
+		private final BigDecimal amount;
+		private final List<? extends Node> child;
+		private final FieldWithMetaPrice price;
+		private final ReferenceWithMetaPrice priceReference;
+
+		protected NodeImpl(NodeBuilder builder) {
+			this.meta = ofNullable(builder.getMeta()).map(f->f.build()).orElse(null);
+			this.name = builder.getName();
+			this.amount = builder.getAmount();
+			this.child = ofNullable(builder.getChild()).filter(_l->!_l.isEmpty()).map(list -> list.stream().filter(Objects::nonNull).map(f->f.build()).filter(Objects::nonNull).collect(ImmutableList.toImmutableList())).orElse(null);
+			this.price = ofNullable(builder.getPrice()).map(f->f.build()).orElse(null);
+			this.priceReference = ofNullable(builder.getPriceReference()).map(f->f.build()).orElse(null);
+		}
+
+		@Override
+		public MetaFields getMeta() {
+			return meta;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public BigDecimal getAmount() {
+			return amount;
+		}
+
+		@Override
+		public List<? extends Node> getChild() {
+			return child;
+		}
+
+		@Override
+		public FieldWithMetaPrice getPrice() {
+			return price;
+		}
+
+		@Override
+		public ReferenceWithMetaPrice getPriceReference() {
+			return priceReference;
+		}
+
+		@Override
+		public Node build() {
+			return this;
+		}
+
+		@Override
+		public NodeBuilder toBuilder() {
+			NodeBuilder builder = builder();
+			setBuilderFields(builder);
+			return builder;
+		}
+
+		protected void setBuilderFields(NodeBuilder builder) {
+			ofNullable(getMeta()).ifPresent(builder::setMeta);
+			ofNullable(getName()).ifPresent(builder::setName);
+			ofNullable(getAmount()).ifPresent(builder::setAmount);
+			ofNullable(getChild()).ifPresent(builder::setChild);
+			ofNullable(getPrice()).ifPresent(builder::setPrice);
+			ofNullable(getPriceReference()).ifPresent(builder::setPriceReference);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || !(o instanceof RosettaModelObject) || !getType().equals(((RosettaModelObject)o).getType())) return false;
+
+			Node _that = getType().cast(o);
+
+			if (!Objects.equals(meta, _that.getMeta())) return false;
+			if (!Objects.equals(name, _that.getName())) return false;
+			if (!Objects.equals(amount, _that.getAmount())) return false;
+			if (!ListEquals.listEquals(child, _that.getChild())) return false;
+			if (!Objects.equals(price, _that.getPrice())) return false;
+			if (!Objects.equals(priceReference, _that.getPriceReference())) return false;
+			return true;
+		}
+
+		@Override
+		public int hashCode() {
+			int _result = 0;
+			_result = 31 * _result + (meta != null ? meta.hashCode() : 0);
+			_result = 31 * _result + (name != null ? name.hashCode() : 0);
+			_result = 31 * _result + (amount != null ? amount.hashCode() : 0);
+			_result = 31 * _result + (child != null ? child.hashCode() : 0);
+			_result = 31 * _result + (price != null ? price.hashCode() : 0);
+			_result = 31 * _result + (priceReference != null ? priceReference.hashCode() : 0);
+			return _result;
+		}
+
+		@Override
+		public String toString() {
+			return "Node {" +
+				"meta=" + this.meta + ", " +
+				"name=" + this.name + ", " +
+				"amount=" + this.amount + ", " +
+				"child=" + this.child + ", " +
+				"price=" + this.price + ", " +
+				"priceReference=" + this.priceReference +
+			'}';
+		}
+	}
+
+	/*********************** Builder Implementation of Node  ***********************/
+	class NodeBuilderImpl implements NodeBuilder {
+
+		protected MetaFields.MetaFieldsBuilder meta;
+		protected String name;
+		protected BigDecimal amount;
+		protected List<NodeBuilder> child = new ArrayList<>();
+		protected FieldWithMetaPrice.FieldWithMetaPriceBuilder price;
+		protected ReferenceWithMetaPrice.ReferenceWithMetaPriceBuilder priceReference;
+
+		public NodeBuilderImpl() {
+		}
+
+		@Override
+		public void process(RosettaPath path, Processor processor) {
+			VISITS.incrementAndGet();
+			NodeBuilder.super.process(path, processor);
+		}
+
+		@Override
+		public void process(RosettaPath path, BuilderProcessor processor) {
+			VISITS.incrementAndGet();
+			NodeBuilder.super.process(path, processor);
+		}
+
+		@Override
+		public MetaFields.MetaFieldsBuilder getMeta() {
+			return meta;
+		}
+
+		@Override
+		public MetaFields.MetaFieldsBuilder getOrCreateMeta() {
+			MetaFields.MetaFieldsBuilder result;
+			if (meta!=null) {
+				result = meta;
+			}
+			else {
+				result = meta = MetaFields.builder();
+			}
+
+			return result;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public BigDecimal getAmount() {
+			return amount;
+		}
+
+		@Override
+		public List<? extends NodeBuilder> getChild() {
+			return child;
+		}
+
+		@Override
+		public NodeBuilder getOrCreateChild(int _index) {
+			if (child==null) {
+				this.child = new ArrayList<>();
+			}
+			return getIndex(child, _index, () -> Node.builder());
+		}
+
+		@Override
+		public FieldWithMetaPrice.FieldWithMetaPriceBuilder getPrice() {
+			return price;
+		}
+
+		@Override
+		public FieldWithMetaPrice.FieldWithMetaPriceBuilder getOrCreatePrice() {
+			FieldWithMetaPrice.FieldWithMetaPriceBuilder result;
+			if (price!=null) {
+				result = price;
+			}
+			else {
+				result = price = FieldWithMetaPrice.builder();
+			}
+
+			return result;
+		}
+
+		@Override
+		public ReferenceWithMetaPrice.ReferenceWithMetaPriceBuilder getPriceReference() {
+			return priceReference;
+		}
+
+		@Override
+		public ReferenceWithMetaPrice.ReferenceWithMetaPriceBuilder getOrCreatePriceReference() {
+			ReferenceWithMetaPrice.ReferenceWithMetaPriceBuilder result;
+			if (priceReference!=null) {
+				result = priceReference;
+			}
+			else {
+				result = priceReference = ReferenceWithMetaPrice.builder();
+			}
+
+			return result;
+		}
+
+		@Override
+		public NodeBuilder setMeta(MetaFields meta) {
+			this.meta = meta==null?null:meta.toBuilder();
+			return this;
+		}
+
+		@Override
+		public NodeBuilder setName(String name) {
+			this.name = name==null?null:name;
+			return this;
+		}
+
+		@Override
+		public NodeBuilder setAmount(BigDecimal amount) {
+			this.amount = amount==null?null:amount;
+			return this;
+		}
+
+		@Override
+		public NodeBuilder addChild(Node child) {
+			if (child!=null) this.child.add(child.toBuilder());
+			return this;
+		}
+
+		@Override
+		public NodeBuilder setChild(List<? extends Node> children) {
+			if (children == null)  {
+				this.child = new ArrayList<>();
+			}
+			else {
+				this.child = children.stream()
+					.map(_a->_a.toBuilder())
+					.collect(Collectors.toCollection(()->new ArrayList<>()));
+			}
+			return this;
+		}
+
+		@Override
+		public NodeBuilder setPrice(FieldWithMetaPrice price) {
+			this.price = price==null?null:price.toBuilder();
+			return this;
+		}
+
+		@Override
+		public NodeBuilder setPriceReference(ReferenceWithMetaPrice priceReference) {
+			this.priceReference = priceReference==null?null:priceReference.toBuilder();
+			return this;
+		}
+
+		@Override
+		public Node build() {
+			return new NodeImpl(this);
+		}
+
+		@Override
+		public NodeBuilder toBuilder() {
+			return this;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public NodeBuilder prune() {
+			if (meta!=null && !meta.prune().hasData()) meta = null;
+			child = child.stream().filter(b->b!=null).<NodeBuilder>map(b->b.prune()).filter(b->b.hasData()).collect(Collectors.toList());
+			if (price!=null && !price.prune().hasData()) price = null;
+			if (priceReference!=null && !priceReference.prune().hasData()) priceReference = null;
+			return this;
+		}
+
+		@Override
+		public boolean hasData() {
+			if (getName()!=null) return true;
+			if (getAmount()!=null) return true;
+			if (getChild()!=null && getChild().stream().filter(Objects::nonNull).anyMatch(a->a.hasData())) return true;
+			if (getPrice()!=null && getPrice().hasData()) return true;
+			if (getPriceReference()!=null && getPriceReference().hasData()) return true;
+			return false;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public NodeBuilder merge(RosettaModelObjectBuilder other, BuilderMerger merger) {
+			NodeBuilder o = (NodeBuilder) other;
+
+			merger.mergeRosetta(getMeta(), o.getMeta(), this::setMeta);
+			merger.mergeRosetta(getChild(), o.getChild(), this::getOrCreateChild);
+			merger.mergeRosetta(getPrice(), o.getPrice(), this::setPrice);
+			merger.mergeRosetta(getPriceReference(), o.getPriceReference(), this::setPriceReference);
+
+			merger.mergeBasic(getName(), o.getName(), this::setName);
+			merger.mergeBasic(getAmount(), o.getAmount(), this::setAmount);
+			return this;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || !(o instanceof RosettaModelObject) || !getType().equals(((RosettaModelObject)o).getType())) return false;
+
+			Node _that = getType().cast(o);
+
+			if (!Objects.equals(meta, _that.getMeta())) return false;
+			if (!Objects.equals(name, _that.getName())) return false;
+			if (!Objects.equals(amount, _that.getAmount())) return false;
+			if (!ListEquals.listEquals(child, _that.getChild())) return false;
+			if (!Objects.equals(price, _that.getPrice())) return false;
+			if (!Objects.equals(priceReference, _that.getPriceReference())) return false;
+			return true;
+		}
+
+		@Override
+		public int hashCode() {
+			int _result = 0;
+			_result = 31 * _result + (meta != null ? meta.hashCode() : 0);
+			_result = 31 * _result + (name != null ? name.hashCode() : 0);
+			_result = 31 * _result + (amount != null ? amount.hashCode() : 0);
+			_result = 31 * _result + (child != null ? child.hashCode() : 0);
+			_result = 31 * _result + (price != null ? price.hashCode() : 0);
+			_result = 31 * _result + (priceReference != null ? priceReference.hashCode() : 0);
+			return _result;
+		}
+
+		@Override
+		public String toString() {
+			return "NodeBuilder {" +
+				"meta=" + this.meta + ", " +
+				"name=" + this.name + ", " +
+				"amount=" + this.amount + ", " +
+				"child=" + this.child + ", " +
+				"price=" + this.price + ", " +
+				"priceReference=" + this.priceReference +
+			'}';
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package com.regnosys.rosetta.common.hashing.testpojo;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.regnosys.rosetta.common.serialisation.json.preannotation.testpojo.Price;
+import com.regnosys.rosetta.common.serialisation.json.preannotation.testpojo.metafields.FieldWithMetaPrice;
+import com.regnosys.rosetta.common.serialisation.json.preannotation.testpojo.metafields.MetaFields;
+import com.regnosys.rosetta.common.serialisation.json.preannotation.testpojo.metafields.ReferenceWithMetaPrice;
+
+import java.math.BigDecimal;
+
+public class Nodes {
+
+	/**
+	 * Builds a complete tree of the given depth and fan out. Every node has a keyed price with an external key, and
+	 * every node but the root references the price of its parent by that external key.
+	 */
+	public static Node.NodeBuilder tree(int depth, int fanOut) {
+		return node(0, -1, depth, fanOut, new int[] {1});
+	}
+
+	private static Node.NodeBuilder node(int id, int parentId, int depth, int fanOut, int[] nextId) {
+		Node.NodeBuilder node = Node.builder()
+				.setName("node-" + id)
+				.setAmount(BigDecimal.valueOf(id).movePointLeft(2))
+				.setPrice(FieldWithMetaPrice.builder()
+						.setMeta(MetaFields.builder().setExternalKey("price-" + id))
+						.setValue(Price.builder().setRate(BigDecimal.valueOf(id))));
+		if (parentId >= 0) {
+			node.setPriceReference(ReferenceWithMetaPrice.builder().setExternalReference("price-" + parentId));
+		}
+		if (depth > 1) {
+			for (int i = 0; i < fanOut; i++) {
+				node.addChild(node(nextId[0]++, id, depth - 1, fanOut, nextId));
+			}
+		}
+		return node;
+	}
+}
@@ -0,0 +1,118 @@
+package com.regnosys.rosetta.common.model;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.google.inject.Guice;
+import com.google.inject.ImplementedBy;
+import com.rosetta.model.lib.functions.RosettaFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a memoised function call that hits the cache with a plain map lookup, and with building the key the way
+ * the interceptor used to, from the method signature on every call.
+ * <p>
+ * Not run as part of the build, run {@link #main(String[])} with the test classpath.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CachingMethodInterceptorBenchmark {
+
+    private Add add;
+    private Method evaluate;
+    private Map<MemoiseCacheKey, Object> map;
+    private MemoiseCacheKey mapKey;
+    private final Integer left = 1234;
+    private final Integer right = 5678;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        add = Guice.createInjector(new FunctionMemoisingModuleBuilder()
+                        .setPackages(CachingMethodInterceptorBenchmark.class.getPackage().getName())
+                        .build())
+                .getInstance(Add.class);
+        add.evaluate(left, right);
+        evaluate = Add.class.getMethod("evaluate", Integer.class, Integer.class);
+        map = new ConcurrentHashMap<>();
+        mapKey = MemoiseCacheKey.create(evaluate.toString(), left, right);
+        map.put(mapKey, left + right);
+    }
+
+    @Benchmark
+    public Integer memoisedCallHit() {
+        return add.evaluate(left, right);
+    }
+
+    @Benchmark
+    public Object mapLookup() {
+        return map.get(MemoiseCacheKey.create(mapKey.getMethodName(), left, right));
+    }
+
+    @Benchmark
+    public int signatureKey() {
+        return Objects.hash(evaluate.toString(), Arrays.asList(left, right));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CachingMethodInterceptorBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+
+    @ImplementedBy(Add.AddDefault.class)
+    public static abstract class Add implements RosettaFunction {
+
+        public Integer evaluate(Integer left, Integer right) {
+            return this.doEvaluate(left, right);
+        }
+
+        protected abstract Integer doEvaluate(Integer left, Integer right);
+
+        public static class AddDefault extends Add {
+            protected Integer doEvaluate(Integer left, Integer right) {
+                return left + right;
+            }
+        }
+    }
+}
@@ -23,15 +23,39 @@ package com.regnosys.rosetta.common.model;
 import com.google.inject.*;
 import com.google.inject.matcher.Matchers;
 import com.google.inject.util.Modules;
+import com.regnosys.rosetta.common.hashing.testpojo.Node;
+import com.regnosys.rosetta.common.hashing.testpojo.Nodes;
 import com.rosetta.model.lib.functions.RosettaFunction;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
 import java.util.stream.IntStream;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class FunctionMemoisingModuleTest {
 
@@ -101,6 +125,272 @@ class FunctionMemoisingModuleTest {
         assertThat(counter.count(), is(3));
     }
 
+    @Test
+    void checkCacheIsBoundedByMaximumBytes() {
+        Injector injector = Guice.createInjector(createModule(COM_REGNOSYS_MODEL,
+                builder -> builder.setMaximumBytes(100_000)));
+        Foo foo = injector.getInstance(Foo.class);
+        IntStream.range(0, 500).forEach(i -> foo.evaluate("xxx " + i));
+        IntStream.range(0, 500).forEach(i -> foo.evaluate("xxx " + i));
+        assertThat(counter.count(), is(500));
+
+        Injector bounded = Guice.createInjector(createModule(COM_REGNOSYS_MODEL,
+                builder -> builder.setMaximumBytes(10_000)));
+        Foo boundedFoo = bounded.getInstance(Foo.class);
+        IntStream.range(0, 500).forEach(i -> boundedFoo.evaluate("xxx " + i));
+        IntStream.range(0, 500).forEach(i -> boundedFoo.evaluate("xxx " + i));
+        assertThat(counter.count(), is(1500));
+    }
+
+    @Test
+    void checkNoCachingPolicy() {
+        Injector injector = Guice.createInjector(createModule(COM_REGNOSYS_MODEL,
+                builder -> builder.setPolicy(Bar.class, MemoisationPolicy.noCaching())));
+        Bar bar = injector.getInstance(Bar.class);
+        bar.evaluate(BigDecimal.ONE);
+        bar.evaluate(BigDecimal.ONE);
+        bar.evaluate(BigDecimal.ONE);
+        assertThat(counter.count(), is(3));
+    }
+
+    @Test
+    void checkNoCachingPolicyOfDefaultImplementation() {
+        Injector injector = Guice.createInjector(createModule(COM_REGNOSYS_MODEL,
+                builder -> builder.setPolicy(Bar.BarDefault.class, MemoisationPolicy.noCaching())));
+        Bar bar = injector.getInstance(Bar.class);
+        bar.evaluate(BigDecimal.ONE);
+        bar.evaluate(BigDecimal.ONE);
+        assertThat(counter.count(), is(2));
+    }
+
+    @Test
+    void checkFunctionPolicyHasItsOwnCache() {
+        Injector injector = Guice.createInjector(createModule(COM_REGNOSYS_MODEL,
+                builder -> builder.setPolicy(Foo.class, MemoisationPolicy.maximumSize(1000).expireAfterWrite(Duration.ofMinutes(1)))));
+        Foo foo = injector.getInstance(Foo.class);
+        Bar bar = injector.getInstance(Bar.class);
+        // would evict all of foo's results from a shared cache of 250
+        IntStream.range(0, 500).forEach(i -> foo.evaluate("xxx " + i));
+        IntStream.range(0, 500).forEach(i -> bar.evaluate(BigDecimal.valueOf(i)));
+        IntStream.range(0, 500).forEach(i -> foo.evaluate("xxx " + i));
+        assertThat(counter.count(), is(1000));
+    }
+
+    @Test
+    void checkFunctionPolicyOverridesPackagePolicy() {
+        Injector injector = Guice.createInjector(createModule(COM_REGNOSYS_MODEL,
+                builder -> builder
+                        .setPackagePolicy("com.regnosys", MemoisationPolicy.maximumSize(10))
+                        .setPackagePolicy(COM_REGNOSYS_MODEL, MemoisationPolicy.noCaching())
+                        .setPolicy(Foo.class, MemoisationPolicy.maximumSize(10))));
+        Foo foo = injector.getInstance(Foo.class);
+        Bar bar = injector.getInstance(Bar.class);
+        foo.evaluate("xxx");
+        foo.evaluate("xxx");
+        bar.evaluate(BigDecimal.ONE);
+        bar.evaluate(BigDecimal.ONE);
+        assertThat(counter.count(), is(3));
+    }
+
+    @Test
+    void checkStatsCountHitsMissesAndEvictions() {
+        FunctionMemoisingModule module = new FunctionMemoisingModuleBuilder().setPackages(COM_REGNOSYS_MODEL).build();
+        Injector injector = Guice.createInjector(module, binder -> binder.bind(Counter.class).toInstance(counter));
+        Foo foo = injector.getInstance(Foo.class);
+        IntStream.rangeClosed(0, 499).map(Math::abs).forEach(i -> foo.evaluate("xxx " + i));
+        IntStream.rangeClosed(-499, 0).map(Math::abs).forEach(i -> foo.evaluate("xxx " + i));
+
+        List<MemoisationStats> stats = module.getStats();
+        assertThat(stats.size(), is(1));
+        MemoisationStats fooStats = stats.get(0);
+        assertThat(fooStats.getFunctionName(), is(Foo.class.getName()));
+        assertThat(fooStats.getMissCount(), is(750L));
+        assertThat(fooStats.getHitCount(), is(250L));
+        assertThat(fooStats.getEvictionCount() + fooStats.getEstimatedSize(), is(750L));
+        assertThat(fooStats.getEstimatedSize(), lessThanOrEqualTo(250L));
+    }
+
+    @Test
+    void checkStatsAreRegisteredWithJmx() throws Exception {
+        FunctionMemoisingModule module = new FunctionMemoisingModuleBuilder()
+                .setPackages(COM_REGNOSYS_MODEL)
+                .setJmxName("FunctionMemoisingModuleTest")
+                .build();
+        Injector injector = Guice.createInjector(module, binder -> binder.bind(Counter.class).toInstance(counter));
+        Foo foo = injector.getInstance(Foo.class);
+        foo.evaluate("xxx");
+        foo.evaluate("xxx");
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = FunctionMemoisingModule.getObjectName("FunctionMemoisingModuleTest");
+        assertThat(server.getAttribute(name, "HitCount"), is(1L));
+        assertThat(server.getAttribute(name, "MissCount"), is(1L));
+        server.unregisterMBean(name);
+    }
+
+    @Test
+    void checkStatsSnapshotIsScheduled() throws Exception {
+        FunctionMemoisingModule module = new FunctionMemoisingModuleBuilder().setPackages(COM_REGNOSYS_MODEL).build();
+        Injector injector = Guice.createInjector(module, binder -> binder.bind(Counter.class).toInstance(counter));
+        injector.getInstance(Foo.class).evaluate("xxx");
+
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            CompletableFuture<List<MemoisationStats>> snapshot = new CompletableFuture<>();
+            module.scheduleStatsSnapshot(executor, Duration.ofMillis(10), snapshot::complete);
+            assertThat(snapshot.get(5, TimeUnit.SECONDS).get(0).getMissCount(), is(1L));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void checkConcurrentCallersComputeOnce() throws Exception {
+        SlowCalls slowCalls = new SlowCalls();
+        Slow slow = createSlowInjector(slowCalls).getInstance(Slow.class);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> slow.evaluate("xxx")));
+            }
+            slowCalls.started.await(5, TimeUnit.SECONDS);
+            Thread.sleep(50);
+            slowCalls.release.countDown();
+            for (Future<String> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS), is("XXX"));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(slowCalls.calls.get(), is(1));
+    }
+
+    @Test
+    void checkNullResultIsCached() {
+        SlowCalls slowCalls = new SlowCalls();
+        slowCalls.release.countDown();
+        Slow slow = createSlowInjector(slowCalls).getInstance(Slow.class);
+        assertThat(slow.evaluate("null"), nullValue());
+        assertThat(slow.evaluate("null"), nullValue());
+        assertThat(slowCalls.calls.get(), is(1));
+    }
+
+    @Test
+    void checkExceptionIsThrownAndNotCached() {
+        SlowCalls slowCalls = new SlowCalls();
+        slowCalls.release.countDown();
+        Slow slow = createSlowInjector(slowCalls).getInstance(Slow.class);
+        IllegalArgumentException first = assertThrows(IllegalArgumentException.class, () -> slow.evaluate("fail"));
+        assertThat(first.getMessage(), is("fail"));
+        assertThrows(IllegalArgumentException.class, () -> slow.evaluate("fail"));
+        assertThat(slowCalls.calls.get(), is(2));
+    }
+
+    @Test
+    void checkModelObjectArgumentsAreKeyedByFingerprint() {
+        Injector injector = Guice.createInjector(createModule(COM_REGNOSYS_MODEL,
+                builder -> builder.setDefaultPolicy(MemoisationPolicy.maximumSize(100).fingerprintModelObjects())));
+        Baz baz = injector.getInstance(Baz.class);
+        Node tree = Nodes.tree(3, 2).build();
+        baz.evaluate(tree);
+        baz.evaluate(tree);
+        baz.evaluate(Nodes.tree(3, 2).build());
+        assertThat(counter.count(), is(1));
+        baz.evaluate(Nodes.tree(3, 3).build());
+        assertThat(counter.count(), is(2));
+        // builders are compared by content
+        baz.evaluate(Nodes.tree(3, 3));
+        baz.evaluate(Nodes.tree(3, 3));
+        assertThat(counter.count(), is(3));
+    }
+
+    @Test
+    void checkFingerprintIsCalculatedOncePerInstance() {
+        ModelObjectFingerprints fingerprints = new ModelObjectFingerprints();
+        Node tree = Nodes.tree(3, 2).build();
+        Object[] keyArguments = fingerprints.keyArguments(new Object[]{tree, "xxx"});
+        assertThat(keyArguments[0], sameInstance(fingerprints.getFingerprint(tree)));
+        assertThat(keyArguments[1], is("xxx"));
+        assertThat(fingerprints.keyArguments(new Object[]{Arrays.asList(tree, tree)})[0],
+                is(Arrays.asList(keyArguments[0], keyArguments[0])));
+    }
+
+    @Test
+    void checkScopedResultsAreDroppedWhenScopeCloses() {
+        Foo foo = createInjector(COM_REGNOSYS_MODEL).getInstance(Foo.class);
+        try (MemoisationScope scope = MemoisationScope.open()) {
+            foo.evaluate("xxx");
+            foo.evaluate("xxx");
+            assertThat(scope.size(), is(1));
+        }
+        assertThat(counter.count(), is(1));
+        foo.evaluate("xxx");
+        assertThat(counter.count(), is(2));
+        try (MemoisationScope scope = MemoisationScope.open()) {
+            foo.evaluate("xxx");
+            assertThat(scope.size(), is(1));
+        }
+        assertThat(counter.count(), is(3));
+    }
+
+    @Test
+    void checkFunctionSharedAcrossScopesUsesSharedCache() {
+        Injector injector = Guice.createInjector(createModule(COM_REGNOSYS_MODEL,
+                builder -> builder.setSharedAcrossScopes(Bar.class)));
+        Bar bar = injector.getInstance(Bar.class);
+        try (MemoisationScope scope = MemoisationScope.open()) {
+            bar.evaluate(BigDecimal.ONE);
+            assertThat(scope.size(), is(0));
+        }
+        try (MemoisationScope scope = MemoisationScope.open()) {
+            bar.evaluate(BigDecimal.ONE);
+            assertThat(scope.size(), is(0));
+        }
+        assertThat(counter.count(), is(1));
+    }
+
+    @Test
+    void checkDefaultImplementationSharedAcrossScopesUsesSharedCache() {
+        Injector injector = Guice.createInjector(createModule(COM_REGNOSYS_MODEL,
+                builder -> builder.setSharedAcrossScopes(Bar.BarDefault.class)));
+        Bar bar = injector.getInstance(Bar.class);
+        try (MemoisationScope scope = MemoisationScope.open()) {
+            bar.evaluate(BigDecimal.ONE);
+            assertThat(scope.size(), is(0));
+        }
+        bar.evaluate(BigDecimal.ONE);
+        assertThat(counter.count(), is(1));
+    }
+
+    @Test
+    void checkNestedScopes() throws Exception {
+        Foo foo = createInjector(COM_REGNOSYS_MODEL).getInstance(Foo.class);
+        try (MemoisationScope outer = MemoisationScope.open()) {
+            foo.evaluate("xxx");
+            try (MemoisationScope inner = MemoisationScope.open()) {
+                foo.evaluate("xxx");
+                assertThrows(IllegalStateException.class, outer::close);
+                ExecutorService executor = Executors.newSingleThreadExecutor();
+                try {
+                    Future<?> closed = executor.submit(inner::close);
+                    ExecutionException e = assertThrows(ExecutionException.class, () -> closed.get(5, TimeUnit.SECONDS));
+                    assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+                } finally {
+                    executor.shutdownNow();
+                }
+            }
+            foo.evaluate("xxx");
+            assertThat(outer.size(), is(1));
+        }
+        assertThat(counter.count(), is(2));
+    }
+
+    private Injector createSlowInjector(SlowCalls slowCalls) {
+        return Guice.createInjector(new FunctionMemoisingModuleBuilder().setPackages(COM_REGNOSYS_MODEL).build(),
+                binder -> binder.bind(SlowCalls.class).toInstance(slowCalls));
+    }
+
     @SafeVarargs
     private final Injector createInjector(String packageName, Class<? extends RosettaFunction>... debug) {
         return Guice.createInjector(createModule(packageName, debug));
@@ -125,6 +415,18 @@ class FunctionMemoisingModuleTest {
         };
     }
 
+    private AbstractModule createModule(String packageName, UnaryOperator<FunctionMemoisingModuleBuilder> configure) {
+        return new AbstractModule() {
+            @Override
+            protected void configure() {
+                install(configure.apply(new FunctionMemoisingModuleBuilder()
+                        .setPackages(packageName))
+                        .build());
+                bind(Counter.class).toInstance(counter);
+            }
+        };
+    }
+
     static class Counter {
         int c = 0;
 
@@ -176,6 +478,60 @@ class FunctionMemoisingModuleTest {
         }
     }
 
+    @ImplementedBy(Baz.BazDefault.class)
+    static abstract class Baz implements RosettaFunction {
+
+        public void evaluate(Node arg) {
+            this.doEvaluate(arg);
+        }
+
+        protected abstract void doEvaluate(Node var1);
+
+        public static class BazDefault extends Baz {
+            @Inject
+            Counter counter;
+
+            protected void doEvaluate(Node arg) {
+                counter.incr();
+            }
+        }
+    }
+
+    static class SlowCalls {
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+    }
+
+    @ImplementedBy(Slow.SlowDefault.class)
+    static abstract class Slow implements RosettaFunction {
+
+        public String evaluate(String arg) {
+            return this.doEvaluate(arg);
+        }
+
+        protected abstract String doEvaluate(String var1);
+
+        public static class SlowDefault extends Slow {
+            @Inject
+            SlowCalls slowCalls;
+
+            protected String doEvaluate(String arg) {
+                slowCalls.calls.incrementAndGet();
+                slowCalls.started.countDown();
+                try {
+                    slowCalls.release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (arg.equals("fail")) {
+                    throw new IllegalArgumentException(arg);
+                }
+                return arg.equals("null") ? null : arg.toUpperCase();
+            }
+        }
+    }
+
     static class FooImpl extends Foo.FooDefault {
         public void evaluate(String arg) {
             doEvaluate(arg);
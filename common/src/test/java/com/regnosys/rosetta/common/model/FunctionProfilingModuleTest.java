@@ -0,0 +1,168 @@
+package com.regnosys.rosetta.common.model;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Guice;
+import com.google.inject.ImplementedBy;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.rosetta.model.lib.functions.RosettaFunction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+class FunctionProfilingModuleTest {
+
+    private FunctionProfilingModule module;
+    private Outer outer;
+
+    @BeforeEach
+    void setUp() {
+        module = new FunctionProfilingModule(FunctionMemoisingModuleTest.COM_REGNOSYS_MODEL);
+        Injector injector = Guice.createInjector(module);
+        outer = injector.getInstance(Outer.class);
+    }
+
+    @Test
+    void checkCallsAndExclusiveTimesAreRecorded() {
+        outer.evaluate(2);
+        outer.evaluate(1);
+
+        Map<String, FunctionProfileSummary> summary = summaryByName();
+        FunctionProfileSummary outerSummary = summary.get(Outer.class.getName());
+        FunctionProfileSummary innerSummary = summary.get(Inner.class.getName());
+        assertThat(outerSummary.getCalls(), is(2L));
+        assertThat(innerSummary.getCalls(), is(3L));
+        assertThat(outerSummary.getInclusiveNanos(), greaterThanOrEqualTo(innerSummary.getInclusiveNanos() + TimeUnit.MILLISECONDS.toNanos(10)));
+        assertThat(outerSummary.getExclusiveNanos(), is(outerSummary.getInclusiveNanos() - innerSummary.getInclusiveNanos()));
+        assertThat(innerSummary.getExclusiveNanos(), is(innerSummary.getInclusiveNanos()));
+        assertThat(innerSummary.getExclusiveMedianNanos(), lessThanOrEqualTo(innerSummary.getExclusiveMaxNanos()));
+    }
+
+    @Test
+    void checkCollapsedStacksFollowTheCallTree() throws IOException {
+        outer.evaluate(1);
+
+        StringWriter writer = new StringWriter();
+        module.getProfiler().writeCollapsedStacks(writer);
+
+        List<String> lines = Arrays.asList(writer.toString().split("\n"));
+        assertThat(lines.size(), is(2));
+        assertThat(lines.get(0), containsString(Outer.class.getName() + " "));
+        assertThat(lines.get(1), containsString(Outer.class.getName() + ";" + Inner.class.getName() + " "));
+    }
+
+    @Test
+    void checkJsonSummary() throws IOException {
+        outer.evaluate(1);
+
+        StringWriter writer = new StringWriter();
+        module.getProfiler().writeJsonSummary(writer);
+
+        JsonNode json = new ObjectMapper().readTree(writer.toString());
+        assertThat(json.get("functions").size(), is(2));
+        JsonNode outerCall = json.get("callTree").get(0);
+        assertThat(outerCall.get("function").asText(), is(Outer.class.getName()));
+        assertThat(outerCall.get("calls").asLong(), is(1L));
+        assertThat(outerCall.get("children").get(0).get("function").asText(), is(Inner.class.getName()));
+    }
+
+    @Test
+    void checkReset() throws IOException {
+        outer.evaluate(1);
+        module.getProfiler().reset();
+
+        assertThat(summaryByName().get(Outer.class.getName()).getCalls(), is(0L));
+        StringWriter writer = new StringWriter();
+        module.getProfiler().writeCollapsedStacks(writer);
+        assertThat(writer.toString(), is(""));
+    }
+
+    private Map<String, FunctionProfileSummary> summaryByName() {
+        return module.getProfiler().getSummary().stream()
+                .collect(Collectors.toMap(FunctionProfileSummary::getFunctionName, Function.identity()));
+    }
+
+    @ImplementedBy(Outer.OuterDefault.class)
+    static abstract class Outer implements RosettaFunction {
+
+        public int evaluate(int times) {
+            return this.doEvaluate(times);
+        }
+
+        protected abstract int doEvaluate(int var1);
+
+        public static class OuterDefault extends Outer {
+            @Inject
+            Inner inner;
+
+            protected int doEvaluate(int times) {
+                sleep(5);
+                int result = 0;
+                for (int i = 0; i < times; i++) {
+                    result += inner.evaluate(i);
+                }
+                return result;
+            }
+        }
+    }
+
+    @ImplementedBy(Inner.InnerDefault.class)
+    static abstract class Inner implements RosettaFunction {
+
+        public int evaluate(int arg) {
+            return this.doEvaluate(arg);
+        }
+
+        protected abstract int doEvaluate(int var1);
+
+        public static class InnerDefault extends Inner {
+            protected int doEvaluate(int arg) {
+                sleep(1);
+                return arg + 1;
+            }
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.regnosys.rosetta.common.model;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.google.inject.Guice;
+import com.google.inject.ImplementedBy;
+import com.google.inject.Injector;
+import com.rosetta.model.lib.functions.RosettaFunction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class GeneratedMemoisingModuleTest {
+
+    private final MemoisingFunctionGenerator generator = new MemoisingFunctionGenerator();
+
+    @Test
+    void checkGeneratedSource() {
+        String source = generator.generate(Qux.class);
+
+        assertThat(source, containsString("public class QuxMemoising extends " + Qux.QuxDefault.class.getCanonicalName()));
+        assertThat(source, containsString("public java.lang.String evaluate(final java.util.List<? extends java.lang.Number> arg0, final int arg1)"));
+        assertThat(source, containsString("public int evaluate(final java.lang.String arg0)"));
+        assertThat(source, containsString("private static final class Key0"));
+        assertThat(source, containsString("private static final class Key1"));
+    }
+
+    @Test
+    void checkNonDefaultImplementationIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> generator.generate(RosettaFunction.class));
+    }
+
+    @Test
+    void checkGeneratedSubclassMemoises(@TempDir Path outputDirectory) throws Exception {
+        Path sourceFile = generator.generate(outputDirectory, Qux.class);
+        ClassLoader classLoader = compile(outputDirectory, sourceFile);
+        Injector injector = Guice.createInjector(new GeneratedMemoisingModule(classLoader, Collections.singletonList(Qux.class)));
+
+        Qux qux = injector.getInstance(Qux.class);
+        assertThat(qux.getClass().getName(), is(MemoisingFunctionGenerator.getMemoisingClassName(Qux.class)));
+        assertThat(injector.getInstance(Qux.class), sameInstance(qux));
+
+        assertThat(qux.evaluate(Arrays.asList(1, 2), 3), is("[1, 2]3"));
+        assertThat(qux.evaluate(Arrays.asList(1, 2), 3), is("[1, 2]3"));
+        assertThat(qux.evaluate(Arrays.asList(1, 2), 4), is("[1, 2]4"));
+        assertThat(qux.evaluate("abc"), is(3));
+        assertThat(qux.evaluate("abc"), is(3));
+        assertThat(qux.evaluate((List<Integer>) null, 3), nullValue());
+        assertThat(qux.evaluate((List<Integer>) null, 3), nullValue());
+        assertThat(((Qux.QuxDefault) qux).calls.get(), is(4));
+    }
+
+    @Test
+    void checkMissingSubclassIsReported() {
+        assertThrows(Exception.class, () -> Guice.createInjector(new GeneratedMemoisingModule(Qux.class)));
+    }
+
+    private static ClassLoader compile(Path outputDirectory, Path sourceFile) throws Exception {
+        String classPath = String.join(File.pathSeparator,
+                codeSource(GeneratedMemoisingModuleTest.class),
+                codeSource(GeneratedMemoCache.class),
+                codeSource(RosettaFunction.class),
+                codeSource(ImplementedBy.class));
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        int result = compiler.run(null, null, null,
+                "-classpath", classPath,
+                "-d", outputDirectory.toString(),
+                sourceFile.toString());
+        assertThat(result, is(0));
+        return new URLClassLoader(new URL[]{outputDirectory.toUri().toURL()}, GeneratedMemoisingModuleTest.class.getClassLoader());
+    }
+
+    private static String codeSource(Class<?> type) throws Exception {
+        return Paths.get(type.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+    }
+
+    // public, as the generated subclass is loaded by another class loader and so is not in the same runtime package
+    @ImplementedBy(Qux.QuxDefault.class)
+    public static abstract class Qux implements RosettaFunction {
+
+        public String evaluate(List<? extends Number> numbers, int suffix) {
+            return this.doEvaluate(numbers, suffix);
+        }
+
+        public int evaluate(String arg) {
+            return this.doEvaluate(arg);
+        }
+
+        protected abstract String doEvaluate(List<? extends Number> numbers, int suffix);
+
+        protected abstract int doEvaluate(String arg);
+
+        public static class QuxDefault extends Qux {
+            final AtomicInteger calls = new AtomicInteger();
+
+            protected String doEvaluate(List<? extends Number> numbers, int suffix) {
+                calls.incrementAndGet();
+                return numbers == null ? null : numbers.toString() + suffix;
+            }
+
+            protected int doEvaluate(String arg) {
+                calls.incrementAndGet();
+                return arg.length();
+            }
+        }
+    }
+}
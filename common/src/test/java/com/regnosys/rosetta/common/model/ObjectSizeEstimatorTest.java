@@ -0,0 +1,70 @@
+package com.regnosys.rosetta.common.model;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.regnosys.rosetta.common.hashing.testpojo.Node;
+import com.regnosys.rosetta.common.hashing.testpojo.Nodes;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ObjectSizeEstimatorTest {
+
+    @Test
+    void shouldEstimateBasicValues() {
+        assertEquals(0, ObjectSizeEstimator.estimate(null));
+        assertEquals(0, ObjectSizeEstimator.estimate(Boolean.TRUE));
+        assertThat(ObjectSizeEstimator.estimate("a longer string"), greaterThan(ObjectSizeEstimator.estimate("short")));
+        assertThat(ObjectSizeEstimator.estimate(new BigDecimal("1234567890123456789012345678901234567890")),
+                greaterThan(ObjectSizeEstimator.estimate(BigDecimal.ONE)));
+    }
+
+    @Test
+    void shouldEstimateCollectionsFromTheirElements() {
+        long element = ObjectSizeEstimator.estimate("element");
+        long one = ObjectSizeEstimator.estimate(Collections.singletonList("element"));
+        long two = ObjectSizeEstimator.estimate(Arrays.asList("element", "element"));
+        assertThat(one, greaterThan(element));
+        assertEquals(one + element + ObjectSizeEstimator.REFERENCE, two);
+    }
+
+    @Test
+    void shouldEstimateModelObjectsFromTheirContent() {
+        long small = ObjectSizeEstimator.estimate(Nodes.tree(4, 4).build());
+        long large = ObjectSizeEstimator.estimate(Nodes.tree(5, 4).build());
+        // 341 and 1365 nodes
+        assertThat((double) large / small, closeTo(4.0, 0.2));
+        assertThat(small, greaterThan(341L * ObjectSizeEstimator.estimate(Node.builder().build())));
+    }
+
+    @Test
+    void shouldEstimateCacheKeysFromTheirArguments() {
+        Node tree = Nodes.tree(4, 4).build();
+        long key = ObjectSizeEstimator.estimate(MemoiseCacheKey.create("evaluate", tree, "xxx"));
+        assertThat(key, greaterThan(ObjectSizeEstimator.estimate(tree) + ObjectSizeEstimator.estimate("xxx")));
+    }
+}
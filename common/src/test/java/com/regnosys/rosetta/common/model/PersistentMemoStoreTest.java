@@ -0,0 +1,130 @@
+package com.regnosys.rosetta.common.model;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.regnosys.rosetta.common.hashing.testpojo.Node;
+import com.regnosys.rosetta.common.hashing.testpojo.Nodes;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PersistentMemoStoreTest {
+
+    private static final String METHOD = "public Node Create.evaluate(Node,java.math.BigDecimal)";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldReadResultsWrittenByAPreviousStore() throws IOException {
+        Path file = tempDir.resolve("memo.bin");
+        Node tree = Nodes.tree(3, 3).build();
+        List<Node> children = Arrays.asList(Nodes.tree(2, 1).build(), Nodes.tree(1, 1).build());
+        try (PersistentMemoStore store = new PersistentMemoStore(file, "v1")) {
+            store.put(store.keyOf(METHOD, new Object[]{tree, BigDecimal.ONE}), tree);
+            store.put(store.keyOf(METHOD, new Object[]{tree, BigDecimal.TEN}), MemoCache.NULL);
+            store.put(store.keyOf(METHOD, new Object[]{tree, null}), "result");
+            store.put(store.keyOf(METHOD, new Object[]{null, null}), children);
+        }
+        try (PersistentMemoStore store = new PersistentMemoStore(file, "v1")) {
+            assertEquals(4, store.size());
+            // an equal but distinct argument
+            assertEquals(tree, store.get(store.keyOf(METHOD, new Object[]{Nodes.tree(3, 3).build(), BigDecimal.ONE})));
+            assertThat(store.get(store.keyOf(METHOD, new Object[]{tree, BigDecimal.TEN})), sameInstance(MemoCache.NULL));
+            assertEquals("result", store.get(store.keyOf(METHOD, new Object[]{tree, null})));
+            assertEquals(children, store.get(store.keyOf(METHOD, new Object[]{null, null})));
+            assertThat(store.get(store.keyOf(METHOD, new Object[]{tree, new BigDecimal("1.0")})), nullValue());
+        }
+    }
+
+    @Test
+    void shouldDiscardResultsOfAnotherModelVersion() throws IOException {
+        Path file = tempDir.resolve("memo.bin");
+        try (PersistentMemoStore store = new PersistentMemoStore(file, "v1")) {
+            store.put(store.keyOf(METHOD, new Object[]{"a"}), "result");
+        }
+        try (PersistentMemoStore store = new PersistentMemoStore(file, "v2")) {
+            assertEquals(0, store.size());
+            assertThat(store.get(store.keyOf(METHOD, new Object[]{"a"})), nullValue());
+            store.put(store.keyOf(METHOD, new Object[]{"b"}), "result");
+        }
+        try (PersistentMemoStore store = new PersistentMemoStore(file, "v2")) {
+            assertEquals(1, store.size());
+        }
+    }
+
+    @Test
+    void shouldNotKeyArgumentsWithoutStableHash() throws IOException {
+        try (PersistentMemoStore store = new PersistentMemoStore(tempDir.resolve("memo.bin"), "v1")) {
+            assertThat(store.keyOf(METHOD, new Object[]{new Object()}), nullValue());
+            assertThat(store.keyOf(METHOD, new Object[]{Arrays.asList("a", new Object())}), nullValue());
+            assertThat(store.keyOf(METHOD, new Object[]{"a"}), notNullValue());
+        }
+    }
+
+    @Test
+    void shouldWarmStartMemoisedFunctions() throws IOException {
+        Path file = tempDir.resolve("memo.bin");
+        FunctionMemoisingModuleTest.Counter counter = new FunctionMemoisingModuleTest.Counter();
+        for (int run = 0; run < 2; run++) {
+            try (PersistentMemoStore store = new PersistentMemoStore(file, "v1")) {
+                Injector injector = Guice.createInjector(new FunctionMemoisingModuleBuilder()
+                                .setPackages(FunctionMemoisingModuleTest.COM_REGNOSYS_MODEL)
+                                .setPersistentStore(store)
+                                .build(),
+                        binder -> binder.bind(FunctionMemoisingModuleTest.Counter.class).toInstance(counter));
+                FunctionMemoisingModuleTest.Foo foo = injector.getInstance(FunctionMemoisingModuleTest.Foo.class);
+                foo.evaluate("xxx");
+                foo.evaluate("yyy");
+            }
+        }
+        assertEquals(2, counter.count());
+    }
+
+    @Test
+    void shouldNotFailFunctionsWhenResultCannotBeWritten() throws IOException {
+        FunctionMemoisingModuleTest.Counter counter = new FunctionMemoisingModuleTest.Counter();
+        PersistentMemoStore store = new PersistentMemoStore(tempDir.resolve("memo.bin"), "v1");
+        // every write to a closed store fails
+        store.close();
+        Injector injector = Guice.createInjector(new FunctionMemoisingModuleBuilder()
+                        .setPackages(FunctionMemoisingModuleTest.COM_REGNOSYS_MODEL)
+                        .setPersistentStore(store)
+                        .build(),
+                binder -> binder.bind(FunctionMemoisingModuleTest.Counter.class).toInstance(counter));
+        FunctionMemoisingModuleTest.Foo foo = injector.getInstance(FunctionMemoisingModuleTest.Foo.class);
+        foo.evaluate("xxx");
+        foo.evaluate("xxx");
+        assertEquals(1, counter.count());
+        assertEquals(0, store.size());
+    }
+}
@@ -0,0 +1,112 @@
+package com.regnosys.rosetta.common.postprocess;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.google.inject.Guice;
+import com.regnosys.rosetta.common.hashing.GlobalKeyProcessStep;
+import com.regnosys.rosetta.common.hashing.NonNullHashCollector;
+import com.regnosys.rosetta.common.hashing.ReKeyProcessStep;
+import com.regnosys.rosetta.common.hashing.ReferenceConfig;
+import com.regnosys.rosetta.common.hashing.ReferenceResolverProcessStep;
+import com.regnosys.rosetta.common.hashing.testpojo.Node;
+import com.regnosys.rosetta.common.hashing.testpojo.Nodes;
+import com.regnosys.rosetta.common.postprocess.qualify.QualifyProcessorStep;
+import com.rosetta.model.lib.RosettaModelObjectBuilder;
+import com.rosetta.model.lib.process.PostProcessStep;
+import com.rosetta.model.lib.qualify.QualifyFunctionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares running the key, reference and qualification steps one after the other, each walking the whole builder,
+ * with the {@link WorkflowPostProcessor} that fuses them into shared walks.
+ * <p>
+ * Not run as part of the build, run {@link #main(String[])} with the test classpath.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FusedPostProcessorBenchmark {
+
+	private static final int DEPTH = 6;
+	private static final int FAN_OUT = 4;
+
+	private List<PostProcessStep> sequential;
+	private WorkflowPostProcessor fused;
+	private Node.NodeBuilder tree;
+
+	@Setup
+	public void setUp() {
+		QualifyProcessorStep qualifyProcessorStep = Guice.createInjector(binder ->
+				binder.bind(QualifyFunctionFactory.class).to(QualifyFunctionFactory.Default.class))
+				.getInstance(QualifyProcessorStep.class);
+		ReferenceConfig referenceConfig = ReferenceConfig.noScopeOrExcludedPaths();
+		sequential = Arrays.asList(
+				new ReKeyProcessStep(new GlobalKeyProcessStep(NonNullHashCollector::new)),
+				new ReferenceResolverProcessStep(referenceConfig),
+				qualifyProcessorStep);
+		fused = new WorkflowPostProcessor(qualifyProcessorStep, referenceConfig);
+	}
+
+	@Setup(Level.Invocation)
+	public void newTree() {
+		tree = Nodes.tree(DEPTH, FAN_OUT);
+	}
+
+	@Benchmark
+	public RosettaModelObjectBuilder sequentialSteps() {
+		for (PostProcessStep step : sequential) {
+			step.runProcessStep(Node.class, tree);
+		}
+		return tree;
+	}
+
+	@Benchmark
+	public RosettaModelObjectBuilder fusedSteps() {
+		return fused.postProcess(Node.class, tree);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(FusedPostProcessorBenchmark.class.getSimpleName())
+				.build())
+				.run();
+	}
+}
@@ -0,0 +1,226 @@
+package com.regnosys.rosetta.common.postprocess;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.regnosys.rosetta.common.hashing.GlobalKeyProcessStep;
+import com.regnosys.rosetta.common.hashing.GlobalKeyRegistry;
+import com.regnosys.rosetta.common.hashing.NonNullHashCollector;
+import com.regnosys.rosetta.common.hashing.ReKeyProcessStep;
+import com.regnosys.rosetta.common.hashing.ReferenceConfig;
+import com.regnosys.rosetta.common.hashing.ReferenceResolverProcessStep;
+import com.regnosys.rosetta.common.hashing.testpojo.Node;
+import com.regnosys.rosetta.common.hashing.testpojo.Nodes;
+import com.regnosys.rosetta.common.util.SimpleBuilderProcessor;
+import com.rosetta.lib.postprocess.PostProcessorReport;
+import com.rosetta.model.lib.RosettaModelObject;
+import com.rosetta.model.lib.RosettaModelObjectBuilder;
+import com.rosetta.model.lib.path.RosettaPath;
+import com.rosetta.model.lib.process.AttributeMeta;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FusedPostProcessorTest {
+
+	private static final int DEPTH = 6;
+	private static final int FAN_OUT = 4;
+	private static final int NODE_COUNT = 1365; // 1 + 4 + 16 + 64 + 256 + 1024
+
+	@Test
+	void fusedStepsGiveSameResultAsSequentialSteps() {
+		Node.NodeBuilder sequential = Nodes.tree(DEPTH, FAN_OUT);
+		runSequentially(sequential);
+
+		Node.NodeBuilder fused = Nodes.tree(DEPTH, FAN_OUT);
+		fusedPostProcessor().postProcess(Node.class, fused);
+
+		assertEquals(sequential.build(), fused.build());
+
+		Node.NodeBuilder child = fused.getChild().get(2);
+		assertThat(fused.getPrice().getMeta().getGlobalKey(), notNullValue());
+		assertEquals(fused.getPrice().getMeta().getGlobalKey(), child.getPriceReference().getGlobalReference());
+		assertEquals(fused.getPrice().getValue().build(), child.getPriceReference().getValue().build());
+	}
+
+	@Test
+	void fusedStepsRegisterSameObjectsAsSequentialSteps() {
+		GlobalKeyRegistry sequentialRegistry = new GlobalKeyRegistry();
+		Node.NodeBuilder sequential = Nodes.tree(DEPTH, FAN_OUT);
+		new ReKeyProcessStep(new GlobalKeyProcessStep(NonNullHashCollector::new)).runProcessStep(Node.class, sequential);
+		new ReferenceResolverProcessStep(ReferenceConfig.noScopeOrExcludedPaths(), sequentialRegistry)
+				.runProcessStep(Node.class, sequential);
+
+		GlobalKeyRegistry fusedRegistry = new GlobalKeyRegistry();
+		Node.NodeBuilder fused = Nodes.tree(DEPTH, FAN_OUT);
+		new FusedPostProcessor()
+				.add(new ReKeyProcessStep(new GlobalKeyProcessStep(NonNullHashCollector::new)))
+				.add(new ReferenceResolverProcessStep(ReferenceConfig.noScopeOrExcludedPaths(), fusedRegistry))
+				.postProcess(Node.class, fused);
+
+		String childKey = fused.getChild().get(0).getMeta().getGlobalKey();
+		Node registeredChild = (Node) fusedRegistry.get(childKey, Node.class);
+		assertEquals(sequentialRegistry.size(), fusedRegistry.size());
+		assertEquals(sequentialRegistry.get(childKey, Node.class), registeredChild);
+		assertThat(registeredChild.getChild().get(0).getMeta().getGlobalKey(), notNullValue());
+	}
+
+	@Test
+	void fusedStepsWalkTheTreeTwiceInsteadOfFourTimes() {
+		Node.NodeBuilder sequential = Nodes.tree(DEPTH, FAN_OUT);
+		long before = Node.VISITS.get();
+		runSequentially(sequential);
+		long sequentialVisits = Node.VISITS.get() - before;
+
+		Node.NodeBuilder fused = Nodes.tree(DEPTH, FAN_OUT);
+		before = Node.VISITS.get();
+		fusedPostProcessor().postProcess(Node.class, fused);
+		long fusedVisits = Node.VISITS.get() - before;
+
+		// hashing visits are the same either way, the fused processor saves the re-key and resolver walks
+		assertEquals(2L * NODE_COUNT, sequentialVisits - fusedVisits);
+	}
+
+	@Test
+	void barrierStartsNewWalk() {
+		List<String> events = new ArrayList<>();
+		FusedPostProcessor postProcessor = new FusedPostProcessor()
+				.add(new RecordingStep("a", 2, events))
+				.add(new RecordingStep("b", 1, events))
+				.barrier()
+				.add(new RecordingStep("c", 1, events));
+
+		Node.NodeBuilder tree = Nodes.tree(2, 1);
+		long before = Node.VISITS.get();
+		postProcessor.postProcess(Node.class, tree);
+
+		// a0 and b0 share the first walk, a1 the second and c waits for a1 to finish
+		assertThat(events, contains(
+				"a0:Node.child(0)", "b0:Node.child(0)",
+				"a1:Node.child(0)",
+				"c0:Node.child(0)"));
+		assertEquals(3 * 2L, Node.VISITS.get() - before);
+	}
+
+	@Test
+	void falseResultOnlyPrunesTheDelegateThatReturnedIt() {
+		List<String> events = new ArrayList<>();
+		FusedPostProcessor postProcessor = new FusedPostProcessor()
+				.add(new RecordingStep("a", 1, events) {
+					@Override
+					boolean record(RosettaModelObjectBuilder builder) {
+						return builder != null;
+					}
+
+					@Override
+					boolean descend(RosettaPath path) {
+						return !path.getElement().getPath().equals("price");
+					}
+				})
+				.add(new RecordingStep("b", 1, events) {
+					@Override
+					boolean record(RosettaModelObjectBuilder builder) {
+						return builder != null;
+					}
+				});
+
+		postProcessor.postProcess(Node.class, Nodes.tree(1, 1));
+
+		assertThat(events, contains(
+				"a0:Node.price", "b0:Node.price",
+				"b0:Node.price.meta",
+				"b0:Node.price.value"));
+	}
+
+	private static void runSequentially(Node.NodeBuilder tree) {
+		new ReKeyProcessStep(new GlobalKeyProcessStep(NonNullHashCollector::new)).runProcessStep(Node.class, tree);
+		new ReferenceResolverProcessStep(ReferenceConfig.noScopeOrExcludedPaths()).runProcessStep(Node.class, tree);
+	}
+
+	private static FusedPostProcessor fusedPostProcessor() {
+		return new FusedPostProcessor()
+				.add(new ReKeyProcessStep(new GlobalKeyProcessStep(NonNullHashCollector::new)))
+				.add(new ReferenceResolverProcessStep(ReferenceConfig.noScopeOrExcludedPaths()));
+	}
+
+	private static class RecordingStep implements FusedPostProcessStep {
+		private final String name;
+		private final int passes;
+		private final List<String> events;
+
+		RecordingStep(String name, int passes, List<String> events) {
+			this.name = name;
+			this.passes = passes;
+			this.events = events;
+		}
+
+		boolean record(RosettaModelObjectBuilder builder) {
+			return builder instanceof Node;
+		}
+
+		boolean descend(RosettaPath path) {
+			return true;
+		}
+
+		@Override
+		public <T extends RosettaModelObject> List<PostProcessPass> createPasses(Class<? extends T> topClass, RosettaModelObjectBuilder builder) {
+			List<PostProcessPass> result = new ArrayList<>();
+			for (int i = 0; i < passes; i++) {
+				String pass = name + i;
+				result.add(new PostProcessPass(() -> new SimpleBuilderProcessor() {
+					@Override
+					public <R extends RosettaModelObject> boolean processRosetta(RosettaPath path, Class<R> rosettaType, RosettaModelObjectBuilder builder, RosettaModelObjectBuilder parent, AttributeMeta... metas) {
+						if (record(builder)) {
+							events.add(pass + ":" + path);
+							return descend(path);
+						}
+						return builder instanceof Node;
+					}
+
+					@Override
+					public Report report() {
+						return null;
+					}
+				}, false));
+			}
+			return result;
+		}
+
+		@Override
+		public <T extends RosettaModelObject> PostProcessorReport runProcessStep(Class<? extends T> topClass, T instance) {
+			return null;
+		}
+
+		@Override
+		public Integer getPriority() {
+			return 1;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+	}
+}
@@ -33,15 +33,23 @@ import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
 
 class MappingProcessorStepTest {
 
@@ -136,6 +144,307 @@ class MappingProcessorStepTest {
         executorService.shutdown();
     }
 
+    @Test
+    void shouldNotShutDownSharedExecutor() {
+        ExecutorService sharedExecutor = MappingExecutors.newSharedExecutor(2);
+        for (int i = 0; i < 3; i++) {
+            MappingContext mappingContext = new MappingContext(Collections.emptyMap(), sharedExecutor);
+            mappingContext.getInvokedTasks().add(CompletableFuture.completedFuture(null));
+
+            new MappingProcessorStep(Lists.newArrayList(FOO_1), mappingContext, 1000).runProcessStep(TestModel.class, new TestModelBuilder());
+
+            assertThat(mappingContext.getMappingErrors().isEmpty(), equalTo(true));
+            assertThat(sharedExecutor.isShutdown(), equalTo(false));
+        }
+        sharedExecutor.shutdown();
+    }
+
+    @Test
+    void shouldCancelTimedOutMappingOnSharedExecutor() {
+        ExecutorService sharedExecutor = MappingExecutors.newPerTaskExecutor();
+        MappingContext mappingContext = new MappingContext(Collections.emptyMap(), sharedExecutor);
+        CompletableFuture<Object> uncompleted = new CompletableFuture<>();
+        mappingContext.getInvokedTasks().add(uncompleted);
+
+        new MappingProcessorStep(Lists.newArrayList(), mappingContext, 10).runProcessStep(TestModel.class, new TestModelBuilder());
+
+        assertThat(mappingContext.getMappingErrors(), contains("Timeout running mapping processors"));
+        assertThat(uncompleted.isCancelled(), equalTo(true));
+        assertThat(sharedExecutor.isShutdown(), equalTo(false));
+        sharedExecutor.shutdown();
+    }
+
+    @Test
+    void shouldCancelTimedOutParallelMappingOnSharedExecutor() throws InterruptedException {
+        ExecutorService sharedExecutor = MappingExecutors.newPerTaskExecutor();
+        ExecutorService parallelExecutor = Executors.newFixedThreadPool(2);
+        try {
+            MappingContext mappingContext = new MappingContext(Collections.emptyMap(), sharedExecutor);
+            CountDownLatch interrupted = new CountDownLatch(2);
+            NodeTestModelBuilder root = new NodeTestModelBuilder(new ArrayList<>());
+            root.addChild("a");
+            root.addChild("b");
+
+            new MappingProcessorStep(Lists.newArrayList(
+                    new Blocker("TestModel.a", "a", interrupted),
+                    new Blocker("TestModel.b", "b", interrupted)), mappingContext, 50, parallelExecutor)
+                    .runProcessStep(TestModel.class, root);
+
+            assertThat(mappingContext.getMappingErrors(), contains("Timeout running mapping processors"));
+            // both walks of the level, on this document's thread and on the parallel executor
+            assertThat(interrupted.await(5, TimeUnit.SECONDS), equalTo(true));
+            assertThat(sharedExecutor.isShutdown(), equalTo(false));
+        } finally {
+            sharedExecutor.shutdown();
+            parallelExecutor.shutdown();
+        }
+    }
+
+    @Test
+    void shouldWalkTowardsTheModelPathOfEachMapper() {
+        ThreadPoolExecutor executorService = (ThreadPoolExecutor) Executors.newFixedThreadPool(1);
+        MappingContext mappingContext = new MappingContext(Lists.newArrayList(), Maps.newHashMap(), Collections.emptyMap(), executorService);
+        List<String> calls = new ArrayList<>();
+        List<String> processedPaths = new ArrayList<>();
+
+        MappingProcessorStep mappingProcessorStep = new MappingProcessorStep(Lists.newArrayList(
+                new RecorderB("TestModel.child", calls),
+                new RecorderA("TestModel.child.value", calls),
+                new RecorderA("TestModel.child", calls)), mappingContext, 1000);
+
+        NodeTestModelBuilder root = new NodeTestModelBuilder(processedPaths);
+        root.children.put("child", new NodeTestModelBuilder(processedPaths));
+        root.children.put("other", new NodeTestModelBuilder(processedPaths));
+        root.children.values().forEach(child -> child.setValue("v"));
+        mappingProcessorStep.runProcessStep(TestModel.class, root);
+
+        assertThat(calls, contains("RecorderA TestModel.child", "RecorderB TestModel.child", "RecorderA TestModel.child.value v"));
+        // a walk per mapper, none descending into the other child
+        assertThat(processedPaths, contains("TestModel", "TestModel", "TestModel", "TestModel.child"));
+    }
+
+    @Test
+    void shouldMapObjectsCreatedByEarlierMappersOfTheSameModelPath() {
+        ThreadPoolExecutor executorService = (ThreadPoolExecutor) Executors.newFixedThreadPool(1);
+        MappingContext mappingContext = new MappingContext(Lists.newArrayList(), Maps.newHashMap(), Collections.emptyMap(), executorService);
+        List<String> calls = new ArrayList<>();
+
+        MappingProcessorStep mappingProcessorStep = new MappingProcessorStep(Lists.newArrayList(
+                new RecorderA("TestModel.a", calls),
+                new Creator("TestModel.a", "x", calls)), mappingContext, 1000);
+
+        NodeTestModelBuilder root = new NodeTestModelBuilder(new ArrayList<>());
+        root.children.put("a", null);
+        mappingProcessorStep.runProcessStep(TestModel.class, root);
+
+        // the recorder only records objects that are present
+        assertThat(calls, contains("Creator TestModel.a", "RecorderA TestModel.a"));
+    }
+
+    @Test
+    void shouldCallMappersInModelPathOrderRatherThanWalkOrder() {
+        ThreadPoolExecutor executorService = (ThreadPoolExecutor) Executors.newFixedThreadPool(1);
+        MappingContext mappingContext = new MappingContext(Lists.newArrayList(), Maps.newHashMap(), Collections.emptyMap(), executorService);
+        List<String> calls = new ArrayList<>();
+
+        MappingProcessorStep mappingProcessorStep = new MappingProcessorStep(Lists.newArrayList(
+                new RecorderA("TestModel.b", calls),
+                new RecorderA("TestModel.a", calls)), mappingContext, 1000);
+
+        NodeTestModelBuilder root = new NodeTestModelBuilder(new ArrayList<>());
+        root.addChild("b");
+        root.addChild("a");
+        mappingProcessorStep.runProcessStep(TestModel.class, root);
+
+        assertThat(calls, contains("RecorderA TestModel.a", "RecorderA TestModel.b"));
+    }
+
+    @Test
+    void shouldMapObjectsCreatedByEarlierMappers() {
+        ThreadPoolExecutor executorService = (ThreadPoolExecutor) Executors.newFixedThreadPool(1);
+        MappingContext mappingContext = new MappingContext(Lists.newArrayList(), Maps.newHashMap(), Collections.emptyMap(), executorService);
+        List<String> calls = new ArrayList<>();
+
+        MappingProcessorStep mappingProcessorStep = new MappingProcessorStep(Lists.newArrayList(
+                new RecorderA("TestModel.a.x", calls),
+                new Creator("TestModel.a", "x", calls)), mappingContext, 1000);
+
+        NodeTestModelBuilder root = new NodeTestModelBuilder(new ArrayList<>());
+        root.children.put("a", null);
+        mappingProcessorStep.runProcessStep(TestModel.class, root);
+
+        assertThat(calls, contains("Creator TestModel.a", "RecorderA TestModel.a.x"));
+    }
+
+    @Test
+    void shouldGroupDelegatesThatDoNotConflict() {
+        List<MappingDelegate> delegates = Lists.newArrayList(
+                new RecorderA("TestModel.b", "b", new ArrayList<>()),
+                new Disjoint("TestModel.a.y", "y", new ArrayList<>()),
+                new Disjoint("TestModel.a.x.z", "z", new ArrayList<>()),
+                new Disjoint("TestModel.a.x", "x", new ArrayList<>()),
+                new Disjoint("TestModel.a.w", "x.w", new ArrayList<>()));
+        delegates.sort(MappingProcessorStep.MAPPING_DELEGATE_COMPARATOR);
+
+        List<List<String>> levels = new ArrayList<>();
+        for (List<MappingDelegate> level : MappingProcessorStep.groupNonConflicting(delegates)) {
+            List<String> paths = new ArrayList<>();
+            level.forEach(delegate -> paths.add(delegate.getModelPath().buildPath()));
+            levels.add(paths);
+        }
+
+        assertThat(levels, contains(
+                contains("TestModel.a.w", "TestModel.a.y"),
+                contains("TestModel.a.x"),
+                contains("TestModel.a.x.z"),
+                contains("TestModel.b")));
+    }
+
+    @Test
+    void shouldMapInParallelAsInSequence() {
+        List<String> inSequence = mapInTree(null);
+        ExecutorService parallelExecutor = Executors.newFixedThreadPool(4);
+        try {
+            assertThat(mapInTree(parallelExecutor), equalTo(inSequence));
+        } finally {
+            parallelExecutor.shutdown();
+        }
+        // the value of z follows that of x, which is mapped first
+        assertThat(inSequence, hasItem("TestModel.a.x.z=1/3"));
+    }
+
+    /**
+     * @return the mappings followed by the values of the tree, in order
+     */
+    private List<String> mapInTree(ExecutorService parallelExecutor) {
+        ThreadPoolExecutor executorService = (ThreadPoolExecutor) Executors.newFixedThreadPool(1);
+        MappingStore mappings = new MappingStore();
+        Arrays.asList("x", "y", "z", "b").forEach(synonym ->
+                mappings.add(new Mapping(Path.parse(synonym), String.valueOf(mappings.size() + 1), null, null, null, false, false, false)));
+        MappingContext mappingContext = new MappingContext(mappings, Maps.newHashMap(), Collections.emptyMap(), executorService);
+
+        MappingProcessorStep mappingProcessorStep = new MappingProcessorStep(Lists.newArrayList(
+                new Setter("TestModel.b", "b", mappingContext),
+                new Setter("TestModel.a.y", "y", mappingContext),
+                new Setter("TestModel.a.x.z", "z", mappingContext),
+                new Setter("TestModel.a.x", "x", mappingContext)), mappingContext, 1000, parallelExecutor);
+
+        NodeTestModelBuilder root = new NodeTestModelBuilder(new ArrayList<>());
+        NodeTestModelBuilder a = root.addChild("a");
+        a.addChild("x").addChild("z");
+        a.addChild("y");
+        root.addChild("b");
+        mappingProcessorStep.runProcessStep(TestModel.class, root);
+
+        assertThat(mappingContext.getMappingErrors().isEmpty(), equalTo(true));
+        List<String> result = new ArrayList<>();
+        mappings.forEach(mapping -> result.add(mapping.toString()));
+        addValues("TestModel", root, result);
+        return result;
+    }
+
+    private static void addValues(String path, NodeTestModelBuilder node, List<String> values) {
+        values.add(path + "=" + node.getValue());
+        node.children.forEach((name, child) -> addValues(path + "." + name, child, values));
+    }
+
+    private static class RecorderA extends MappingProcessor {
+        private final List<String> calls;
+
+        RecorderA(String modelPath, List<String> calls) {
+            this(modelPath, "synonym", calls);
+        }
+
+        RecorderA(String modelPath, String synonymPath, List<String> calls) {
+            super(RosettaPath.valueOf(modelPath), Collections.singletonList(Path.parse(synonymPath)), null);
+            this.calls = calls;
+        }
+
+        @Override
+        public void map(Path synonymPath, RosettaModelObjectBuilder builder, RosettaModelObjectBuilder parent) {
+            calls.add(getClass().getSimpleName() + " " + getModelPath().buildPath());
+        }
+
+        @Override
+        public <T> void mapBasic(Path synonymPath, T instance, RosettaModelObjectBuilder parent) {
+            calls.add(getClass().getSimpleName() + " " + getModelPath().buildPath() + " " + instance);
+        }
+    }
+
+    private static class RecorderB extends RecorderA {
+        RecorderB(String modelPath, List<String> calls) {
+            super(modelPath, calls);
+        }
+    }
+
+    private static class Disjoint extends RecorderA {
+        Disjoint(String modelPath, String synonymPath, List<String> calls) {
+            super(modelPath, synonymPath, calls);
+        }
+
+        @Override
+        public Collection<RosettaPath> getWritePaths() {
+            return Collections.singletonList(getModelPath());
+        }
+    }
+
+    // Blocks until interrupted
+    private static class Blocker extends Disjoint {
+        private final CountDownLatch interrupted;
+
+        Blocker(String modelPath, String synonymPath, CountDownLatch interrupted) {
+            super(modelPath, synonymPath, new ArrayList<>());
+            this.interrupted = interrupted;
+        }
+
+        @Override
+        public void map(Path synonymPath, Optional<RosettaModelObjectBuilder> builder, RosettaModelObjectBuilder parent) {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Sets the value of its model path to that of its synonym path, after the value of the parent if any
+    private static class Setter extends MappingProcessor {
+        Setter(String modelPath, String synonymPath, MappingContext context) {
+            super(RosettaPath.valueOf(modelPath), Collections.singletonList(Path.parse(synonymPath)), context);
+        }
+
+        @Override
+        public Collection<RosettaPath> getWritePaths() {
+            return Collections.singletonList(getModelPath());
+        }
+
+        @Override
+        public void map(Path synonymPath, RosettaModelObjectBuilder builder, RosettaModelObjectBuilder parent) {
+            String parentValue = ((TestModelBuilder) parent).getValue();
+            setValueAndUpdateMappings(synonymPath, value ->
+                    ((TestModelBuilder) builder).setValue(parentValue == null ? value : parentValue + "/" + value));
+        }
+    }
+
+    // Creates the object of its model path, and a child of it, on the parent when the object is absent
+    private static class Creator extends RecorderA {
+        private final String child;
+
+        Creator(String modelPath, String child, List<String> calls) {
+            super(modelPath, calls);
+            this.child = child;
+        }
+
+        @Override
+        public void map(Path synonymPath, Optional<RosettaModelObjectBuilder> builder, RosettaModelObjectBuilder parent) {
+            super.map(synonymPath, (RosettaModelObjectBuilder) null, parent);
+            if (!builder.isPresent()) {
+                ((NodeTestModelBuilder) parent).addChild(getModelPath().getElement().getPath()).addChild(child);
+            }
+        }
+    }
+
     private static class Foo extends MappingProcessor {
         public Foo(String modelPath) {
             super(RosettaPath.valueOf(modelPath), Collections.emptyList(), null);
@@ -261,6 +570,28 @@ class MappingProcessorStepTest {
 		}
     }
 
+    static class NodeTestModelBuilder extends TestModelBuilder {
+        private final Map<String, NodeTestModelBuilder> children = new LinkedHashMap<>();
+        private final List<String> processedPaths;
+
+        NodeTestModelBuilder(List<String> processedPaths) {
+            this.processedPaths = processedPaths;
+        }
+
+        NodeTestModelBuilder addChild(String name) {
+            NodeTestModelBuilder child = new NodeTestModelBuilder(processedPaths);
+            children.put(name, child);
+            return child;
+        }
+
+        @Override
+        public void process(RosettaPath rosettaPath, BuilderProcessor builderProcessor) {
+            processedPaths.add(rosettaPath.buildPath());
+            children.forEach((name, child) -> processRosetta(rosettaPath.newSubPath(name), builderProcessor, TestModelBuilder.class, child));
+            builderProcessor.processBasic(rosettaPath.newSubPath("value"), String.class, value, this);
+        }
+    }
+
     static class BrokenTestModelBuilder extends  TestModelBuilder {
         public BrokenTestModelBuilder() {
             super();
@@ -0,0 +1,209 @@
+package com.regnosys.rosetta.common.translation;
+
+/*-
+ * ==============
+ * Rune Common
+ * ==============
+ * Copyright (C) 2018 - 2024 REGnosys
+ * ==============
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ==============
+ */
+
+import com.rosetta.model.lib.path.RosettaPath;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappingStoreTest {
+
+	private static final RosettaPath MODEL_PATH = RosettaPath.valueOf("Trade.price(1).amount");
+
+	@Test
+	void shouldFindTheSameMappingsAsScanning() {
+		assertSameAsScanning(m -> MappingProcessorUtils.filterMappings(m, Path.parse("a.b[1].c")));
+		assertSameAsScanning(m -> MappingProcessorUtils.filterMappings(m, Path.parse("a.b[0].c")));
+		assertSameAsScanning(m -> MappingProcessorUtils.filterMappings(m, Path.parse("a")));
+		assertSameAsScanning(m -> MappingProcessorUtils.filterListMappings(m, Path.parse("a.b[1].c")));
+		assertSameAsScanning(m -> MappingProcessorUtils.filterListMappings(m, Path.parse("a.b.d")));
+		assertSameAsScanning(m -> MappingProcessorUtils.getEmptyMappings(m, Path.parse("a.b.c")));
+		assertSameAsScanning(m -> MappingProcessorUtils.getNonNullMapping(m, Path.parse("a.b[1].c")));
+		assertSameAsScanning(m -> MappingProcessorUtils.getNonNullMapping(m, Path.parse("a.b[1]"), "c"));
+		assertSameAsScanning(m -> MappingProcessorUtils.getNonNullMapping(m, Path.parse("a"), "d"));
+		assertSameAsScanning(m -> MappingProcessorUtils.getNonNullMapping(m, Path.parse("x"), "d"));
+		assertSameAsScanning(m -> MappingProcessorUtils.getNonNullMapping(m, MODEL_PATH, Path.parse("a"), "c"));
+		assertSameAsScanning(m -> MappingProcessorUtils.filterMappings(m, MODEL_PATH));
+		assertSameAsScanning(m -> MappingProcessorUtils.filterMappings(m, Path.parse("a.b.c"), Path.parse("Trade")));
+		assertSameAsScanning(m -> MappingProcessorUtils.getNonNullMappingForModelPath(m, Path.parse("Trade.price[1].amount")));
+		assertSameAsScanning(m -> MappingProcessorUtils.getNonNullMappingForModelPath(m, Path.parse("Trade.price.amount")));
+	}
+
+	@Test
+	void shouldFindMappingsByUpdatedModelPath() {
+		assertSameAsScanning(m -> {
+			MappingProcessorUtils.updateMappings(Path.parse("a.b[1]"), m, RosettaPath.valueOf("Trade.quantity"));
+			return MappingProcessorUtils.getNonNullMappingForModelPath(m, Path.parse("Trade.quantity"));
+		});
+		assertSameAsScanning(m -> {
+			MappingProcessorUtils.getValueAndUpdateMappings(Path.parse("a.d"), m, RosettaPath.valueOf("Trade.quantity"));
+			MappingProcessorUtils.updateMappingFail(m.get(0), "failed");
+			return MappingProcessorUtils.filterMappings(m, RosettaPath.valueOf("Trade.quantity"));
+		});
+	}
+
+	@Test
+	void shouldRebuildIndexesWhenMappingsAreRemoved() {
+		assertSameAsScanning(m -> {
+			Mapping removed = m.remove(1);
+			m.add(0, removed);
+			m.remove(m.size() - 1);
+			return MappingProcessorUtils.filterMappings(m, Path.parse("a.b[1].c"));
+		});
+		assertSameAsScanning(m -> {
+			Mapping removed = m.remove(1);
+			removed.setRosettaPath(Path.parse("Trade.quantity"));
+			return MappingProcessorUtils.getNonNullMappingForModelPath(m, Path.parse("Trade.quantity"));
+		});
+		assertSameAsScanning(m -> {
+			List<Mapping> all = new ArrayList<>(m);
+			m.clear();
+			m.addAll(all);
+			m.addAll(all);
+			all.get(0).setRosettaPath(Path.parse("Trade.quantity"));
+			return MappingProcessorUtils.filterMappings(m, RosettaPath.valueOf("Trade.quantity"));
+		});
+	}
+
+	@Test
+	void shouldReturnMappingsInListOrder() {
+		MappingStore store = new MappingStore(createMappings());
+		Collections.reverse(store);
+		assertEquals(MappingProcessorUtils.filterMappings(new ArrayList<>(store), Path.parse("a.b[1].c")),
+				MappingProcessorUtils.filterMappings(store, Path.parse("a.b[1].c")));
+	}
+
+	@Test
+	void shouldFindMappingsUnderAPathInListOrder() {
+		MappingStore store = new MappingStore(createMappings());
+		Collections.reverse(store);
+		store.add(mapping("a.b[1]", "7", null));
+		List<Mapping> mappings = new ArrayList<>(store);
+		for (String start : Arrays.asList("a", "a.b", "a.b[1]", "a.b[1].c", "a.d", "x")) {
+			assertEquals(scanStart(mappings, Path.parse(start)), store.getBySynonymPathStart(Path.parse(start)), start);
+		}
+
+		store.add(mappings.get(0));
+		assertEquals(scanStart(new ArrayList<>(store), Path.parse("a.b")), store.getBySynonymPathStart(Path.parse("a.b")));
+	}
+
+	@Test
+	void shouldLeaveOutMappingsAppendedWhileIterating() {
+		MappingStore store = new MappingStore(createMappings());
+		Iterator<Mapping> iterator = store.iterator();
+		Stream<Mapping> stream = store.stream();
+		store.add(mapping("a.e", "7", null));
+
+		int iterated = 0;
+		while (iterator.hasNext()) {
+			iterator.next();
+			iterated++;
+		}
+		assertEquals(createMappings().size(), iterated);
+		assertEquals(createMappings().size(), stream.count());
+		assertEquals(createMappings().size() + 1, store.size());
+	}
+
+	@Test
+	void shouldRemoveMatchingMappings() {
+		MappingStore store = new MappingStore(createMappings());
+		store.removeIf(m -> m.getXmlValue() == null);
+
+		assertEquals(6, store.size());
+		assertTrue(MappingProcessorUtils.filterMappings(store, Path.parse("a")).isEmpty());
+		assertEquals(1, MappingProcessorUtils.filterMappings(store, Path.parse("a.d")).size());
+	}
+
+	@Test
+	void shouldRemoveThroughIterator() {
+		MappingStore store = new MappingStore(createMappings());
+		Iterator<Mapping> iterator = store.iterator();
+		while (iterator.hasNext()) {
+			if (Path.parse("a.b").nameStartMatches(iterator.next().getXmlPath())) {
+				iterator.remove();
+			}
+		}
+
+		assertEquals(2, store.size());
+		assertEquals(1, MappingProcessorUtils.filterMappings(store, Path.parse("a.d")).size());
+	}
+
+	@Test
+	void shouldFailFastOnIteratorWhenMappingRemoved() {
+		MappingStore store = new MappingStore(createMappings());
+		Iterator<Mapping> iterator = store.iterator();
+		iterator.next();
+		store.remove(0);
+
+		assertThrows(ConcurrentModificationException.class, iterator::next);
+	}
+
+	@Test
+	void shouldFailFastOnListIteratorWhenModified() {
+		MappingStore store = new MappingStore(createMappings());
+		ListIterator<Mapping> iterator = store.listIterator();
+		iterator.next();
+		store.add(mapping("a.e", "7", null));
+
+		assertThrows(ConcurrentModificationException.class, iterator::next);
+	}
+
+	private static void assertSameAsScanning(Function<List<Mapping>, Object> lookup) {
+		Object expected = lookup.apply(createMappings());
+		Object actual = lookup.apply(new MappingStore(createMappings()));
+		assertEquals(expected, actual);
+	}
+
+	private static List<Mapping> scanStart(List<Mapping> mappings, Path start) {
+		List<Mapping> result = new ArrayList<>();
+		mappings.stream().filter(m -> start.fullStartMatches(m.getXmlPath())).forEach(result::add);
+		return result;
+	}
+
+	private static List<Mapping> createMappings() {
+		List<Mapping> mappings = new ArrayList<>();
+		mappings.add(mapping("a.b[1].c", "1", "Trade.price[1].amount"));
+		mappings.add(mapping("a.b[1].c", "2", null));
+		mappings.add(mapping("a.b[0].c", "3", "Trade.price.amount"));
+		mappings.add(mapping("a.b.c", null, null));
+		mappings.add(mapping("a.b[2].c", "4", "Trade.price[2].amount"));
+		mappings.add(mapping("a.b[1].d", "5", null));
+		mappings.add(mapping("a.d", "6", null));
+		mappings.add(mapping("a", null, "Trade"));
+		return mappings;
+	}
+
+	private static Mapping mapping(String synonymPath, String value, String modelPath) {
+		Path rosettaPath = modelPath == null ? null : Path.parse(modelPath);
+		return new Mapping(Path.parse(synonymPath), value, rosettaPath, rosettaPath == null ? null : value, null, false, false, false);
+	}
+}
@@ -22,6 +22,9 @@ package com.regnosys.rosetta.common.translation;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.Collections;
+import java.util.Objects;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class PathTest {
@@ -131,4 +134,58 @@ class PathTest {
 	void shouldFullMatchOnBothEmptyPaths() {
 		assertTrue(new Path().fullStartMatches(new Path()));
 	}
+
+	@Test
+	void shouldHashAsTheListOfElements() {
+		assertEquals(Objects.hash(TEST_PATH2.getElements()), TEST_PATH2.hashCode());
+		assertEquals(Objects.hash(new Path().getElements()), new Path().hashCode());
+		assertEquals(Path.parse("a.b[1].c"), new Path(Path.parse("a.b[1].c").getElements()));
+		assertEquals(Path.parse("a.b[1].c").hashCode(), new Path(Path.parse("a.b[1].c").getElements()).hashCode());
+	}
+
+	@Test
+	void shouldShareThePrefixOfAddedElements() {
+		Path parent = Path.parse("a.b[1]");
+		Path child = parent.addElement("c");
+		assertSame(parent, child.getParent());
+		assertEquals(Path.parse("a.b[1].c"), child);
+		assertEquals("a.b(1).c", child.toString());
+		assertEquals(Path.parse("b[1].c"), child.trimFirst());
+		assertEquals(child, parent.append(Path.parse("c")));
+		assertArrayEquals(new String[]{"a", "b", "c"}, child.getPathNames());
+	}
+
+	@Test
+	void shouldEqualIndexedPathWhenIndexIsForced() {
+		Path path = Path.parse("a.b.c");
+		int hashWithoutIndex = path.hashCode();
+		assertNotEquals(Path.parse("a.b[0].c"), path);
+		path.getParent().getLastElement().forceGetIndex();
+
+		assertEquals(Path.parse("a.b[0].c"), path);
+		assertEquals(Path.parse("a.b[0].c").hashCode(), path.hashCode());
+		assertEquals(hashWithoutIndex, path.hashCode());
+	}
+
+	@Test
+	void shouldMatchElementsWhenOnlyOneHasMetas() {
+		Path withMetas = new Path().addElement(new Path.PathElement("a", Collections.singletonMap("id", "1")));
+		Path withOtherMetas = new Path().addElement(new Path.PathElement("a", Collections.singletonMap("id", "2")));
+		assertEquals(Path.parse("a"), withMetas);
+		assertEquals(Path.parse("a").hashCode(), withMetas.hashCode());
+		assertNotEquals(withOtherMetas, withMetas);
+	}
+
+	@Test
+	void shouldWalkTheParentsForSizeAndCopies() {
+		Path path = Path.parse("a.b[1].c");
+
+		assertEquals(3, path.size());
+		assertEquals(0, new Path().size());
+		assertEquals("a.b(1).c", path.toString());
+		assertEquals("", new Path().toString());
+		assertEquals(Path.parse("b[1].c"), path.trimFirst());
+		assertEquals(Path.parse("a.b[1].c.a.b[1].c"), path.append(path));
+		assertEquals(1, path.cardinality());
+	}
 }